@@ -0,0 +1,96 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.support.ObservingJPAQueryFactory;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.MemberBuckets.AGE_BUCKET;
+import static study.querydsl.entity.MemberBuckets.AGE_RANGE;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * complexCase의 나이대(MemberBuckets.AGE_RANGE)로 회원을 묶거나 거를 때
+ * 행마다 CASE를 계산하는 쿼리(perRow)와 age_bucket 컬럼으로 바꾼 쿼리(derived)
+ *
+ * - groupBy: 나이대별 회원 수, 전체를 읽지만 CASE 계산 대신 인덱스 순서로 묶는다.
+ * - filter: 한 나이대의 회원 수, CASE는 전체를 스캔하고 age_bucket은 인덱스 범위만 읽는다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AgeBucketBenchmark {
+
+    @Param({"1000000"})
+    int memberCount;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    JPAQueryFactory perRow;
+    JPAQueryFactory derived;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(100, memberCount, "querydsl.derived-columns.create-columns=true");
+        em = fixture.createEntityManager();
+        perRow = new JPAQueryFactory(HQLTemplates.DEFAULT, em);
+        derived = new ObservingJPAQueryFactory(HQLTemplates.DEFAULT, em, Collections.emptyList(), List.of(AGE_BUCKET));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        fixture.close();
+    }
+
+    @Benchmark
+    public List<Tuple> groupByPerRow() {
+        return groupBy(perRow);
+    }
+
+    @Benchmark
+    public List<Tuple> groupByDerived() {
+        return groupBy(derived);
+    }
+
+    @Benchmark
+    public Long filterPerRow() {
+        return filter(perRow);
+    }
+
+    @Benchmark
+    public Long filterDerived() {
+        return filter(derived);
+    }
+
+    private List<Tuple> groupBy(JPAQueryFactory queryFactory) {
+        return queryFactory
+                .select(AGE_RANGE, member.count())
+                .from(member)
+                .groupBy(AGE_RANGE)
+                .fetch();
+    }
+
+    private Long filter(JPAQueryFactory queryFactory) {
+        return queryFactory
+                .select(member.count())
+                .from(member)
+                .where(AGE_RANGE.eq("21~30살"))
+                .fetchOne();
+    }
+}
@@ -0,0 +1,110 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.AsyncQueryExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 동시 요청 1,000개가 search() 쿼리를 한 번씩 실행할 때의 처리량 (초당 요청 수)
+ *
+ * blocking : 서블릿 스레드 풀(Tomcat 기본 200개)에서 각 요청이 쿼리를 직접 실행하고 기다린다.
+ * async    : 요청은 AsyncQueryExecutor.fetchOneAsync()로 넘기기만 하고,
+ *            쿼리는 전용 executor(가상 스레드 또는 고정 풀)에서 실행된다.
+ *
+ * 두 경우 모두 커넥션 풀 크기는 같다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AsyncQueryBenchmark {
+
+    private static final int CALLERS = 1_000;
+    private static final int SERVLET_THREADS = 200;
+
+    @Param({"100000"})
+    int memberCount;
+
+    BenchmarkFixture fixture;
+    JPAQueryFactory queryFactory;
+    TransactionTemplate readTx;
+    AsyncQueryExecutor asyncExecutor;
+    ExecutorService servletThreads;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(100, memberCount);
+        queryFactory = fixture.getBean(JPAQueryFactory.class);
+        readTx = new TransactionTemplate(fixture.getBean(PlatformTransactionManager.class));
+        readTx.setReadOnly(true);
+        asyncExecutor = fixture.getBean(AsyncQueryExecutor.class);
+        servletThreads = Executors.newFixedThreadPool(SERVLET_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        servletThreads.shutdown();
+        fixture.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLERS)
+    public List<Member> blocking() {
+        List<CompletableFuture<Member>> requests = new ArrayList<>(CALLERS);
+        for (int i = 0; i < CALLERS; i++) {
+            JPAQuery<Member> query = search(i);
+            requests.add(CompletableFuture.supplyAsync(() -> readTx.execute(status -> query.fetchOne()), servletThreads));
+        }
+        return joinAll(requests);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLERS)
+    public List<Member> async() {
+        List<CompletableFuture<Member>> requests = new ArrayList<>(CALLERS);
+        for (int i = 0; i < CALLERS; i++) {
+            requests.add(asyncExecutor.fetchOneAsync(search(i)));
+        }
+        return joinAll(requests);
+    }
+
+    /**
+     * search()와 같은 모양, 시드 데이터에 맞게 memberN / N % 100
+     */
+    private JPAQuery<Member> search(int i) {
+        int id = i % memberCount + 1;
+        return queryFactory
+                .selectFrom(member)
+                .where(member.username.eq("member" + id), member.age.eq(id % 100));
+    }
+
+    private static List<Member> joinAll(List<CompletableFuture<Member>> requests) {
+        List<Member> result = new ArrayList<>(requests.size());
+        for (CompletableFuture<Member> request : requests) {
+            result.add(request.join());
+        }
+        return result;
+    }
+}
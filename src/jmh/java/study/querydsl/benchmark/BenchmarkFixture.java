@@ -0,0 +1,97 @@
+package study.querydsl.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.QuerydslApplication;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 벤치마크용 스프링 컨텍스트와 H2 데이터셋
+ * 회원은 teamCount개의 팀에 고르게 나누어 넣고, 나이는 0~99 사이로 순환한다.
+ * 적재는 JPA를 거치지 않고 JDBC 배치 insert로 한다. (team_stats는 채우지 않는다.)
+ */
+public class BenchmarkFixture implements AutoCloseable {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkFixture(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    /**
+     * @param properties 벤치마크마다 덮어쓸 스프링 설정 ex) "spring.jpa.properties.hibernate.jdbc.batch_size=1"
+     */
+    public static BenchmarkFixture start(int teamCount, int memberCount, String... properties) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=warn")
+                .properties(properties)
+                .run();
+        BenchmarkFixture fixture = new BenchmarkFixture(context);
+        fixture.seed(teamCount, memberCount);
+        return fixture;
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public EntityManagerFactory emf() {
+        return context.getBean(EntityManagerFactory.class);
+    }
+
+    public EntityManager createEntityManager() {
+        return emf().createEntityManager();
+    }
+
+    /**
+     * 적재한 데이터를 모두 지운다. JDBC로 지우므로 2차 캐시도 직접 비운다.
+     */
+    public void truncate() {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        jdbc.execute("delete from member");
+        jdbc.execute("delete from team");
+        jdbc.execute("delete from team_stats");
+        emf().getCache().evictAll();
+    }
+
+    private void seed(int teamCount, int memberCount) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+
+        List<Object[]> teams = new ArrayList<>(teamCount);
+        for (long teamId = 1; teamId <= teamCount; teamId++) {
+            teams.add(new Object[]{teamId, "team" + teamId});
+        }
+        jdbc.batchUpdate("insert into team (team_id, name) values (?, ?)", teams);
+
+        List<Object[]> members = new ArrayList<>(BATCH_SIZE);
+        for (long memberId = 1; memberId <= memberCount; memberId++) {
+            long teamId = (memberId % teamCount) + 1;
+            members.add(new Object[]{memberId, "member" + memberId, (int) (memberId % 100), teamId});
+            if (members.size() == BATCH_SIZE || memberId == memberCount) {
+                jdbc.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", members);
+                members.clear();
+            }
+        }
+
+        // 직접 넣은 id와 겹치지 않도록 시퀀스를 뒤로 옮긴다.
+        jdbc.execute("alter sequence team_seq restart with " + (teamCount + 1));
+        jdbc.execute("alter sequence member_seq restart with " + (memberCount + 1));
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,65 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import study.querydsl.service.MemberBulkImportService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 회원 100만 명 / 팀 1만 개 적재 속도 (결과 단위: rows/s)
+ *
+ * batchSize=1 은 JDBC 배치를 끈 상태이고, batchSize=100 이 application.yml 설정이다.
+ * 시퀀스 호출 횟수는 allocationSize로 고정되어 있으므로 @GeneratedValue 기본 전략과의 비교는
+ * 변경 전 커밋에서 같은 벤치마크를 돌려서 비교한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class BulkImportBenchmark {
+
+    private static final int TEAM_COUNT = 10_000;
+    private static final int MEMBER_COUNT = 1_000_000;
+
+    @Param({"1", "100"})
+    int batchSize;
+
+    BenchmarkFixture fixture;
+    MemberBulkImportService importService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(1, 0, "spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize);
+        importService = fixture.getBean(MemberBulkImportService.class);
+    }
+
+    @TearDown(Level.Invocation)
+    public void truncate() {
+        fixture.truncate();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEMBER_COUNT)
+    public List<Long> importMembers() {
+        return importService.importMembers(TEAM_COUNT, MEMBER_COUNT);
+    }
+}
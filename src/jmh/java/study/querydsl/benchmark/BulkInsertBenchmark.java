@@ -0,0 +1,120 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.JPAExpressions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.BulkInsertExecutor;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 100만 명을 insert 하는 속도 (결과 단위: rows/s)
+ *
+ * - persistLoop: em.persist() 반복, 1000명마다 flush/clear (JDBC 배치 100은 application.yml 설정)
+ * - insertValues: BulkInsertExecutor.values(), 영속성 컨텍스트 없이 1000행씩 JDBC 배치
+ * - insertSelect: BulkInsertExecutor.select(), 미리 넣어둔 회원 100만 명을 insert ... select 한 문장으로 복사
+ *
+ * 모두 같은 스프링 트랜잭션과 엔티티 리스너(team_stats, age_bucket) 아래에서 돈다.
+ * 호출이 끝날 때마다 새로 넣은 회원(id > MEMBER_COUNT)을 지운다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class BulkInsertBenchmark {
+
+    private static final int TEAM_COUNT = 100;
+    private static final int MEMBER_COUNT = 1_000_000;
+    private static final int FLUSH_SIZE = 1_000;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    TransactionTemplate tx;
+    BulkInsertExecutor bulkInsert;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(TEAM_COUNT, MEMBER_COUNT);
+        em = fixture.getBean(EntityManager.class);
+        tx = new TransactionTemplate(fixture.getBean(PlatformTransactionManager.class));
+        bulkInsert = fixture.getBean(BulkInsertExecutor.class);
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteInserted() {
+        fixture.getBean(JdbcTemplate.class).update("delete from member where member_id > ?", MEMBER_COUNT);
+        fixture.emf().getCache().evictAll();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEMBER_COUNT)
+    public Long persistLoop() {
+        return tx.execute(status -> {
+            for (int i = 0; i < MEMBER_COUNT; i++) {
+                Member member = new Member("member" + i, i % 100);
+                member.setTeam(em.getReference(Team.class, (long) (i % TEAM_COUNT + 1)));
+                em.persist(member);
+                if ((i + 1) % FLUSH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.flush();
+            em.clear();
+            return (long) MEMBER_COUNT;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEMBER_COUNT)
+    public Long insertValues() {
+        return tx.execute(status -> {
+            BulkInsertExecutor.BulkInsertClause insert = bulkInsert
+                    .insert(member)
+                    .columns(member.username, member.age, member.team);
+            for (int i = 0; i < MEMBER_COUNT; i++) {
+                insert.values("member" + i, i % 100, em.getReference(Team.class, (long) (i % TEAM_COUNT + 1)));
+            }
+            return insert.execute();
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEMBER_COUNT)
+    public Long insertSelect() {
+        QMember source = new QMember("source");
+        return tx.execute(status -> bulkInsert
+                .insert(member)
+                .columns(member.username, member.age, member.team)
+                .select(JPAExpressions
+                        .select(source.username, source.age, source.team.id)
+                        .from(source)
+                        .where(source.id.loe((long) MEMBER_COUNT)))
+                .execute());
+    }
+}
@@ -0,0 +1,90 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.SyncingBulkExecutor;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 5만 명을 관리 중인 트랜잭션에서 bulkUpdate 후 같은 회원들을 다시 읽기까지의 시간
+ *
+ * fullClear    : 벌크 수정 -> em.flush(); em.clear() -> 다시 조회 (전부 새로 하이드레이션)
+ * targetedSync : SyncingBulkExecutor로 수정 -> 다시 조회 (이미 관리 중인 엔티티 재사용)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkSyncBenchmark {
+
+    @Param({"50000"})
+    int memberCount;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    JPAQueryFactory queryFactory;
+    SyncingBulkExecutor bulkExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(100, memberCount);
+        em = fixture.createEntityManager();
+        queryFactory = new JPAQueryFactory(HQLTemplates.DEFAULT, em);
+        bulkExecutor = new SyncingBulkExecutor(em, queryFactory);
+    }
+
+    @Setup(Level.Invocation)
+    public void loadMembers() {
+        em.getTransaction().begin();
+        queryFactory.selectFrom(member).fetch();
+    }
+
+    @TearDown(Level.Invocation)
+    public void rollback() {
+        em.getTransaction().rollback();
+        em.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        fixture.close();
+    }
+
+    @Benchmark
+    public List<Member> fullClear() {
+        queryFactory
+                .update(member)
+                .set(member.username, "비회원")
+                .where(member.age.lt(28))
+                .execute();
+        em.flush();
+        em.clear();
+        return queryFactory.selectFrom(member).fetch();
+    }
+
+    @Benchmark
+    public List<Member> targetedSync() {
+        bulkExecutor
+                .update(member)
+                .set(member.username, "비회원")
+                .where(member.age.lt(28))
+                .execute();
+        return queryFactory.selectFrom(member).fetch();
+    }
+}
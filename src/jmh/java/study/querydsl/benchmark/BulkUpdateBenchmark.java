@@ -0,0 +1,76 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * bulkUpdate, bulkUpdate2 실행 시간
+ * 매 호출마다 롤백해서 데이터가 바뀌지 않게 한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkUpdateBenchmark {
+
+    @Param({"10000"})
+    int memberCount;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    JPAQueryFactory queryFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(100, memberCount);
+        em = fixture.createEntityManager();
+        queryFactory = new JPAQueryFactory(HQLTemplates.DEFAULT, em);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        fixture.close();
+    }
+
+    @Benchmark
+    public long bulkUpdate() {
+        em.getTransaction().begin();
+        try {
+            return queryFactory
+                    .update(member)
+                    .set(member.username, "비회원")
+                    .where(member.age.lt(28))
+                    .execute();
+        } finally {
+            em.getTransaction().rollback();
+        }
+    }
+
+    @Benchmark
+    public long bulkUpdate2() {
+        em.getTransaction().begin();
+        try {
+            return queryFactory
+                    .update(member)
+                    .set(member.age, member.age.add(1))
+                    .execute();
+        } finally {
+            em.getTransaction().rollback();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.repository.ChunkedBulkExecutor;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * bulkUpdate2(age = age + 1)를 한 번에 실행할 때와 ChunkedBulkExecutor로 나누어 실행할 때
+ *
+ * - single, chunked: 벌크 수정 하나의 실행 시간 (구간마다 커밋하는 비용)
+ * - singleWithWriter, chunkedWithWriter: 벌크 수정을 반복하는 동안 다른 스레드가 임의의 회원 한 명을 수정하는 시간
+ *   한 번에 실행하면 벌크 수정이 끝날 때까지 잠금을 기다리고, 나누어 실행하면 진행 중인 구간만 기다린다.
+ *   SampleTime의 writer 백분위(p0.99, p1.00)를 본다.
+ *
+ * 구간마다 커밋하므로 롤백하지 않는다. 나이는 호출할 때마다 1씩 늘어난다.
+ * writer가 잠금 대기 시간 초과로 실패하지 않도록 LOCK_TIMEOUT을 늘린다.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ChunkedBulkBenchmark {
+
+    @Param({"1000000"})
+    int memberCount;
+
+    @Param({"10000"})
+    int chunkSize;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    JPAQueryFactory queryFactory;
+    ChunkedBulkExecutor chunkedExecutor;
+    JdbcTemplate jdbc;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(100, memberCount,
+                "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=600000");
+        em = fixture.createEntityManager();
+        queryFactory = new JPAQueryFactory(HQLTemplates.DEFAULT, em);
+        chunkedExecutor = fixture.getBean(ChunkedBulkExecutor.class);
+        jdbc = fixture.getBean(JdbcTemplate.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        fixture.close();
+    }
+
+    @Benchmark
+    @Group("single")
+    public long single() {
+        return singleUpdate();
+    }
+
+    @Benchmark
+    @Group("chunked")
+    public long chunked() {
+        return chunkedUpdate();
+    }
+
+    @Benchmark
+    @Group("singleWithWriter")
+    @GroupThreads(1)
+    public long singleBulk() {
+        return singleUpdate();
+    }
+
+    @Benchmark
+    @Group("singleWithWriter")
+    @GroupThreads(1)
+    public int singleWriter() {
+        return writeOne();
+    }
+
+    @Benchmark
+    @Group("chunkedWithWriter")
+    @GroupThreads(1)
+    public long chunkedBulk() {
+        return chunkedUpdate();
+    }
+
+    @Benchmark
+    @Group("chunkedWithWriter")
+    @GroupThreads(1)
+    public int chunkedWriter() {
+        return writeOne();
+    }
+
+    private long singleUpdate() {
+        em.getTransaction().begin();
+        try {
+            long count = queryFactory
+                    .update(member)
+                    .set(member.age, member.age.add(1))
+                    .execute();
+            em.getTransaction().commit();
+            return count;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        }
+    }
+
+    private long chunkedUpdate() {
+        return chunkedExecutor.update(member, member.id)
+                .set(member.age, member.age.add(1))
+                .chunkSize(chunkSize)
+                .execute()
+                .getAffectedRows();
+    }
+
+    private int writeOne() {
+        long id = ThreadLocalRandom.current().nextLong(1, memberCount + 1);
+        return jdbc.update("update member set username = ? where member_id = ?", "writer" + id, id);
+    }
+}
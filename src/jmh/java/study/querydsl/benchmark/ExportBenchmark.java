@@ -0,0 +1,131 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.repository.ExportResult;
+import study.querydsl.repository.QuerydslExporter;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 1000만 명의 select(member.username, member.age)를 파일로 내보내는 처리량
+ *
+ * - fetchThenCsv: tupleProjection처럼 fetch()로 Tuple 목록을 만든 뒤 문자열로 바꿔서 BufferedWriter로 쓴다. (기준선)
+ * - exportCsv / exportColumnar: QuerydslExporter, ResultSet에서 다이렉트 버퍼를 거쳐 FileChannel로 쓴다.
+ *
+ * 보조 카운터 rows, bytes가 초당 행 수와 초당 바이트 수다. (MB/s = bytes / 1048576)
+ * 기준선은 전체 결과를 힙에 올리므로 힙을 넉넉히 준다. 회원 수는 -PjmhMemberCount 로 줄일 수 있다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ExportBenchmark {
+
+    @Param({"10000000"})
+    int memberCount;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    JPAQueryFactory queryFactory;
+    QuerydslExporter exporter;
+    Path dir;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+
+        public long rows;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+            bytes = 0;
+        }
+
+        void add(long rows, long bytes) {
+            this.rows += rows;
+            this.bytes += bytes;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = BenchmarkFixture.start(100, memberCount);
+        em = fixture.createEntityManager();
+        queryFactory = new JPAQueryFactory(HQLTemplates.DEFAULT, em);
+        exporter = new QuerydslExporter(em, HQLTemplates.DEFAULT, 1000, 1 << 20, 65536);
+        dir = Files.createTempDirectory("export-benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        em.close();
+        fixture.close();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public long fetchThenCsv(Throughput throughput) throws IOException {
+        Path file = dir.resolve("fetch.csv");
+        long rows = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("username,age\n");
+            for (Tuple tuple : query().fetch()) {
+                writer.write(tuple.get(member.username) + "," + tuple.get(member.age) + "\n");
+                rows++;
+            }
+        }
+        throughput.add(rows, Files.size(file));
+        return rows;
+    }
+
+    @Benchmark
+    public long exportCsv(Throughput throughput) throws IOException {
+        ExportResult result = exporter.exportCsv(query(), dir.resolve("export.csv"));
+        throughput.add(result.getRows(), result.getBytes());
+        return result.getRows();
+    }
+
+    @Benchmark
+    public long exportColumnar(Throughput throughput) throws IOException {
+        ExportResult result = exporter.exportColumnar(query(), dir.resolve("export.col"));
+        throughput.add(result.getRows(), result.getBytes());
+        return result.getRows();
+    }
+
+    private JPAQuery<Tuple> query() {
+        return queryFactory
+                .select(member.username, member.age)
+                .from(member);
+    }
+}
@@ -0,0 +1,85 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.KeysetPage;
+import study.querydsl.repository.MemberKeysetPager;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * paging1 방식(offset/limit)과 키셋 페이징의 N번째 페이지 조회 시간 비교
+ * offset 방식은 page가 커질수록 느려지고, 키셋 방식은 일정해야 한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KeysetPagingBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"1000000"})
+    int memberCount;
+
+    @Param({"1", "100", "10000"})
+    int page;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    JPAQueryFactory queryFactory;
+    MemberKeysetPager pager;
+    String cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(1_000, memberCount);
+        em = fixture.createEntityManager();
+        queryFactory = new JPAQueryFactory(em);
+        pager = new MemberKeysetPager(queryFactory);
+
+        // page 번째 페이지의 커서를 미리 구해둔다.
+        if (page > 1) {
+            cursor = pager.fetchPage(null, null, (page - 1) * PAGE_SIZE, member.username.desc()).getNextCursor();
+        }
+        em.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        fixture.close();
+    }
+
+    @Benchmark
+    public List<Member> offsetPaging() {
+        List<Member> result = queryFactory
+                .selectFrom(member)
+                .orderBy(member.username.desc())
+                .offset((long) (page - 1) * PAGE_SIZE)
+                .limit(PAGE_SIZE)
+                .fetch();
+        em.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<Member> keysetPaging() {
+        KeysetPage<Member> result = pager.fetchPage(null, cursor, PAGE_SIZE, member.username.desc());
+        em.clear();
+        return result.getContent();
+    }
+}
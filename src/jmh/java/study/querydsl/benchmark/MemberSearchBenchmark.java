@@ -0,0 +1,124 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.MemberSearchRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 동적쿼리_WhereParam(nullSafeBuilder) 방식과 MemberSearchRepository의 할당량 비교
+ * gc 프로파일러의 gc.alloc.rate.norm(호출당 할당 바이트)을 본다.
+ * 대부분의 조건이 비어 있는 요청(이름만)과 모든 조건이 있는 요청을 나눈다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberSearchBenchmark {
+
+    @Param({"10000"})
+    int memberCount;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    JPAQueryFactory queryFactory;
+    MemberSearchRepository repository;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(100, memberCount);
+        em = fixture.createEntityManager();
+        queryFactory = new JPAQueryFactory(HQLTemplates.DEFAULT, em);
+        repository = new MemberSearchRepository(em);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        fixture.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> usernameOnlyBuilder() {
+        return searchBuilder(usernameOnly());
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> usernameOnlyCompiled() {
+        return repository.search(usernameOnly());
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> allConditionsBuilder() {
+        return searchBuilder(allConditions());
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> allConditionsCompiled() {
+        return repository.search(allConditions());
+    }
+
+    private MemberSearchCondition usernameOnly() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member" + nextId());
+        return condition;
+    }
+
+    private MemberSearchCondition allConditions() {
+        int id = nextId();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member" + id);
+        condition.setTeamName("team" + (id % 100 + 1));
+        condition.setAgeGoe(0);
+        condition.setAgeLoe(99);
+        return condition;
+    }
+
+    private List<MemberTeamDto> searchBuilder(MemberSearchCondition condition) {
+        return queryFactory
+                .select(new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(nullSafeBuilder(() -> member.username.eq(condition.getUsername()))
+                        .and(nullSafeBuilder(() -> team.name.eq(condition.getTeamName())))
+                        .and(nullSafeBuilder(() -> member.age.goe(condition.getAgeGoe())))
+                        .and(nullSafeBuilder(() -> member.age.loe(condition.getAgeLoe()))))
+                .orderBy(member.id.asc())
+                .fetch();
+    }
+
+    private int nextId() {
+        next = next % memberCount + 1;
+        return next;
+    }
+
+    private static BooleanBuilder nullSafeBuilder(Supplier<BooleanExpression> f) {
+        try {
+            return new BooleanBuilder(f.get());
+        } catch (IllegalArgumentException e) {
+            return new BooleanBuilder();
+        }
+    }
+}
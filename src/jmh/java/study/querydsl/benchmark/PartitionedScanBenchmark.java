@@ -0,0 +1,94 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.PartitionedQueryExecutor;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * selectFrom(member).where(member.age.goe(50)) 전체 조회를 id 구간으로 나누어 threads개의 커넥션에서 실행한 시간
+ *
+ * sequential       : 한 커넥션에서 그대로 실행 (threads와 무관)
+ * partitioned      : threads개 구간, 순서 없이 이어붙임
+ * partitionedSorted: threads개 구간, orderBy(age desc, id asc)를 k-way 병합
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PartitionedScanBenchmark {
+
+    @Param({"500000"})
+    int memberCount;
+
+    @Param({"1", "2", "4", "8", "16"})
+    int threads;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    JPAQueryFactory queryFactory;
+    ExecutorService executor;
+    PartitionedQueryExecutor partitionedExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(100, memberCount,
+                "spring.datasource.hikari.maximum-pool-size=" + (threads + 2));
+        em = fixture.createEntityManager();
+        queryFactory = new JPAQueryFactory(HQLTemplates.DEFAULT, em);
+        executor = Executors.newFixedThreadPool(threads);
+        partitionedExecutor = new PartitionedQueryExecutor(fixture.emf(), executor, threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+        em.close();
+        fixture.close();
+    }
+
+    @Benchmark
+    public List<Member> sequential() {
+        List<Member> result = scan().fetch();
+        em.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<Member> partitioned() {
+        List<Member> result = partitionedExecutor.fetch(scan(), member.id);
+        em.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<Member> partitionedSorted() {
+        List<Member> result = partitionedExecutor.fetch(scan().orderBy(member.age.desc(), member.id.asc()), member.id);
+        em.clear();
+        return result;
+    }
+
+    private JPAQuery<Member> scan() {
+        return queryFactory
+                .selectFrom(member)
+                .where(member.age.goe(50));
+    }
+}
@@ -0,0 +1,98 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Projections;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import study.querydsl.dto.DtoProjections;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.QMemberDto;
+
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * DB를 거치지 않고 조회된 행(Object[]) -> MemberDto 변환 비용만 비교한다.
+ * Projections.* (리플렉션) / @QueryProjection / DtoProjections.* (MethodHandle)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProjectionBenchmark {
+
+    private static final int ROWS = 1_000;
+
+    Object[][] rows;
+
+    FactoryExpression<MemberDto> reflectionBean = Projections.bean(MemberDto.class, member.username, member.age);
+    FactoryExpression<MemberDto> reflectionFields = Projections.fields(MemberDto.class, member.username, member.age);
+    FactoryExpression<MemberDto> reflectionConstructor = Projections.constructor(MemberDto.class, member.username, member.age);
+    FactoryExpression<MemberDto> queryProjection = new QMemberDto(member.username, member.age);
+    FactoryExpression<MemberDto> handleBean = DtoProjections.bean(MemberDto.class, member.username, member.age);
+    FactoryExpression<MemberDto> handleFields = DtoProjections.fields(MemberDto.class, member.username, member.age);
+    FactoryExpression<MemberDto> handleConstructor = DtoProjections.constructor(MemberDto.class, member.username, member.age);
+
+    @Setup
+    public void setUp() {
+        rows = new Object[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new Object[]{"member" + i, i % 100};
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void projectionsBean(Blackhole bh) {
+        map(reflectionBean, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void projectionsFields(Blackhole bh) {
+        map(reflectionFields, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void projectionsConstructor(Blackhole bh) {
+        map(reflectionConstructor, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void queryProjection(Blackhole bh) {
+        map(queryProjection, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void handleBean(Blackhole bh) {
+        map(handleBean, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void handleFields(Blackhole bh) {
+        map(handleFields, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void handleConstructor(Blackhole bh) {
+        map(handleConstructor, bh);
+    }
+
+    private void map(FactoryExpression<MemberDto> projection, Blackhole bh) {
+        for (Object[] row : rows) {
+            bh.consume(projection.newInstance(row));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.QueryShape;
+import study.querydsl.support.ObservingJPAQueryFactory;
+import study.querydsl.support.QueryMetrics;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * QueryMetrics를 붙였을 때 늘어나는 시간
+ * 오버헤드가 가장 잘 드러나도록 id 한 건 조회와 작은 목록 조회를 메트릭 없이/있이 실행한다.
+ * (느린 쿼리 로그는 끈다.)
+ *
+ * fingerprint는 그중 실행마다 쿼리 모양을 구하는 비용만 따로 잰 것이다. (QueryMetricsTest.fingerprintOverhead가 상한을 확인한다.)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryMetricsBenchmark {
+
+    @Param({"10000"})
+    int memberCount;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    JPAQueryFactory plain;
+    JPAQueryFactory measured;
+    QueryMetadata teamPageMetadata;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(100, memberCount);
+        em = fixture.createEntityManager();
+        plain = new JPAQueryFactory(HQLTemplates.DEFAULT, em);
+        QueryMetrics metrics = new QueryMetrics(new SimpleMeterRegistry(), Duration.ZERO);
+        measured = new ObservingJPAQueryFactory(HQLTemplates.DEFAULT, em, List.of(metrics));
+        teamPageMetadata = teamPageQuery(plain).getMetadata();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        fixture.close();
+    }
+
+    @Benchmark
+    public Member byIdPlain() {
+        return byId(plain);
+    }
+
+    @Benchmark
+    public Member byIdMeasured() {
+        return byId(measured);
+    }
+
+    @Benchmark
+    public List<Member> teamPagePlain() {
+        return teamPage(plain);
+    }
+
+    @Benchmark
+    public List<Member> teamPageMeasured() {
+        return teamPage(measured);
+    }
+
+    @Benchmark
+    public String fingerprint() {
+        return QueryShape.fingerprint(teamPageMetadata);
+    }
+
+    private Member byId(JPAQueryFactory queryFactory) {
+        Member result = queryFactory
+                .selectFrom(member)
+                .where(member.id.eq((long) nextId()))
+                .fetchOne();
+        em.clear();
+        return result;
+    }
+
+    private List<Member> teamPage(JPAQueryFactory queryFactory) {
+        List<Member> result = teamPageQuery(queryFactory).fetch();
+        em.clear();
+        return result;
+    }
+
+    private JPAQuery<Member> teamPageQuery(JPAQueryFactory queryFactory) {
+        return queryFactory
+                .selectFrom(member)
+                .where(member.team.id.eq((long) (nextId() % 100 + 1)), member.age.goe(50))
+                .orderBy(member.username.asc())
+                .limit(20);
+    }
+
+    private int nextId() {
+        next = next % memberCount + 1;
+        return next;
+    }
+}
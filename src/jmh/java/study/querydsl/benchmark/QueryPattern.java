@@ -0,0 +1,412 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Hibernate;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.dto.UserDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+
+import javax.persistence.EntityManager;
+import java.util.function.Supplier;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * QuerydslBasicTest의 조회 쿼리들을 BenchmarkFixture 데이터(member1.., team1..)에 맞게 옮긴 것
+ *
+ * resultFetch의 fetchOne/fetchFirst/fetchCount, paging2의 fetchResults처럼 실행 방법만 다른 것은
+ * 같은 쿼리에 execute를 따로 두고, findDtoByJPQL은 JPQL 문자열 그대로 실행한다.
+ */
+public enum QueryPattern {
+
+    SEARCH {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .selectFrom(member)
+                    .where(member.username.eq("member1").and(member.age.eq(1)));
+        }
+    },
+    SEARCH_AND_PARAM {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .selectFrom(member)
+                    .where(member.username.eq("member1"), member.age.eq(1));
+        }
+    },
+    FETCH_ONE {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .selectFrom(member)
+                    .where(member.username.eq("member1"));
+        }
+
+        @Override
+        Object execute(JPAQueryFactory queryFactory, EntityManager em) {
+            return build(queryFactory).fetchOne();
+        }
+    },
+    FETCH_FIRST {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .selectFrom(member);
+        }
+
+        @Override
+        Object execute(JPAQueryFactory queryFactory, EntityManager em) {
+            return build(queryFactory).fetchFirst();
+        }
+    },
+    FETCH_COUNT {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .selectFrom(member);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        Object execute(JPAQueryFactory queryFactory, EntityManager em) {
+            return build(queryFactory).fetchCount();
+        }
+    },
+    SORT {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .selectFrom(member)
+                    .where(member.age.eq(99))
+                    .orderBy(member.age.desc(), member.username.asc().nullsLast());
+        }
+    },
+    PAGING {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .selectFrom(member)
+                    .orderBy(member.username.desc())
+                    .offset(1)
+                    .limit(2);
+        }
+    },
+    PAGING_FETCH_RESULTS {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return PAGING.build(queryFactory);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        Object execute(JPAQueryFactory queryFactory, EntityManager em) {
+            return build(queryFactory).fetchResults();
+        }
+    },
+    AGGREGATION {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .select(member.count(),
+                            member.age.sum(),
+                            member.age.avg(),
+                            member.age.max(),
+                            member.age.min())
+                    .from(member);
+        }
+    },
+    GROUP {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .select(team.name, member.age.avg())
+                    .from(member)
+                    .join(member.team, team)
+                    .groupBy(team.name);
+        }
+    },
+    JOIN {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .selectFrom(member)
+                    .join(member.team, team)
+                    .where(team.name.eq("team1"));
+        }
+    },
+    THETA_JOIN {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .select(member)
+                    .from(member, team)
+                    .where(member.username.eq(team.name));
+        }
+    },
+    JOIN_ON_FILTERING {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .select(member, team)
+                    .from(member)
+                    .leftJoin(member.team, team).on(team.name.eq("team1"));
+        }
+    },
+    JOIN_ON_NO_RELATION {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .select(member, team)
+                    .from(member)
+                    .leftJoin(team).on(member.username.eq(team.name));
+        }
+    },
+    FETCH_JOIN_NO {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .selectFrom(member)
+                    .where(member.username.eq("member1"));
+        }
+
+        /**
+         * FETCH_JOIN과 비교할 수 있도록 지연 로딩으로 팀까지 읽는다.
+         */
+        @Override
+        Object execute(JPAQueryFactory queryFactory, EntityManager em) {
+            Member found = (Member) build(queryFactory).fetchOne();
+            Hibernate.initialize(found.getTeam());
+            return found;
+        }
+    },
+    FETCH_JOIN {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .selectFrom(member)
+                    .join(member.team, team).fetchJoin()
+                    .where(member.username.eq("member1"));
+        }
+    },
+    SUB_QUERY {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            QMember memberSub = new QMember("memberSub");
+            return queryFactory
+                    .selectFrom(member)
+                    .where(member.age.eq(
+                            JPAExpressions
+                                    .select(memberSub.age.max())
+                                    .from(memberSub)));
+        }
+    },
+    SUB_QUERY_GOE {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            QMember memberSub = new QMember("memberSub");
+            return queryFactory
+                    .selectFrom(member)
+                    .where(member.age.goe(
+                            JPAExpressions
+                                    .select(memberSub.age.avg())
+                                    .from(memberSub)));
+        }
+    },
+    SUB_QUERY_IN {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            QMember memberSub = new QMember("memberSub");
+            return queryFactory
+                    .selectFrom(member)
+                    .where(member.age.in(
+                            JPAExpressions
+                                    .select(memberSub.age)
+                                    .from(memberSub)
+                                    .where(memberSub.age.gt(90))));
+        }
+    },
+    SELECT_SUB_QUERY {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            QMember memberSub = new QMember("memberSub");
+            return queryFactory
+                    .select(member.username,
+                            JPAExpressions
+                                    .select(memberSub.age.avg())
+                                    .from(memberSub))
+                    .from(member);
+        }
+    },
+    BASIC_CASE {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .select(member.age
+                            .when(10).then("열살")
+                            .when(20).then("스무살")
+                            .otherwise("기타"))
+                    .from(member);
+        }
+    },
+    COMPLEX_CASE {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .select(new CaseBuilder()
+                            .when(member.age.between(0, 20)).then("0~20살")
+                            .when(member.age.between(21, 30)).then("21~30살")
+                            .otherwise("기타"))
+                    .from(member);
+        }
+    },
+    SIMPLE_PROJECTION {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .select(member.username)
+                    .from(member);
+        }
+    },
+    TUPLE_PROJECTION {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .select(member.username, member.age)
+                    .from(member);
+        }
+    },
+    /**
+     * Querydsl 없이 JPQL 문자열로 쓰는 new 연산자
+     * 조립은 createQuery, 직렬화는 할 것이 없으므로 문자열을 그대로 돌려준다.
+     */
+    DTO_BY_JPQL {
+        static final String JPQL = "select new study.querydsl.dto.MemberDto(m.username, m.age) from Member m";
+
+        @Override
+        Object assemble(JPAQueryFactory queryFactory, EntityManager em) {
+            return em.createQuery(JPQL, MemberDto.class);
+        }
+
+        @Override
+        String serialize(JPAQueryFactory queryFactory, EntityManager em) {
+            return JPQL;
+        }
+
+        @Override
+        Object execute(JPAQueryFactory queryFactory, EntityManager em) {
+            return em.createQuery(JPQL, MemberDto.class).getResultList();
+        }
+    },
+    DTO_BY_SETTER {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .select(Projections.bean(MemberDto.class, member.username, member.age))
+                    .from(member);
+        }
+    },
+    DTO_BY_FIELD {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .select(Projections.fields(MemberDto.class, member.username, member.age))
+                    .from(member);
+        }
+    },
+    USER_DTO_BY_FIELD {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            QMember memberSub = new QMember("memberSub");
+            return queryFactory
+                    .select(Projections.fields(UserDto.class,
+                            member.username.as("name"),
+                            ExpressionUtils.as(
+                                    JPAExpressions
+                                            .select(memberSub.age.max())
+                                            .from(memberSub), "age")))
+                    .from(member);
+        }
+    },
+    DTO_BY_CONSTRUCTOR {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .select(Projections.constructor(MemberDto.class, member.username, member.age))
+                    .from(member);
+        }
+    },
+    DTO_BY_QUERY_PROJECTION {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            return queryFactory
+                    .select(new QMemberDto(member.username, member.age))
+                    .from(member);
+        }
+    },
+    DYNAMIC_BOOLEAN_BUILDER {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            String usernameCond = "member1";
+            Integer ageCond = 1;
+            BooleanBuilder builder = new BooleanBuilder();
+            if (usernameCond != null) {
+                builder.and(member.username.eq(usernameCond));
+            }
+            if (ageCond != null) {
+                builder.and(member.age.eq(ageCond));
+            }
+            return queryFactory
+                    .selectFrom(member)
+                    .where(builder);
+        }
+    },
+    DYNAMIC_WHERE_PARAM {
+        @Override
+        JPAQuery<?> build(JPAQueryFactory queryFactory) {
+            String usernameCond = "member1";
+            Integer ageCond = 1;
+            return queryFactory
+                    .selectFrom(member)
+                    .where(nullSafeBuilder(() -> member.username.eq(usernameCond))
+                            .and(nullSafeBuilder(() -> member.age.eq(ageCond))));
+        }
+    };
+
+    /**
+     * Querydsl로 조립하는 패턴은 이것만 구현하고, fetch()가 아닌 방법으로 실행하는 패턴은 execute도 구현한다.
+     */
+    JPAQuery<?> build(JPAQueryFactory queryFactory) {
+        throw new UnsupportedOperationException(name());
+    }
+
+    Object assemble(JPAQueryFactory queryFactory, EntityManager em) {
+        return build(queryFactory);
+    }
+
+    String serialize(JPAQueryFactory queryFactory, EntityManager em) {
+        return build(queryFactory).toString();
+    }
+
+    Object execute(JPAQueryFactory queryFactory, EntityManager em) {
+        return build(queryFactory).fetch();
+    }
+
+    private static BooleanBuilder nullSafeBuilder(Supplier<BooleanExpression> f) {
+        try {
+            return new BooleanBuilder(f.get());
+        } catch (IllegalArgumentException e) {
+            return new BooleanBuilder();
+        }
+    }
+}
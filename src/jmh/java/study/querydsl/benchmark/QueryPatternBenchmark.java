@@ -0,0 +1,76 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QuerydslBasicTest의 쿼리 패턴별로 세 단계를 따로 잰다.
+ *
+ * build     : JPAQuery 조립 (JPQL은 createQuery)
+ * serialize : 조립 + JPQL 직렬화
+ * execute   : 조립 + 직렬화 + 실행/결과 변환
+ *
+ * 할당량은 gc 프로파일러(gc.alloc.rate.norm)로 본다.
+ * ./gradlew jmh -PjmhIncludes=QueryPatternBenchmark -PjmhMemberCount=100000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryPatternBenchmark {
+
+    @Param({"10000"})
+    int memberCount;
+
+    @Param({"100"})
+    int teamCount;
+
+    @Param
+    QueryPattern pattern;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    JPAQueryFactory queryFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(teamCount, memberCount);
+        em = fixture.createEntityManager();
+        queryFactory = new JPAQueryFactory(HQLTemplates.DEFAULT, em);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        fixture.close();
+    }
+
+    @Benchmark
+    public Object build() {
+        return pattern.assemble(queryFactory, em);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return pattern.serialize(queryFactory, em);
+    }
+
+    @Benchmark
+    public Object execute() {
+        Object result = pattern.execute(queryFactory, em);
+        em.clear();
+        return result;
+    }
+}
@@ -0,0 +1,139 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.QueryPlanCache;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * search()와 동적쿼리_WhereParam 모양의 조회를 매번 직렬화(fetch)하는 경우와 QueryPlanCache로 조회하는 경우 비교
+ * 매 호출마다 다른 값을 넣어서 같은 모양, 다른 파라미터 상황을 만든다.
+ * *Cached 결과의 hits/misses 열이 반복(iteration)마다 캐시를 쓴 횟수와 직렬화한 횟수다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryPlanCacheBenchmark {
+
+    @Param({"10000"})
+    int memberCount;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    JPAQueryFactory queryFactory;
+    QueryPlanCache cache;
+    int next;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CacheCounts {
+
+        public long hits;
+        public long misses;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            hits = 0;
+            misses = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(100, memberCount);
+        em = fixture.createEntityManager();
+        queryFactory = new JPAQueryFactory(HQLTemplates.DEFAULT, em);
+        cache = new QueryPlanCache(em, HQLTemplates.DEFAULT, 1000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        fixture.close();
+    }
+
+    @Benchmark
+    public List<Member> searchFetch() {
+        List<Member> result = search().fetch();
+        em.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<Member> searchCached(CacheCounts counts) {
+        return fetchCached(search(), counts);
+    }
+
+    @Benchmark
+    public List<Member> whereParamFetch() {
+        List<Member> result = whereParam().fetch();
+        em.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<Member> whereParamCached(CacheCounts counts) {
+        return fetchCached(whereParam(), counts);
+    }
+
+    private List<Member> fetchCached(JPAQuery<Member> query, CacheCounts counts) {
+        long hits = cache.getHitCount();
+        long misses = cache.getMissCount();
+        List<Member> result = cache.fetch(query);
+        em.clear();
+        counts.hits += cache.getHitCount() - hits;
+        counts.misses += cache.getMissCount() - misses;
+        return result;
+    }
+
+    private JPAQuery<Member> search() {
+        int id = nextId();
+        return queryFactory
+                .selectFrom(member)
+                .where(member.username.eq("member" + id).and(member.age.eq(id % 100)));
+    }
+
+    private JPAQuery<Member> whereParam() {
+        int id = nextId();
+        String usernameCond = "member" + id;
+        Integer ageCond = id % 100;
+        return queryFactory
+                .selectFrom(member)
+                .where(nullSafeBuilder(() -> member.username.eq(usernameCond))
+                        .and(nullSafeBuilder(() -> member.age.eq(ageCond))));
+    }
+
+    private int nextId() {
+        next = next % memberCount + 1;
+        return next;
+    }
+
+    private static BooleanBuilder nullSafeBuilder(Supplier<BooleanExpression> f) {
+        try {
+            return new BooleanBuilder(f.get());
+        } catch (IllegalArgumentException e) {
+            return new BooleanBuilder();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.StatelessQueryExecutor;
+import study.querydsl.support.ObservingJPAQueryFactory;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 50만 명을 엔티티로 조회하고 flush 하는 트랜잭션 하나의 시간
+ *
+ * - managed: 보통 조회, 엔티티마다 스냅샷을 만들고 flush 때 전부 비교한다. (기준선)
+ * - readOnlyQuery: queryFactory.readOnly(), 스냅샷 없이 조회하고 flush 때 건너뛴다.
+ * - readOnlyTransaction: 읽기 전용 트랜잭션(@Transactional(readOnly = true)와 같다)에서 보통 조회
+ * - stateless: StatelessQueryExecutor, 영속성 컨텍스트 자체가 없다.
+ *
+ * 보조 카운터 flushMillis / transactions가 트랜잭션당 flush 시간이다.
+ * 힙 사용량은 gc 프로파일러의 gc.alloc.rate.norm(B/op)으로 비교한다. 스냅샷(Object[])과 EntityEntry가 빠지는 만큼 줄어든다.
+ * 회원 수는 -PjmhMemberCount 로 바꿀 수 있다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReadOnlyBenchmark {
+
+    @Param({"500000"})
+    int memberCount;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    ObservingJPAQueryFactory queryFactory;
+    StatelessQueryExecutor stateless;
+    TransactionTemplate tx;
+    TransactionTemplate readOnlyTx;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Flush {
+
+        public long flushMillis;
+        public long transactions;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            flushMillis = 0;
+            transactions = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(100, memberCount);
+        em = fixture.getBean(EntityManager.class);
+        queryFactory = fixture.getBean(ObservingJPAQueryFactory.class);
+        stateless = fixture.getBean(StatelessQueryExecutor.class);
+        PlatformTransactionManager transactionManager = fixture.getBean(PlatformTransactionManager.class);
+        tx = new TransactionTemplate(transactionManager);
+        readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public int managed(Flush flush) {
+        return tx.execute(status -> fetchThenFlush(() -> queryFactory.selectFrom(member).fetch(), flush));
+    }
+
+    @Benchmark
+    public int readOnlyQuery(Flush flush) {
+        return tx.execute(status -> fetchThenFlush(() -> queryFactory.readOnly().selectFrom(member).fetch(), flush));
+    }
+
+    @Benchmark
+    public int readOnlyTransaction(Flush flush) {
+        return readOnlyTx.execute(status -> fetchThenFlush(() -> queryFactory.selectFrom(member).fetch(), flush));
+    }
+
+    @Benchmark
+    public int stateless(Flush flush) {
+        return readOnlyTx.execute(status -> fetchThenFlush(
+                () -> stateless.read(queries -> queries.selectFrom(member).fetch()), flush));
+    }
+
+    /**
+     * 읽기 전용 트랜잭션은 커밋 때 flush 하지 않으므로 모두 직접 flush 해서 같은 조건으로 잰다.
+     */
+    private int fetchThenFlush(Supplier<List<Member>> fetch, Flush flush) {
+        List<Member> members = fetch.get();
+        long start = System.nanoTime();
+        em.flush();
+        flush.flushMillis += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        flush.transactions++;
+        return members.size();
+    }
+}
@@ -0,0 +1,64 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.QuerydslApplication;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 애플리케이션 콜드 스타트 시간 (웹 서버 포함, 컨텍스트가 준비될 때까지)
+ *
+ * - default: 기본 설정
+ * - fast-startup: 지연 초기화, 백그라운드 JPA 부트스트랩, JDBC 메타데이터 조회 생략 (application.yml의 fast-startup 프로필)
+ *
+ * 포크마다 새 JVM에서 한 번만 띄우므로 클래스 로딩, JIT 전의 시간이 그대로 잡힌다.
+ * 컴포넌트/엔티티 인덱스(spring-context-indexer)는 빌드에 들어 있으므로 두 경우 모두 적용된다.
+ * gradle jmh 설정(warmupIterations, iterations)이 애너테이션보다 우선하므로 jmhJar로 직접 실행한다.
+ * ex) ./gradlew jmhJar && java -jar build/libs/querydsl-0.0.1-SNAPSHOT-jmh.jar StartupBenchmark -wi 0 -i 1
+ * 테스트 전체 시간은 ./gradlew cleanTest test 의 build/reports/tests/test/index.html 에서 변경 전후를 비교한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+
+    @Param({"default", "fast-startup"})
+    String profile;
+
+    ConfigurableApplicationContext context;
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    public ConfigurableApplicationContext start() {
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .profiles(profile)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:startup;DB_CLOSE_DELAY=-1",
+                        "logging.level.root=warn")
+                .run();
+        return context;
+    }
+}
@@ -0,0 +1,111 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.entity.QMember;
+import study.querydsl.repository.SubQueryOptimizer;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * select 절 서브쿼리를 행마다 실행할 때와 SubQueryOptimizer로 바꿔서 실행할 때의 조회 시간
+ *
+ * averageAge : selectSubQuery와 같은 상관없는 서브쿼리 (전체 평균 나이)
+ * teamMaxAge : memberSub.team = member.team으로 연결된 팀별 최대 나이
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SubQueryBenchmark {
+
+    private static final QMember memberSub = new QMember("memberSub");
+
+    @Param({"100000"})
+    int memberCount;
+
+    @Param({"100"})
+    int teamCount;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    JPAQueryFactory queryFactory;
+    SubQueryOptimizer optimizer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(teamCount, memberCount);
+        em = fixture.createEntityManager();
+        queryFactory = new JPAQueryFactory(HQLTemplates.DEFAULT, em);
+        optimizer = new SubQueryOptimizer(em, HQLTemplates.DEFAULT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        fixture.close();
+    }
+
+    @Benchmark
+    public List<Tuple> averageAgePerRow() {
+        List<Tuple> result = averageAge().fetch();
+        em.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<Tuple> averageAgeRewritten() {
+        List<Tuple> result = optimizer.fetch(averageAge());
+        em.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<Tuple> teamMaxAgePerRow() {
+        List<Tuple> result = teamMaxAge().fetch();
+        em.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<Tuple> teamMaxAgeRewritten() {
+        List<Tuple> result = optimizer.fetch(teamMaxAge());
+        em.clear();
+        return result;
+    }
+
+    private JPAQuery<Tuple> averageAge() {
+        return queryFactory
+                .select(member.username,
+                        JPAExpressions
+                                .select(memberSub.age.avg())
+                                .from(memberSub))
+                .from(member);
+    }
+
+    private JPAQuery<Tuple> teamMaxAge() {
+        return queryFactory
+                .select(member.username,
+                        JPAExpressions
+                                .select(memberSub.age.max())
+                                .from(memberSub)
+                                .where(memberSub.team.eq(member.team)))
+                .from(member);
+    }
+}
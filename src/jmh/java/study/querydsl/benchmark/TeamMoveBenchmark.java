@@ -0,0 +1,128 @@
+package study.querydsl.benchmark;
+
+import org.hibernate.Hibernate;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.QueryActivity;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 회원 10만 명씩인 두 팀 사이에서 회원 한 명을 옮기는 비용
+ *
+ * - moveLoadingCollections: 옛 팀/새 팀의 members를 로딩해서 빼고 넣는다. (extra-lazy 전에 컬렉션을 맞추던 방법)
+ * - moveChangeTeam: Member.changeTeam(), 컬렉션을 로딩하지 않는다.
+ * - teamSize: team.getMembers().size(), extra-lazy라서 count 쿼리 하나로 답한다.
+ *
+ * 호출당 SQL 수(statements)와 로딩된 엔티티 수(entities)는 보조 카운터로,
+ * 힙 사용량은 gc 프로파일러의 gc.alloc.rate.norm(호출당 할당 바이트)으로 본다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TeamMoveBenchmark {
+
+    @Param({"200000"})
+    int memberCount;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    int next;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Activity {
+
+        public long statements;
+        public long entities;
+
+        long statementsBefore;
+        long entitiesBefore;
+
+        @Setup(Level.Invocation)
+        public void before() {
+            statementsBefore = QueryActivity.current().getStatements();
+            entitiesBefore = QueryActivity.current().getEntities();
+        }
+
+        @TearDown(Level.Invocation)
+        public void after() {
+            statements += QueryActivity.current().getStatements() - statementsBefore;
+            entities += QueryActivity.current().getEntities() - entitiesBefore;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(2, memberCount);
+        em = fixture.createEntityManager();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        fixture.close();
+    }
+
+    @Benchmark
+    public Member moveLoadingCollections(Activity activity) {
+        return move(member -> {
+            Team from = member.getTeam();
+            Team to = otherTeam(from);
+            Hibernate.initialize(from.getMembers());
+            Hibernate.initialize(to.getMembers());
+            from.getMembers().remove(member);
+            member.setTeam(to);
+            to.getMembers().add(member);
+        });
+    }
+
+    @Benchmark
+    public Member moveChangeTeam(Activity activity) {
+        return move(member -> member.changeTeam(otherTeam(member.getTeam())));
+    }
+
+    @Benchmark
+    public int teamSize(Activity activity) {
+        int size = em.find(Team.class, 1L).getMembers().size();
+        em.clear();
+        return size;
+    }
+
+    private Member move(Consumer<Member> change) {
+        em.getTransaction().begin();
+        try {
+            Member member = em.find(Member.class, (long) nextId());
+            change.accept(member);
+            em.getTransaction().commit();
+            return member;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.clear();
+        }
+    }
+
+    private Team otherTeam(Team team) {
+        return em.getReference(Team.class, team.getId() == 1L ? 2L : 1L);
+    }
+
+    private int nextId() {
+        next = next % memberCount + 1;
+        return next;
+    }
+}
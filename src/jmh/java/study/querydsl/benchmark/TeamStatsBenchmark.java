@@ -0,0 +1,88 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.repository.TeamStatsRepository;
+import study.querydsl.service.TeamStatsMaintainer;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀별 count/sum/avg/max/min 조회 시간
+ *
+ * liveGroupBy : group()/aggregation()처럼 회원을 조인해서 매번 groupBy(team.name)
+ * teamStats   : 미리 집계된 team_stats를 팀과 조인해서 읽기만 한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TeamStatsBenchmark {
+
+    @Param({"100000"})
+    int memberCount;
+
+    @Param({"100"})
+    int teamCount;
+
+    BenchmarkFixture fixture;
+    EntityManager em;
+    JPAQueryFactory queryFactory;
+    TeamStatsRepository teamStatsRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start(teamCount, memberCount);
+        fixture.getBean(TeamStatsMaintainer.class).rebuildAll();
+        em = fixture.createEntityManager();
+        queryFactory = new JPAQueryFactory(HQLTemplates.DEFAULT, em);
+        teamStatsRepository = new TeamStatsRepository(queryFactory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        fixture.close();
+    }
+
+    @Benchmark
+    public List<Tuple> liveGroupBy() {
+        List<Tuple> result = queryFactory
+                .select(team.name,
+                        member.count(),
+                        member.age.sum(),
+                        member.age.avg(),
+                        member.age.max(),
+                        member.age.min())
+                .from(member)
+                .join(member.team, team)
+                .groupBy(team.name)
+                .orderBy(team.name.asc())
+                .fetch();
+        em.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<TeamStatsDto> teamStats() {
+        List<TeamStatsDto> result = teamStatsRepository.findAll();
+        em.clear();
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import study.querydsl.support.ReplicaRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * querydsl.routing.enabled=true면 spring.datasource를 primary로, replica-urls를 복제본으로 쓴다.
+ * 복제본은 primary와 같은 계정, 풀 설정(spring.datasource.hikari.*)을 쓰고 URL과 풀 이름만 다르다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "querydsl.routing.enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            DataSourceProperties properties,
+            Environment environment,
+            @Value("${querydsl.routing.replica-urls}") List<String> replicaUrls,
+            @Value("${querydsl.routing.strategy:round-robin}") String strategy,
+            @Value("${querydsl.routing.sticky-window:1s}") Duration stickyWindow) {
+        HikariConfig settings = Binder.get(environment)
+                .bind("spring.datasource.hikari", HikariConfig.class)
+                .orElseGet(HikariConfig::new);
+        DataSource primary = pool(properties, settings, properties.determineUrl(), "primary");
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            replicas.add(pool(properties, settings, replicaUrls.get(i), "replica-" + i));
+        }
+        return new ReplicaRoutingDataSource(primary, replicas,
+                ReplicaRoutingDataSource.Strategy.valueOf(strategy.toUpperCase().replace('-', '_')), stickyWindow);
+    }
+
+    /**
+     * DataSourceProperties(spring.datasource)에는 URL, 계정, 드라이버만 있으므로 풀 설정은 따로 바인딩해서 복사한다.
+     * 풀은 자동 설정처럼 첫 커넥션을 얻을 때 만들어진다.
+     */
+    private static HikariDataSource pool(DataSourceProperties properties, HikariConfig settings,
+                                         String url, String name) {
+        HikariDataSource pool = new HikariDataSource();
+        settings.copyStateTo(pool);
+        pool.setJdbcUrl(url);
+        pool.setUsername(properties.determineUsername());
+        pool.setPassword(properties.determinePassword());
+        pool.setDriverClassName(properties.determineDriverClassName());
+        pool.setPoolName(settings.getPoolName() == null ? name : settings.getPoolName() + "-" + name);
+        return pool;
+    }
+
+    /**
+     * 첫 SQL을 실행할 때 커넥션을 얻어야 읽기 전용 트랜잭션인지 알 수 있다.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
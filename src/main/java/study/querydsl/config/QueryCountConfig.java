@@ -0,0 +1,54 @@
+package study.querydsl.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import study.querydsl.support.EntityLoadCounter;
+import study.querydsl.support.QueryCountFilter;
+import study.querydsl.support.QueryCountInspector;
+import study.querydsl.support.QueryMetrics;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+
+@Configuration
+public class QueryCountConfig {
+
+    @Bean
+    public QueryCountInspector queryCountInspector(
+            @Value("${querydsl.n-plus-one.threshold:10}") int threshold,
+            @Value("${querydsl.n-plus-one.mode:log}") String mode) {
+        return new QueryCountInspector(threshold, QueryCountInspector.Mode.valueOf(mode.toUpperCase()));
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer queryCountInspectorCustomizer(QueryCountInspector inspector) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, inspector);
+    }
+
+    @Bean
+    public QueryCountFilter queryCountFilter(QueryCountInspector inspector) {
+        return new QueryCountFilter(inspector);
+    }
+
+    @Bean
+    @Lazy(false)
+    public EntityLoadCounter entityLoadCounter(EntityManagerFactory emf) {
+        return new EntityLoadCounter(emf);
+    }
+
+    /**
+     * QueryObserver로 등록되므로 jpaQueryFactory로 만든 쿼리는 모두 측정된다.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "querydsl.metrics.enabled", havingValue = "true")
+    public QueryMetrics queryMetrics(MeterRegistry registry,
+                                     @Value("${querydsl.metrics.slow-query-threshold:500ms}") Duration slowQueryThreshold) {
+        return new QueryMetrics(registry, slowQueryThreshold);
+    }
+}
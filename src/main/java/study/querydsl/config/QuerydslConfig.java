@@ -0,0 +1,195 @@
+package study.querydsl.config;
+
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.querydsl.repository.AsyncQueryExecutor;
+import study.querydsl.repository.BulkInsertExecutor;
+import study.querydsl.repository.ChunkedBulkExecutor;
+import study.querydsl.repository.PartitionedQueryExecutor;
+import study.querydsl.repository.QueryPlanCache;
+import study.querydsl.repository.QuerydslExporter;
+import study.querydsl.repository.QuerydslPager;
+import study.querydsl.repository.QuerydslStreams;
+import study.querydsl.repository.StatelessQueryExecutor;
+import study.querydsl.repository.SubQueryOptimizer;
+import study.querydsl.repository.SyncingBulkExecutor;
+import study.querydsl.entity.MemberBuckets;
+import study.querydsl.support.DerivedColumn;
+import study.querydsl.support.DerivedColumnMaintainer;
+import study.querydsl.support.IndexAdvisor;
+import study.querydsl.support.ObservingJPAQueryFactory;
+import study.querydsl.support.QueryObserver;
+import study.querydsl.support.ReadOnlyGuard;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+@Configuration
+public class QuerydslConfig {
+
+    /**
+     * 스프링이 주입하는 EntityManager는 트랜잭션 단위로 바인딩되는 프록시이므로
+     * JPAQueryFactory를 싱글톤 빈으로 공유해도 동시성 문제가 없다.
+     *
+     * 프록시로는 JPA 구현체를 판별하지 못할 수 있어서 HQLTemplates를 직접 지정한다.
+     * 그래야 iterate()가 Hibernate scroll을 사용한다.
+     *
+     * 등록된 QueryObserver(IndexAdvisor ...)가 있으면 이 팩토리로 만든 쿼리가 실행될 때마다 알린다.
+     * 등록된 DerivedColumn 중 generated column이 확인된 것(DerivedColumnMaintainer)만 미리 계산된 컬럼으로 바꿔서 실행한다.
+     * 조회만 할 때는 ObservingJPAQueryFactory로 주입받아서 readOnly()를 쓴다.
+     * update/delete는 실행 전후에 BulkListener(TeamStatsMaintainer ...)에 알린다.
+     */
+    @Bean
+    public ObservingJPAQueryFactory jpaQueryFactory(EntityManager em, ObjectProvider<QueryObserver> observers,
+                                           DerivedColumnMaintainer derivedColumnMaintainer,
+                                           ObjectProvider<SyncingBulkExecutor.BulkListener> bulkListeners) {
+        return new ObservingJPAQueryFactory(HQLTemplates.DEFAULT, em,
+                observers.orderedStream().collect(Collectors.toList()),
+                derivedColumnMaintainer.getVerifiedColumns(),
+                () -> bulkListeners.orderedStream().collect(Collectors.toList()));
+    }
+
+    /**
+     * 읽기 전용 트랜잭션에서 persist/merge/remove를 하면 바로 실패시킨다.
+     * Hibernate 리스너를 등록하는 빈은 주입받는 곳이 없으므로 지연 초기화에서 빠지도록 @Lazy(false)로 둔다.
+     */
+    @Bean
+    @Lazy(false)
+    public ReadOnlyGuard readOnlyGuard(EntityManagerFactory emf) {
+        return new ReadOnlyGuard(emf);
+    }
+
+    @Bean
+    public StatelessQueryExecutor statelessQueryExecutor(EntityManager em) {
+        return new StatelessQueryExecutor(em, HQLTemplates.DEFAULT);
+    }
+
+    @Bean
+    public DerivedColumn<String> memberAgeBucket() {
+        return MemberBuckets.AGE_BUCKET;
+    }
+
+    @Bean
+    @Lazy(false)
+    public DerivedColumnMaintainer derivedColumnMaintainer(
+            EntityManagerFactory emf, DataSource dataSource, ObjectProvider<DerivedColumn<?>> derivedColumns,
+            @Value("${querydsl.derived-columns.create-columns:false}") boolean createColumns) {
+        return new DerivedColumnMaintainer(emf, dataSource, derivedColumns.orderedStream().collect(Collectors.toList()),
+                createColumns);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "querydsl.index-advisor.enabled", havingValue = "true")
+    public IndexAdvisor indexAdvisor(EntityManagerFactory emf, DataSource dataSource) {
+        return new IndexAdvisor(emf, dataSource);
+    }
+
+    @Bean
+    public QueryPlanCache queryPlanCache(EntityManager em,
+                                         @Value("${querydsl.plan-cache.max-entries:1000}") int maxEntries) {
+        return new QueryPlanCache(em, HQLTemplates.DEFAULT, maxEntries);
+    }
+
+    @Bean
+    public SubQueryOptimizer subQueryOptimizer(EntityManager em) {
+        return new SubQueryOptimizer(em, HQLTemplates.DEFAULT);
+    }
+
+    /**
+     * BulkListener는 jpaQueryFactory의 update/delete가 알리므로 여기에 다시 넘기지 않는다.
+     */
+    @Bean
+    public SyncingBulkExecutor syncingBulkExecutor(EntityManager em, JPAQueryFactory queryFactory) {
+        return new SyncingBulkExecutor(em, queryFactory);
+    }
+
+    @Bean
+    public BulkInsertExecutor bulkInsertExecutor(EntityManager em,
+                                                 @Value("${querydsl.bulk-insert.batch-size:1000}") int batchSize,
+                                                 ObjectProvider<SyncingBulkExecutor.BulkListener> listeners) {
+        return new BulkInsertExecutor(em, HQLTemplates.DEFAULT, batchSize,
+                listeners.orderedStream().collect(Collectors.toList()));
+    }
+
+    @Bean
+    public ChunkedBulkExecutor chunkedBulkExecutor(EntityManagerFactory emf,
+                                                   @Value("${querydsl.bulk-chunk.size:10000}") int chunkSize,
+                                                   @Value("${querydsl.bulk-chunk.pause:0ms}") Duration pause,
+                                                   ObjectProvider<SyncingBulkExecutor.BulkListener> listeners) {
+        return new ChunkedBulkExecutor(emf, HQLTemplates.DEFAULT, chunkSize, pause,
+                listeners.orderedStream().collect(Collectors.toList()));
+    }
+
+    @Bean
+    public QuerydslStreams querydslStreams(EntityManager em,
+                                           @Value("${querydsl.stream.fetch-size:500}") int fetchSize,
+                                           @Value("${querydsl.stream.clear-interval:1000}") int clearInterval) {
+        return new QuerydslStreams(em, fetchSize, clearInterval);
+    }
+
+    @Bean
+    public QuerydslExporter querydslExporter(EntityManager em,
+                                             @Value("${querydsl.export.fetch-size:1000}") int fetchSize,
+                                             @Value("${querydsl.export.buffer-size:1048576}") int bufferSize,
+                                             @Value("${querydsl.export.batch-rows:65536}") int batchRows) {
+        return new QuerydslExporter(em, HQLTemplates.DEFAULT, fetchSize, bufferSize, batchRows);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor countQueryExecutor(@Value("${querydsl.paging.count-threads:4}") int countThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(countThreads);
+        executor.setMaxPoolSize(countThreads);
+        executor.setThreadNamePrefix("count-query-");
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor partitionQueryExecutor(@Value("${querydsl.partition.threads:4}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("partition-query-");
+        return executor;
+    }
+
+    /**
+     * 구간 수는 스레드 수와 같게 둔다. 동시에 쓰는 커넥션도 최대 스레드 수만큼이다.
+     */
+    @Bean
+    public PartitionedQueryExecutor partitionedQueryExecutor(EntityManagerFactory emf,
+                                                             ThreadPoolTaskExecutor partitionQueryExecutor) {
+        return new PartitionedQueryExecutor(emf, partitionQueryExecutor, partitionQueryExecutor.getMaxPoolSize());
+    }
+
+    @Bean
+    public ExecutorService asyncQueryThreads(@Value("${querydsl.async.threads:50}") int threads,
+                                             @Value("${querydsl.async.queue-capacity:10000}") int queueCapacity) {
+        return AsyncQueryExecutor.newExecutorService(threads, queueCapacity);
+    }
+
+    @Bean
+    public AsyncQueryExecutor asyncQueryExecutor(EntityManager em, PlatformTransactionManager transactionManager,
+                                                 ExecutorService asyncQueryThreads) {
+        return new AsyncQueryExecutor(em, transactionManager, asyncQueryThreads);
+    }
+
+    @Bean
+    public QuerydslPager querydslPager(EntityManagerFactory emf, ThreadPoolTaskExecutor countQueryExecutor,
+                                       @Value("${querydsl.paging.count-cache-ttl:0s}") Duration countCacheTtl,
+                                       @Value("${querydsl.paging.count-cache-max-entries:1000}") int countCacheMaxEntries) {
+        return new QuerydslPager(emf, countQueryExecutor, countCacheTtl, countCacheMaxEntries);
+    }
+}
@@ -0,0 +1,24 @@
+package study.querydsl.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+/**
+ * querydsl.startup.background-jpa-bootstrap=true면 EntityManagerFactory(Hibernate 메타모델, 스키마 생성)를 별도 스레드에서 만든다.
+ *
+ * 그동안 컨텍스트는 나머지 빈(웹, actuator, 스레드 풀 ...)을 계속 만들고, EntityManagerFactory를 실제로 쓰는 곳에서 완료를 기다린다.
+ * Hibernate 리스너를 등록하는 빈(TeamStatsMaintainer, DerivedColumnMaintainer ...)은 afterSingletonsInstantiated()에서
+ * 등록하므로 컨텍스트 시작의 맨 끝에서 합류한다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "querydsl.startup.background-jpa-bootstrap", havingValue = "true")
+public class StartupConfig {
+
+    @Bean
+    public EntityManagerFactoryBuilderCustomizer backgroundJpaBootstrap() {
+        return builder -> builder.setBootstrapExecutor(new SimpleAsyncTaskExecutor("jpa-bootstrap-"));
+    }
+}
@@ -0,0 +1,111 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionException;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link DtoProjections}가 만드는 FactoryExpression
+ * 조회된 한 행(Object[])을 캐시된 {@link RowMapper}로 DTO로 바꾼다.
+ */
+final class DtoFactoryExpression<T> extends FactoryExpressionBase<T> {
+
+    private final RowMapper mapper;
+    private final List<Expression<?>> args;
+
+    DtoFactoryExpression(Class<? extends T> type, RowMapper mapper, Expression<?>... args) {
+        super(type);
+        this.mapper = mapper;
+        this.args = Collections.unmodifiableList(Arrays.asList(args));
+    }
+
+    @Override
+    public List<Expression<?>> getArgs() {
+        return args;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T newInstance(Object... row) {
+        try {
+            return (T) mapper.map(row);
+        } catch (Throwable e) {
+            throw new ExpressionException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public <R, C> R accept(Visitor<R, C> v, C context) {
+        return v.visit(this, context);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof DtoFactoryExpression)) {
+            return false;
+        }
+        DtoFactoryExpression<?> other = (DtoFactoryExpression<?>) o;
+        return getType().equals(other.getType()) && mapper == other.mapper && args.equals(other.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * getType().hashCode() + args.hashCode();
+    }
+
+    interface RowMapper {
+        Object map(Object[] row) throws Throwable;
+    }
+
+    /**
+     * 기본 생성자로 만들고 setter(또는 필드)로 주입한다. null 값은 QBean처럼 주입하지 않는다.
+     * creator: ()Object, setters: (Object, Object)void
+     */
+    static final class PropertyMapper implements RowMapper {
+
+        private final MethodHandle creator;
+        private final MethodHandle[] setters;
+
+        PropertyMapper(MethodHandle creator, MethodHandle[] setters) {
+            this.creator = creator;
+            this.setters = setters;
+        }
+
+        @Override
+        public Object map(Object[] row) throws Throwable {
+            Object bean = (Object) creator.invokeExact();
+            for (int i = 0; i < setters.length; i++) {
+                if (row[i] != null) {
+                    setters[i].invokeExact(bean, row[i]);
+                }
+            }
+            return bean;
+        }
+    }
+
+    /**
+     * creator: (Object[])Object
+     */
+    static final class ConstructorMapper implements RowMapper {
+
+        private final MethodHandle creator;
+
+        ConstructorMapper(MethodHandle creator) {
+            this.creator = creator;
+        }
+
+        @Override
+        public Object map(Object[] row) throws Throwable {
+            return (Object) creator.invokeExact(row);
+        }
+    }
+}
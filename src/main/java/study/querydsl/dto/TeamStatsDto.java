@@ -0,0 +1,27 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+
+@Data
+public class TeamStatsDto {
+    private String teamName;
+    private long memberCount;
+    private long ageSum;
+    private Integer minAge;
+    private Integer maxAge;
+    public TeamStatsDto() {
+    }
+    @QueryProjection
+    public TeamStatsDto(String teamName, long memberCount, long ageSum, Integer minAge, Integer maxAge) {
+        this.teamName = teamName;
+        this.memberCount = memberCount;
+        this.ageSum = ageSum;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+    }
+
+    public Double getAgeAvg() {
+        return memberCount == 0 ? null : (double) ageSum / memberCount;
+    }
+}
@@ -1,10 +1,15 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
@@ -12,7 +17,8 @@ import javax.persistence.*;
 public class Member {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 100)
     @Column(name = "member_id")
     private Long id;
     private String username;
@@ -20,6 +26,12 @@ public class Member {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "team_id")
     private Team team;
+    /**
+     * MemberBuckets.AGE_BUCKET으로 DB가 계산하는 나이대 (DerivedColumnMaintainer)
+     */
+    @Setter(AccessLevel.NONE)
+    @Column(name = "age_bucket", insertable = false, updatable = false)
+    private String ageBucket;
 
     public Member(String username) {
         this(username, 0);
@@ -34,8 +46,18 @@ public class Member {
             changeTeam(team);
         }
     }
+    /**
+     * 옛 팀의 회원 컬렉션에서 빼고 새 팀의 컬렉션에 넣는다.
+     * 두 팀의 컬렉션을 로딩하지 않는다. 옛 팀이 아직 로딩되지 않은 프록시면 그 컬렉션도 로딩된 적이 없으므로 건드리지 않는다.
+     */
     public void changeTeam(Team team) {
+        if (this.team == team) {
+            return;
+        }
+        if (this.team != null && Hibernate.isInitialized(this.team)) {
+            this.team.removeMember(this);
+        }
         this.team = team;
-        team.getMembers().add(this);
+        team.addMember(this);
     }
 }
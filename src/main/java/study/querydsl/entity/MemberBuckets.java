@@ -0,0 +1,27 @@
+package study.querydsl.entity;
+
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.core.types.dsl.StringExpression;
+import study.querydsl.support.DerivedColumn;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원을 나누는 규칙
+ * 쿼리에서 AGE_RANGE를 쓰면 행마다 CASE를 계산하지 않고 미리 계산된 member.ageBucket 컬럼을 읽는다.
+ */
+public final class MemberBuckets {
+
+    /**
+     * complexCase의 나이대
+     */
+    public static final StringExpression AGE_RANGE = new CaseBuilder()
+            .when(member.age.between(0, 20)).then("0~20살")
+            .when(member.age.between(21, 30)).then("21~30살")
+            .otherwise("기타");
+
+    public static final DerivedColumn<String> AGE_BUCKET = DerivedColumn.of(member.ageBucket, AGE_RANGE);
+
+    private MemberBuckets() {
+    }
+}
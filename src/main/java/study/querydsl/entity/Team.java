@@ -1,12 +1,19 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
@@ -14,15 +21,41 @@ import java.util.List;
 public class Team {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq_generator")
+    @SequenceGenerator(name = "team_seq_generator", sequenceName = "team_seq", allocationSize = 100)
     @Column(name = "team_id")
     private Long id;
     private String name;
 
+    /**
+     * 회원이 많은 팀에서도 컬렉션 전체를 로딩하지 않도록 extra-lazy로 둔다.
+     * 초기화되지 않았으면 size()는 count 쿼리, contains()는 한 건 존재 여부 쿼리로 답하고,
+     * add()는 컬렉션을 읽지 않고 쌓아두었다가 초기화될 때 합친다. (mappedBy 쪽이므로 SQL은 member.team으로 나간다.)
+     * 순회하면 그때 default_batch_fetch_size만큼 팀을 묶어서 초기화한다.
+     */
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @LazyCollection(LazyCollectionOption.EXTRA)
     @OneToMany(mappedBy = "team")
     private List<Member> members = new ArrayList<>();
 
     public Team(String name) {
         this.name = name;
     }
+
+    /**
+     * Member.changeTeam()에서 쓴다.
+     */
+    public void addMember(Member member) {
+        members.add(member);
+    }
+
+    /**
+     * Member.changeTeam()에서 쓴다.
+     * 초기화되지 않은 컬렉션은 다음에 DB에서 읽을 때 이미 빠져 있으므로 건드리지 않는다.
+     */
+    public void removeMember(Member member) {
+        if (Hibernate.isInitialized(members)) {
+            members.remove(member);
+        }
+    }
 }
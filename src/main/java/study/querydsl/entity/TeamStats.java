@@ -0,0 +1,32 @@
+package study.querydsl.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * 팀별 회원 수, 나이 합계/최소/최대를 미리 집계해둔 테이블
+ *
+ * 회원이 바뀔 때마다 TeamStatsMaintainer가 JDBC로 직접 갱신하므로 2차 캐시에 올리지 않고,
+ * 엔티티로 읽기보다는 TeamStatsRepository의 프로젝션으로 읽는다.
+ * 팀과는 외래 키 없이 team_id만 같이 쓴다.
+ */
+@Entity
+@Table(name = "team_stats")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString(of = {"teamId", "memberCount", "ageSum", "minAge", "maxAge"})
+public class TeamStats {
+
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+    @Column(name = "member_count")
+    private long memberCount;
+    @Column(name = "age_sum")
+    private long ageSum;
+    @Column(name = "min_age")
+    private Integer minAge;
+    @Column(name = "max_age")
+    private Integer maxAge;
+}
@@ -0,0 +1,33 @@
+package study.querydsl.repository;
+
+import lombok.Getter;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 페이지 내용은 바로 돌려주고, 전체 개수는 별도 스레드에서 계산해서 future로 돌려준다.
+ */
+@Getter
+public class AsyncPage<T> {
+
+    private final List<T> content;
+    private final Pageable pageable;
+    private final CompletableFuture<Long> total;
+
+    public AsyncPage(List<T> content, Pageable pageable, CompletableFuture<Long> total) {
+        this.content = content;
+        this.pageable = pageable;
+        this.total = total;
+    }
+
+    /**
+     * count 쿼리가 끝날 때까지 기다렸다가 Page로 변환한다.
+     */
+    public Page<T> toPage() {
+        return new PageImpl<>(content, pageable, total.join());
+    }
+}
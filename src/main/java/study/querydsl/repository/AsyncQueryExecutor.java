@@ -0,0 +1,80 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.dml.DMLClause;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JPAQuery/벌크 연산을 전용 executor에서 실행하고 CompletableFuture로 돌려준다.
+ *
+ * 작업마다 그 스레드에서 새 트랜잭션을 열고, 쿼리는 스프링의 공유 EntityManager로 복제해서 실행하므로
+ * 작업마다 트랜잭션에 묶인 EntityManager를 따로 쓴다. (호출한 스레드의 트랜잭션, 영속성 컨텍스트와는 무관하다.)
+ * 조회는 읽기 전용 트랜잭션으로 실행하고, 돌려받은 엔티티는 준영속 상태라 지연 로딩을 할 수 없다.
+ *
+ * executeAsync에 넘기는 update/delete 절은 공유 EntityManager로 만든 것(JPAQueryFactory 빈)이어야 한다.
+ */
+public class AsyncQueryExecutor {
+
+    private final EntityManager em;
+    private final TransactionTemplate readTx;
+    private final TransactionTemplate writeTx;
+    private final Executor executor;
+
+    /**
+     * @param em 스프링이 주입한 공유 EntityManager
+     */
+    public AsyncQueryExecutor(EntityManager em, PlatformTransactionManager transactionManager, Executor executor) {
+        this.em = em;
+        this.readTx = new TransactionTemplate(transactionManager);
+        this.readTx.setReadOnly(true);
+        this.writeTx = new TransactionTemplate(transactionManager);
+        this.executor = executor;
+    }
+
+    public <T> CompletableFuture<List<T>> fetchAsync(JPAQuery<T> query) {
+        JPAQuery<T> task = query.clone(em);
+        return CompletableFuture.supplyAsync(() -> readTx.execute(status -> task.fetch()), executor);
+    }
+
+    public <T> CompletableFuture<T> fetchOneAsync(JPAQuery<T> query) {
+        JPAQuery<T> task = query.clone(em);
+        return CompletableFuture.supplyAsync(() -> readTx.execute(status -> task.fetchOne()), executor);
+    }
+
+    /**
+     * @return 변경된 행 수
+     */
+    public CompletableFuture<Long> executeAsync(DMLClause<?> clause) {
+        return CompletableFuture.supplyAsync(() -> writeTx.execute(status -> clause.execute()), executor);
+    }
+
+    /**
+     * 가상 스레드를 지원하는 런타임(Java 21+)이면 작업마다 가상 스레드를 쓰고,
+     * 아니면 threads개 스레드와 queueCapacity 크기의 대기열을 가진 풀을 만든다. 대기열이 차면 작업을 거절한다.
+     * 어느 쪽이든 동시에 DB를 쓰는 작업 수는 커넥션 풀 크기로 제한된다.
+     */
+    public static ExecutorService newExecutorService(int threads, int queueCapacity) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("async-query-"));
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+}
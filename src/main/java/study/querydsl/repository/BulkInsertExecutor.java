@@ -0,0 +1,287 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.jpa.JPQLTemplates;
+import org.hibernate.action.internal.BulkOperationCleanupAction;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.PostInsertIdentifierGenerator;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.Type;
+import study.querydsl.support.ReadOnlyGuard;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TransactionRequiredException;
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 영속성 컨텍스트를 거치지 않는 대량 insert
+ *
+ * em.persist() 반복은 엔티티마다 영속성 컨텍스트 등록, 스냅샷, flush 때 변경 감지를 거친다. 여기서는
+ * - select(): insert into member (...) select ... 한 문장으로 DB 안에서 복사한다.
+ *   서브쿼리는 Querydsl(JPAExpressions.select ...)로 쓰고 SQL은 SqlTranslation으로 만든다.
+ * - values(): 행마다 값을 모아서 insert into member (...) values (?, ...)를 batchSize 행씩 JDBC 배치로 보낸다.
+ *
+ * id는 엔티티의 식별자 생성기를 따른다. columns에 id 경로를 넣으면 넘긴 값을 그대로 쓴다.
+ * - values(): 생성기에서 받는다. 시퀀스면 em.persist()처럼 pooled-lo로 메모리에서 할당한다.
+ * - select(): SQL에서 행마다 시퀀스의 다음 값을 쓴다. 시퀀스 값 하나가 pooled-lo 블록 하나의 시작값이므로
+ *   id가 allocationSize 간격으로 벌어지지만, em.persist()가 받아가는 블록과 겹치지는 않는다.
+ * - identity 컬럼이면 DB가 채운다.
+ *
+ * 연관 컬럼(member.team)의 값은 values()에는 엔티티(getReference 가능)로, select()에는 member.team.id처럼 id로 넘긴다.
+ * 영속성 컨텍스트를 먼저 flush 하고 호출한 트랜잭션의 커넥션에서 실행한다.
+ * 엔티티 이벤트가 발생하지 않으므로 DerivedColumnMaintainer가 엔티티에서 계산하던 값은 DB의 generated column이 채우고,
+ * team_stats 같은 집계는 BulkListener로 맞춘다. 2차 캐시는 네이티브 벌크 쿼리처럼 커밋 시점에 그 테이블의 영역을 비운다.
+ * 읽기 전용 트랜잭션에서는 ReadOnlyViolationException을 던진다.
+ */
+public class BulkInsertExecutor {
+
+    private final EntityManager em;
+    private final JPQLTemplates templates;
+    private final int batchSize;
+    private final List<SyncingBulkExecutor.BulkListener> listeners;
+
+    public BulkInsertExecutor(EntityManager em, JPQLTemplates templates, int batchSize) {
+        this(em, templates, batchSize, Collections.emptyList());
+    }
+
+    public BulkInsertExecutor(EntityManager em, JPQLTemplates templates, int batchSize,
+                              List<SyncingBulkExecutor.BulkListener> listeners) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize는 1 이상이어야 합니다.");
+        }
+        this.em = em;
+        this.templates = templates;
+        this.batchSize = batchSize;
+        this.listeners = listeners;
+    }
+
+    public BulkInsertClause insert(EntityPath<?> entity) {
+        return new BulkInsertClause(entity);
+    }
+
+    public class BulkInsertClause {
+
+        private final EntityPath<?> entity;
+        private final List<Path<?>> columns = new ArrayList<>();
+        private final List<Object[]> rows = new ArrayList<>();
+        private SubQueryExpression<?> subQuery;
+
+        private BulkInsertClause(EntityPath<?> entity) {
+            this.entity = entity;
+        }
+
+        /**
+         * @param columns 루트 엔티티의 필드 ex) member.username, member.age, member.team
+         */
+        public BulkInsertClause columns(Path<?>... columns) {
+            for (Path<?> column : columns) {
+                if (!entity.equals(column.getMetadata().getParent())) {
+                    throw new IllegalArgumentException("insert 할 엔티티의 필드가 아닙니다. " + column);
+                }
+            }
+            this.columns.addAll(Arrays.asList(columns));
+            return this;
+        }
+
+        /**
+         * 한 행을 더한다. columns와 같은 순서로 넘긴다.
+         */
+        public BulkInsertClause values(Object... values) {
+            if (subQuery != null) {
+                throw new IllegalStateException("select()와 values()를 같이 쓸 수 없습니다.");
+            }
+            if (values.length != columns.size()) {
+                throw new IllegalArgumentException("값의 수가 컬럼 수와 다릅니다. " + Arrays.toString(values));
+            }
+            rows.add(values);
+            return this;
+        }
+
+        /**
+         * @param subQuery columns와 같은 순서로 select 하는 서브쿼리, limit/offset은 쓸 수 없다.
+         */
+        public BulkInsertClause select(SubQueryExpression<?> subQuery) {
+            if (!rows.isEmpty()) {
+                throw new IllegalStateException("select()와 values()를 같이 쓸 수 없습니다.");
+            }
+            if (subQuery.getMetadata().getModifiers().isRestricting()) {
+                throw new IllegalArgumentException("limit/offset이 있는 서브쿼리는 insert 할 수 없습니다.");
+            }
+            this.subQuery = subQuery;
+            return this;
+        }
+
+        /**
+         * @return insert 된 행 수
+         */
+        public long execute() {
+            ReadOnlyGuard.checkWritable();
+            SessionImplementor session = em.unwrap(SessionImplementor.class);
+            if (!session.isTransactionInProgress()) {
+                throw new TransactionRequiredException("대량 insert는 트랜잭션 안에서 실행해야 합니다.");
+            }
+            if (columns.isEmpty()) {
+                throw new IllegalStateException("columns()로 insert 할 컬럼을 정해야 합니다.");
+            }
+            session.flush();
+            Target target = new Target(session, entity, columns);
+            List<Runnable> afterExecute = new ArrayList<>(listeners.size());
+            for (SyncingBulkExecutor.BulkListener listener : listeners) {
+                afterExecute.add(listener.beforeInsert(entity, columns, subQuery == null ? rows : null));
+            }
+
+            long count = subQuery != null ? target.insertSelect(subQuery.getMetadata()) : target.insertValues(rows);
+
+            session.getActionQueue().addAction(new BulkOperationCleanupAction(session, target.persister));
+            afterExecute.forEach(Runnable::run);
+            return count;
+        }
+    }
+
+    /**
+     * insert 할 테이블과 컬럼
+     */
+    private class Target {
+
+        private final SessionImplementor session;
+        private final AbstractEntityPersister persister;
+        private final List<String> columnNames = new ArrayList<>();
+        private final Type[] types;
+        /**
+         * id를 생성기에서 받아서 넣어야 하면 true (columns에 id가 없고 identity 컬럼도 아닐 때)
+         */
+        private final boolean generateId;
+
+        private Target(SessionImplementor session, EntityPath<?> entity, List<Path<?>> columns) {
+            this.session = session;
+            EntityPersister entityPersister = session.getFactory().getMetamodel().entityPersister(entity.getType());
+            if (!(entityPersister instanceof AbstractEntityPersister)) {
+                throw new IllegalArgumentException("테이블에 매핑된 엔티티가 아닙니다. " + entity);
+            }
+            this.persister = (AbstractEntityPersister) entityPersister;
+
+            boolean idGiven = false;
+            this.types = new Type[columns.size()];
+            List<String> propertyColumns = new ArrayList<>();
+            for (int i = 0; i < columns.size(); i++) {
+                String name = columns.get(i).getMetadata().getName();
+                if (name.equals(persister.getIdentifierPropertyName())) {
+                    idGiven = true;
+                    types[i] = persister.getIdentifierType();
+                    propertyColumns.addAll(Arrays.asList(persister.getIdentifierColumnNames()));
+                    continue;
+                }
+                int index = persister.getEntityMetamodel().getPropertyIndex(name);
+                if (!persister.getPropertyInsertability()[index]) {
+                    throw new IllegalArgumentException("insert 할 수 없는 필드입니다. " + columns.get(i));
+                }
+                types[i] = persister.getPropertyType(name);
+                propertyColumns.addAll(Arrays.asList(persister.getPropertyColumnNames(name)));
+            }
+            this.generateId = !idGiven && !(persister.getIdentifierGenerator() instanceof PostInsertIdentifierGenerator);
+            if (generateId) {
+                columnNames.addAll(Arrays.asList(persister.getIdentifierColumnNames()));
+            }
+            columnNames.addAll(propertyColumns);
+        }
+
+        private long insertValues(List<Object[]> rows) {
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            String sql = "insert into " + persister.getTableName() + " (" + String.join(", ", columnNames) + ")"
+                    + " values (" + String.join(", ", Collections.nCopies(columnNames.size(), "?")) + ")";
+            IdentifierGenerator generator = persister.getIdentifierGenerator();
+            SessionFactoryImplementor factory = session.getFactory();
+            return session.doReturningWork(connection -> {
+                long count = 0;
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    int pending = 0;
+                    for (Object[] row : rows) {
+                        int position = 1;
+                        if (generateId) {
+                            Serializable id = generator.generate(session, null);
+                            persister.getIdentifierType().nullSafeSet(statement, id, position, session);
+                            position += persister.getIdentifierType().getColumnSpan(factory);
+                        }
+                        for (int i = 0; i < types.length; i++) {
+                            types[i].nullSafeSet(statement, row[i], position, session);
+                            position += types[i].getColumnSpan(factory);
+                        }
+                        statement.addBatch();
+                        if (++pending == batchSize) {
+                            count += executeBatch(statement);
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        count += executeBatch(statement);
+                    }
+                }
+                return count;
+            });
+        }
+
+        private long insertSelect(QueryMetadata subQuery) {
+            SqlTranslation translation = SqlTranslation.of(em, templates, subQuery);
+            SessionFactoryImplementor factory = session.getFactory();
+            int selected = 0;
+            for (Type type : translation.getReturnTypes()) {
+                selected += type.getColumnSpan(factory);
+            }
+            int expected = columnNames.size() - (generateId ? persister.getIdentifierColumnNames().length : 0);
+            if (selected != expected) {
+                throw new IllegalArgumentException("서브쿼리의 컬럼 수(" + selected + ")가 insert 할 컬럼 수(" + expected + ")와 다릅니다.");
+            }
+
+            String select = translation.getSql();
+            if (generateId) {
+                select = "select " + nextIdSql(factory) + ", q.* from (" + select + ") q";
+            }
+            String sql = "insert into " + persister.getTableName() + " (" + String.join(", ", columnNames) + ") " + select;
+            return session.doReturningWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    translation.bind(statement, 1, session);
+                    return (long) statement.executeUpdate();
+                }
+            });
+        }
+
+        private String nextIdSql(SessionFactoryImplementor factory) {
+            IdentifierGenerator generator = persister.getIdentifierGenerator();
+            if (generator instanceof SequenceStyleGenerator) {
+                DatabaseStructure structure = ((SequenceStyleGenerator) generator).getDatabaseStructure();
+                if (structure.isPhysicalSequence()) {
+                    return factory.getJdbcServices().getDialect().getSelectSequenceNextValString(structure.getName());
+                }
+            }
+            throw new IllegalArgumentException("SQL에서 id를 만들 수 없는 생성기입니다. columns에 id를 넣어야 합니다. "
+                    + generator.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * 드라이버가 행 수를 알려주지 않으면(SUCCESS_NO_INFO) 한 행으로 센다.
+     */
+    private static long executeBatch(PreparedStatement statement) throws SQLException {
+        long count = 0;
+        for (int updated : statement.executeBatch()) {
+            count += updated >= 0 ? updated : 1;
+        }
+        return count;
+    }
+}
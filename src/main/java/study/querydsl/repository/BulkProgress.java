@@ -0,0 +1,37 @@
+package study.querydsl.repository;
+
+import lombok.Getter;
+
+/**
+ * ChunkedBulkExecutor의 진행 상황
+ * 구간 하나가 커밋될 때마다 새로 만들어진다. 저장해두었다가 resumeFrom()에 넘기면 lastId 다음부터 이어서 실행한다.
+ */
+@Getter
+public class BulkProgress {
+
+    /**
+     * 커밋된 마지막 구간의 끝 id, 아직 커밋된 구간이 없으면 null
+     */
+    private final Long lastId;
+    private final long affectedRows;
+    private final int chunks;
+
+    public BulkProgress(Long lastId, long affectedRows, int chunks) {
+        this.lastId = lastId;
+        this.affectedRows = affectedRows;
+        this.chunks = chunks;
+    }
+
+    public static BulkProgress start() {
+        return new BulkProgress(null, 0, 0);
+    }
+
+    BulkProgress next(long lastId, long rows) {
+        return new BulkProgress(lastId, affectedRows + rows, chunks + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "BulkProgress(lastId=" + lastId + ", affectedRows=" + affectedRows + ", chunks=" + chunks + ")";
+    }
+}
@@ -0,0 +1,306 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPADeleteClause;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * 큰 벌크 수정/삭제를 id 구간으로 나누어 구간마다 커밋한다.
+ *
+ * bulkUpdate2처럼 where 없는 update 한 번은 테이블 전체의 행 잠금과 변경 이력을 트랜잭션 끝까지 들고 있는다.
+ * 여기서는 같은 update/delete에 id 구간 조건을 더해서 chunkSize 폭의 구간마다 새 EntityManager의 트랜잭션으로 실행한다.
+ *
+ * 1. 조건에 맞는 id의 min/max를 구한다. (max는 처음에 고정하므로 실행 중에 추가된 행은 건드리지 않는다.)
+ * 2. [from, from + chunkSize - 1] 구간을 실행하고 커밋한다.
+ * 3. 다음 구간은 직전 구간 뒤에서 조건에 맞는 가장 작은 id부터 시작한다. (id가 비어 있는 구간을 건너뛴다.)
+ * 4. 구간 사이에 pause만큼 쉬어서 다른 트랜잭션이 끼어들 틈을 준다.
+ *
+ * 구간마다 onChunk로 BulkProgress를 넘긴다. 중간에 실패하면 마지막으로 받은 BulkProgress를
+ * resumeFrom()에 넘겨서 커밋되지 않은 구간부터 다시 실행한다. (age = age + 1 같은 수정도 두 번 적용되지 않는다.)
+ *
+ * 구간마다 그 구간의 조건으로 BulkListener(TeamStatsMaintainer ...)에 알린다.
+ * 구간을 실행하는 동안 그 EntityManager를 스레드에 바인딩하므로, 리스너가 주입받은 EntityManager와 JPAQueryFactory도
+ * 같은 구간 트랜잭션에서 실행되고 함께 커밋된다.
+ *
+ * 호출한 스레드의 트랜잭션, 영속성 컨텍스트와는 별개로 실행되고 구간마다 커밋되므로 전체를 롤백할 수는 없다.
+ * 이미 조회해둔 엔티티를 맞추려면 em.clear() 하거나 SyncingBulkExecutor를 쓴다.
+ */
+public class ChunkedBulkExecutor {
+
+    private final EntityManagerFactory emf;
+    private final JPQLTemplates templates;
+    private final int defaultChunkSize;
+    private final Duration defaultPause;
+    private final List<SyncingBulkExecutor.BulkListener> listeners;
+
+    public ChunkedBulkExecutor(EntityManagerFactory emf, JPQLTemplates templates, int defaultChunkSize,
+                               Duration defaultPause) {
+        this(emf, templates, defaultChunkSize, defaultPause, Collections.emptyList());
+    }
+
+    public ChunkedBulkExecutor(EntityManagerFactory emf, JPQLTemplates templates, int defaultChunkSize,
+                               Duration defaultPause, List<SyncingBulkExecutor.BulkListener> listeners) {
+        this.emf = emf;
+        this.templates = templates;
+        this.defaultChunkSize = defaultChunkSize;
+        this.defaultPause = defaultPause;
+        this.listeners = listeners;
+    }
+
+    /**
+     * @param idPath 구간을 나눌 루트 엔티티의 id ex) member.id
+     */
+    public ChunkedUpdateClause update(EntityPath<?> entity, NumberPath<Long> idPath) {
+        return new ChunkedUpdateClause(entity, idPath);
+    }
+
+    public ChunkedDeleteClause delete(EntityPath<?> entity, NumberPath<Long> idPath) {
+        return new ChunkedDeleteClause(entity, idPath);
+    }
+
+    public class ChunkedUpdateClause extends ChunkedClause<ChunkedUpdateClause> {
+
+        private final List<Path<?>> paths = new ArrayList<>();
+        private final List<Object> values = new ArrayList<>();
+
+        private ChunkedUpdateClause(EntityPath<?> entity, NumberPath<Long> idPath) {
+            super(entity, idPath);
+        }
+
+        public <T> ChunkedUpdateClause set(Path<T> path, T value) {
+            paths.add(path);
+            values.add(value);
+            return this;
+        }
+
+        public <T> ChunkedUpdateClause set(Path<T> path, Expression<? extends T> expression) {
+            paths.add(path);
+            values.add(expression);
+            return this;
+        }
+
+        @Override
+        long executeChunk(EntityManager em, Predicate[] where) {
+            List<Runnable> afterExecute = new ArrayList<>(listeners.size());
+            for (SyncingBulkExecutor.BulkListener listener : listeners) {
+                afterExecute.add(listener.beforeUpdate(entity, where, paths, values));
+            }
+            JPAUpdateClause update = new JPAUpdateClause(em, entity, templates).where(where);
+            SyncingBulkExecutor.set(update, paths, values);
+            long count = update.execute();
+            afterExecute.forEach(Runnable::run);
+            return count;
+        }
+    }
+
+    public class ChunkedDeleteClause extends ChunkedClause<ChunkedDeleteClause> {
+
+        private ChunkedDeleteClause(EntityPath<?> entity, NumberPath<Long> idPath) {
+            super(entity, idPath);
+        }
+
+        @Override
+        long executeChunk(EntityManager em, Predicate[] where) {
+            List<Runnable> afterExecute = new ArrayList<>(listeners.size());
+            for (SyncingBulkExecutor.BulkListener listener : listeners) {
+                afterExecute.add(listener.beforeDelete(entity, where));
+            }
+            long count = new JPADeleteClause(em, entity, templates).where(where).execute();
+            afterExecute.forEach(Runnable::run);
+            return count;
+        }
+    }
+
+    public abstract class ChunkedClause<C extends ChunkedClause<C>> {
+
+        final EntityPath<?> entity;
+        final NumberPath<Long> idPath;
+        private final List<Predicate> where = new ArrayList<>();
+        private int chunkSize = defaultChunkSize;
+        private Duration pause = defaultPause;
+        private BulkProgress resumeFrom = BulkProgress.start();
+        private Consumer<BulkProgress> onChunk = progress -> {
+        };
+
+        private ChunkedClause(EntityPath<?> entity, NumberPath<Long> idPath) {
+            this.entity = entity;
+            this.idPath = idPath;
+        }
+
+        /**
+         * 여러 번 부르면 Querydsl 절처럼 and로 합친다.
+         */
+        public C where(Predicate... where) {
+            for (Predicate predicate : where) {
+                if (predicate != null) {
+                    this.where.add(predicate);
+                }
+            }
+            return self();
+        }
+
+        /**
+         * 구간 하나의 id 폭. id가 촘촘하면 한 트랜잭션에서 바뀌는 행 수의 상한이다.
+         */
+        public C chunkSize(int chunkSize) {
+            if (chunkSize < 1) {
+                throw new IllegalArgumentException("chunkSize는 1 이상이어야 합니다.");
+            }
+            this.chunkSize = chunkSize;
+            return self();
+        }
+
+        /**
+         * 구간을 커밋하고 다음 구간을 시작하기 전에 쉬는 시간
+         */
+        public C pause(Duration pause) {
+            this.pause = pause;
+            return self();
+        }
+
+        public C resumeFrom(BulkProgress progress) {
+            this.resumeFrom = progress;
+            return self();
+        }
+
+        /**
+         * 구간이 커밋될 때마다 불린다. 여기서 예외를 던지면 다음 구간을 실행하지 않는다.
+         */
+        public C onChunk(Consumer<BulkProgress> onChunk) {
+            this.onChunk = onChunk;
+            return self();
+        }
+
+        /**
+         * @return 전체 진행 상황 (affectedRows는 resumeFrom으로 넘긴 이전 실행분을 포함한다.)
+         */
+        public BulkProgress execute() {
+            BulkProgress progress = resumeFrom;
+            Tuple minMax = withEntityManager(em -> remaining(em, resumeFrom.getLastId())
+                    .select(idPath.min(), idPath.max())
+                    .fetchOne());
+            if (minMax == null || minMax.get(0, Long.class) == null) {
+                return progress;
+            }
+            Long from = minMax.get(0, Long.class);
+            long max = minMax.get(1, Long.class);
+
+            while (from != null) {
+                long start = from;
+                long to = Math.min(from + chunkSize - 1, max);
+                Predicate[] chunkWhere = predicates(idPath.between(start, to));
+                long rows = withEntityManager(em -> inChunk(em, () -> executeChunk(em, chunkWhere)));
+                progress = progress.next(to, rows);
+                onChunk.accept(progress);
+
+                from = to == max ? null : withEntityManager(em -> remaining(em, to)
+                        .where(idPath.loe(max))
+                        .select(idPath.min())
+                        .fetchOne());
+                if (from != null) {
+                    sleep(pause, progress);
+                }
+            }
+            return progress;
+        }
+
+        /**
+         * @param where 원래 조건과 구간 조건
+         */
+        abstract long executeChunk(EntityManager em, Predicate[] where);
+
+        /**
+         * 조건에 맞고 afterId보다 큰 행
+         */
+        private JPAQuery<?> remaining(EntityManager em, Long afterId) {
+            JPAQuery<?> query = new JPAQuery<Void>(em, templates).from(entity).where(predicates());
+            return afterId == null ? query : query.where(idPath.gt(afterId));
+        }
+
+        private Predicate[] predicates(Predicate... more) {
+            Predicate[] predicates = where.toArray(new Predicate[where.size() + more.length]);
+            System.arraycopy(more, 0, predicates, where.size(), more.length);
+            return predicates;
+        }
+
+        @SuppressWarnings("unchecked")
+        private C self() {
+            return (C) this;
+        }
+    }
+
+    private <R> R withEntityManager(Function<EntityManager, R> work) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return work.apply(em);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * 구간 트랜잭션 동안 em을 스레드에 바인딩해서 공유 EntityManager(리스너가 쓰는 것)가 em을 쓰게 한다.
+     * 호출한 스레드에 이미 바인딩된 EntityManager가 있으면 끝난 뒤에 되돌린다.
+     */
+    private long inChunk(EntityManager em, LongSupplier work) {
+        Object previous = TransactionSynchronizationManager.unbindResourceIfPossible(emf);
+        EntityManagerHolder holder = new EntityManagerHolder(em);
+        // 호출한 스레드의 스프링 트랜잭션에 참여시키지 않는다.
+        holder.setSynchronizedWithTransaction(true);
+        TransactionSynchronizationManager.bindResource(emf, holder);
+        try {
+            return inTransaction(em, work);
+        } finally {
+            TransactionSynchronizationManager.unbindResource(emf);
+            if (previous != null) {
+                TransactionSynchronizationManager.bindResource(emf, previous);
+            }
+        }
+    }
+
+    private static long inTransaction(EntityManager em, LongSupplier work) {
+        EntityTransaction transaction = em.getTransaction();
+        transaction.begin();
+        try {
+            long result = work.getAsLong();
+            transaction.commit();
+            return result;
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+        }
+    }
+
+    private static void sleep(Duration pause, BulkProgress progress) {
+        if (pause.isZero() || pause.isNegative()) {
+            return;
+        }
+        try {
+            Thread.sleep(pause.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("벌크 실행이 중단되었습니다. " + progress, e);
+        }
+    }
+}
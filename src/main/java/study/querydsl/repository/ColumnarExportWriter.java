@@ -0,0 +1,178 @@
+package study.querydsl.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Arrow의 레코드 배치처럼 batchRows 행씩 컬럼별로 모아서 쓰는 바이너리 형식 (little endian)
+ *
+ * <pre>
+ * "QDCOL001"                                  매직 (8 bytes)
+ * int 컬럼 수, 컬럼마다 byte 타입 코드(ColumnType.code) + int 이름 길이 + UTF-8 이름
+ * 배치마다
+ *   int 행 수 (0이면 파일 끝)
+ *   컬럼마다
+ *     validity  (행 수 + 7) / 8 bytes, i번째 비트가 1이면 값이 있다.
+ *     고정 폭   행 수 * width bytes, null 자리는 0
+ *     STRING    int offsets[행 수 + 1] + UTF-8 데이터 offsets[행 수] bytes
+ * </pre>
+ *
+ * 컬럼마다 다이렉트 버퍼를 배치 크기로 한 번 만들고, 배치를 다 채우면 한 번의 gathering write로 내보낸다.
+ * 문자열 데이터 버퍼만 모자라면 두 배로 늘린다.
+ */
+class ColumnarExportWriter extends ExportWriter {
+
+    static final byte[] MAGIC = "QDCOL001".getBytes(StandardCharsets.US_ASCII);
+
+    private final int batchRows;
+    private final ByteBuffer batchHeader = ByteBuffer.allocateDirect(4).order(ByteOrder.LITTLE_ENDIAN);
+    private Column[] columns;
+    private int rows;
+
+    ColumnarExportWriter(FileChannel channel, int batchRows) {
+        super(channel);
+        this.batchRows = batchRows;
+    }
+
+    @Override
+    void header(String[] names, ColumnType[] types) throws IOException {
+        int size = MAGIC.length + 4;
+        List<byte[]> encoded = new ArrayList<>(names.length);
+        for (String name : names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            size += 1 + 4 + bytes.length;
+        }
+        ByteBuffer header = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC).putInt(names.length);
+        columns = new Column[types.length];
+        for (int i = 0; i < types.length; i++) {
+            header.put(types[i].code).putInt(encoded.get(i).length).put(encoded.get(i));
+            columns[i] = new Column(types[i], batchRows);
+        }
+        write(header);
+    }
+
+    @Override
+    void row(ResultSet rs) throws SQLException, IOException {
+        for (int i = 0; i < columns.length; i++) {
+            Column column = columns[i];
+            int index = i + 1;
+            boolean present;
+            switch (column.type) {
+                case INT:
+                    column.values.putInt(rows * 4, rs.getInt(index));
+                    present = !rs.wasNull();
+                    break;
+                case LONG:
+                    column.values.putLong(rows * 8, rs.getLong(index));
+                    present = !rs.wasNull();
+                    break;
+                case DOUBLE:
+                    column.values.putDouble(rows * 8, rs.getDouble(index));
+                    present = !rs.wasNull();
+                    break;
+                case BOOLEAN:
+                    column.values.put(rows, (byte) (rs.getBoolean(index) ? 1 : 0));
+                    present = !rs.wasNull();
+                    break;
+                default:
+                    String value = rs.getString(index);
+                    present = value != null;
+                    if (present) {
+                        column.data = putUtf8(column.data, value, false);
+                    }
+                    column.values.putInt((rows + 1) * 4, column.data.position());
+            }
+            if (present) {
+                int validity = rows >>> 3;
+                column.validity.put(validity, (byte) (column.validity.get(validity) | 1 << (rows & 7)));
+            }
+        }
+        if (++rows == batchRows) {
+            writeBatch();
+        }
+    }
+
+    @Override
+    void finish() throws IOException {
+        if (rows > 0) {
+            writeBatch();
+        }
+        batchHeader.putInt(0);
+        write(batchHeader);
+    }
+
+    /**
+     * 문자열 데이터 버퍼를 두 배 이상으로 늘린다. (파일에는 배치 단위로만 쓴다.)
+     */
+    @Override
+    ByteBuffer room(ByteBuffer buffer, int bytes) {
+        ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + bytes))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    private void writeBatch() throws IOException {
+        List<ByteBuffer> buffers = new ArrayList<>(1 + columns.length * 3);
+        batchHeader.putInt(rows);
+        buffers.add(batchHeader);
+        for (Column column : columns) {
+            column.validity.position((rows + 7) >>> 3);
+            buffers.add(column.validity);
+            if (column.type == ColumnType.STRING) {
+                column.values.position((rows + 1) * 4);
+                buffers.add(column.values);
+                buffers.add(column.data);
+            } else {
+                column.values.position(rows * column.type.width);
+                buffers.add(column.values);
+            }
+        }
+        write(buffers.toArray(new ByteBuffer[0]));
+        for (Column column : columns) {
+            column.reset();
+        }
+        rows = 0;
+    }
+
+    private static final class Column {
+
+        private final ColumnType type;
+        private final ByteBuffer validity;
+        /**
+         * 고정 폭 값, STRING이면 offsets
+         */
+        private final ByteBuffer values;
+        private ByteBuffer data;
+
+        private Column(ColumnType type, int batchRows) {
+            this.type = type;
+            this.validity = ByteBuffer.allocateDirect((batchRows + 7) >>> 3);
+            if (type == ColumnType.STRING) {
+                this.values = ByteBuffer.allocateDirect((batchRows + 1) * 4).order(ByteOrder.LITTLE_ENDIAN);
+                this.data = ByteBuffer.allocateDirect(batchRows * 16).order(ByteOrder.LITTLE_ENDIAN);
+            } else {
+                this.values = ByteBuffer.allocateDirect(batchRows * type.width).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        /**
+         * write()가 position을 0으로 돌려놓았으므로 validity 비트만 지운다. (offsets[0]은 늘 0이다.)
+         */
+        private void reset() {
+            for (int i = 0; i < validity.capacity(); i++) {
+                validity.put(i, (byte) 0);
+            }
+        }
+    }
+}
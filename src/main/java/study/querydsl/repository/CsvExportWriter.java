@@ -0,0 +1,140 @@
+package study.querydsl.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * UTF-8 CSV (RFC 4180)
+ *
+ * 첫 줄은 컬럼 이름이다. null은 빈 칸으로, 쉼표/따옴표/줄바꿈이 있는 문자열은 따옴표로 감싸서 쓴다.
+ * 정수는 문자열을 만들지 않고 숫자를 바로 버퍼에 쓴다.
+ */
+class CsvExportWriter extends ExportWriter {
+
+    private final ByteBuffer buffer;
+    private final byte[] digits = new byte[20];
+    private ColumnType[] types;
+
+    CsvExportWriter(FileChannel channel, int bufferSize) {
+        super(channel);
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    @Override
+    void header(String[] names, ColumnType[] types) throws IOException {
+        this.types = types;
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                putAscii(',');
+            }
+            putString(names[i]);
+        }
+        putAscii('\n');
+    }
+
+    @Override
+    void row(ResultSet rs) throws SQLException, IOException {
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) {
+                putAscii(',');
+            }
+            int column = i + 1;
+            switch (types[i]) {
+                case INT:
+                    int intValue = rs.getInt(column);
+                    if (!rs.wasNull()) {
+                        putLong(intValue);
+                    }
+                    break;
+                case LONG:
+                    long longValue = rs.getLong(column);
+                    if (!rs.wasNull()) {
+                        putLong(longValue);
+                    }
+                    break;
+                case DOUBLE:
+                    double doubleValue = rs.getDouble(column);
+                    if (!rs.wasNull()) {
+                        putString(Double.toString(doubleValue));
+                    }
+                    break;
+                case BOOLEAN:
+                    boolean booleanValue = rs.getBoolean(column);
+                    if (!rs.wasNull()) {
+                        putString(booleanValue ? "true" : "false");
+                    }
+                    break;
+                default:
+                    String value = rs.getString(column);
+                    if (value != null) {
+                        putString(value);
+                    }
+            }
+        }
+        putAscii('\n');
+    }
+
+    @Override
+    void finish() throws IOException {
+        write(buffer);
+    }
+
+    @Override
+    ByteBuffer room(ByteBuffer buffer, int bytes) throws IOException {
+        write(buffer);
+        return buffer;
+    }
+
+    private void putAscii(char c) throws IOException {
+        if (!buffer.hasRemaining()) {
+            write(buffer);
+        }
+        buffer.put((byte) c);
+    }
+
+    private void putString(String value) throws IOException {
+        boolean quote = needsQuote(value);
+        if (quote) {
+            putAscii('"');
+        }
+        putUtf8(buffer, value, quote);
+        if (quote) {
+            putAscii('"');
+        }
+    }
+
+    private void putLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            putString(Long.toString(value));
+            return;
+        }
+        if (buffer.remaining() < digits.length) {
+            write(buffer);
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        while (count > 0) {
+            buffer.put(digits[--count]);
+        }
+    }
+
+    private static boolean needsQuote(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,37 @@
+package study.querydsl.repository;
+
+import lombok.Getter;
+
+/**
+ * QuerydslExporter가 파일 하나를 쓴 결과
+ */
+@Getter
+public class ExportResult {
+
+    private final long rows;
+    private final long bytes;
+    /**
+     * 쿼리 실행부터 파일을 다 쓸 때까지
+     */
+    private final long elapsedNanos;
+
+    public ExportResult(long rows, long bytes, long elapsedNanos) {
+        this.rows = rows;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public double rowsPerSecond() {
+        return rows * 1e9 / Math.max(elapsedNanos, 1);
+    }
+
+    public double megabytesPerSecond() {
+        return bytes * 1e9 / Math.max(elapsedNanos, 1) / (1024 * 1024);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ExportResult(rows=%d, bytes=%d, %.0f rows/s, %.1f MB/s)",
+                rows, bytes, rowsPerSecond(), megabytesPerSecond());
+    }
+}
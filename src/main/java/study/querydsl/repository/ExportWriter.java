@@ -0,0 +1,140 @@
+package study.querydsl.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * QuerydslExporter가 ResultSet의 행을 파일에 쓰는 형식
+ *
+ * 값은 ResultSet에서 타입별로(getInt, getLong ...) 꺼내서 바로 다이렉트 버퍼에 쓰고,
+ * 버퍼는 파일을 다 쓸 때까지 재사용한다. 행마다 Object[]나 Tuple을 만들지 않고,
+ * 문자열도 getString()이 돌려준 String을 바이트 배열로 바꾸지 않고 UTF-8로 버퍼에 바로 인코딩한다.
+ */
+abstract class ExportWriter implements Closeable {
+
+    enum ColumnType {
+        INT(1, 4), LONG(2, 8), DOUBLE(3, 8), BOOLEAN(4, 1), STRING(5, 0);
+
+        final byte code;
+        /**
+         * 고정 폭 타입의 바이트 수, STRING은 0
+         */
+        final int width;
+
+        ColumnType(int code, int width) {
+            this.code = (byte) code;
+            this.width = width;
+        }
+
+        /**
+         * DECIMAL/NUMERIC은 double로 바꾸면 값이 달라질 수 있어서, 날짜/시간은 드라이버의 문자열 표현 그대로 STRING으로 쓴다.
+         */
+        static ColumnType of(int sqlType) {
+            switch (sqlType) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                    return INT;
+                case Types.BIGINT:
+                    return LONG;
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    return DOUBLE;
+                case Types.BIT:
+                case Types.BOOLEAN:
+                    return BOOLEAN;
+                default:
+                    return STRING;
+            }
+        }
+    }
+
+    final FileChannel channel;
+
+    ExportWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    abstract void header(String[] names, ColumnType[] types) throws IOException;
+
+    /**
+     * ResultSet의 현재 행을 쓴다.
+     */
+    abstract void row(ResultSet rs) throws SQLException, IOException;
+
+    /**
+     * 버퍼에 남은 내용을 파일에 쓴다.
+     */
+    abstract void finish() throws IOException;
+
+    /**
+     * buffer에 bytes만큼 쓸 자리를 만든다. 비우거나 더 큰 버퍼로 옮긴 버퍼를 돌려준다.
+     */
+    abstract ByteBuffer room(ByteBuffer buffer, int bytes) throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 쓰기용 버퍼를 모두 파일에 쓰고 비운다.
+     */
+    final void write(ByteBuffer... buffers) throws IOException {
+        for (ByteBuffer buffer : buffers) {
+            buffer.flip();
+        }
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+        for (ByteBuffer buffer : buffers) {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * @param quote true면 "를 두 번 쓴다. (CSV 따옴표 안의 값)
+     */
+    final ByteBuffer putUtf8(ByteBuffer buffer, String value, boolean quote) throws IOException {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (buffer.remaining() < 4) {
+                buffer = room(buffer, 4);
+            }
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (quote && c == '"') {
+                    buffer.put((byte) '"');
+                }
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >> 18));
+                buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 짝이 없는 서러게이트는 String.getBytes(UTF_8)처럼 ?로 쓴다.
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        return buffer;
+    }
+}
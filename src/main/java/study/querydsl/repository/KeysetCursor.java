@@ -0,0 +1,82 @@
+package study.querydsl.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * 마지막 행의 정렬 키 값들을 URL-safe 문자열로 인코딩/디코딩한다.
+ * 정렬 키로는 String, Integer, Long 타입만 지원한다.
+ */
+final class KeysetCursor {
+
+    private static final byte NULL = 'N';
+    private static final byte STRING = 'S';
+    private static final byte INTEGER = 'I';
+    private static final byte LONG = 'L';
+
+    private KeysetCursor() {
+    }
+
+    static String encode(Object[] values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(values.length);
+            for (Object value : values) {
+                if (value == null) {
+                    out.writeByte(NULL);
+                } else if (value instanceof String) {
+                    out.writeByte(STRING);
+                    out.writeUTF((String) value);
+                } else if (value instanceof Integer) {
+                    out.writeByte(INTEGER);
+                    out.writeInt((Integer) value);
+                } else if (value instanceof Long) {
+                    out.writeByte(LONG);
+                    out.writeLong((Long) value);
+                } else {
+                    throw new IllegalArgumentException("커서에 담을 수 없는 정렬 키 타입입니다: " + value.getClass());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    static Object[] decode(String cursor, int expectedKeys) {
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+            int size = in.readUnsignedByte();
+            if (size != expectedKeys) {
+                throw new IllegalArgumentException("정렬 조건과 맞지 않는 커서입니다.");
+            }
+            Object[] values = new Object[size];
+            for (int i = 0; i < size; i++) {
+                byte type = in.readByte();
+                switch (type) {
+                    case NULL:
+                        values[i] = null;
+                        break;
+                    case STRING:
+                        values[i] = in.readUTF();
+                        break;
+                    case INTEGER:
+                        values[i] = in.readInt();
+                        break;
+                    case LONG:
+                        values[i] = in.readLong();
+                        break;
+                    default:
+                        throw new IllegalArgumentException("잘못된 커서입니다.");
+                }
+            }
+            return values;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("잘못된 커서입니다.", e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package study.querydsl.repository;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 키셋(seek) 페이징 결과
+ * nextCursor는 다음 페이지를 조회할 때 그대로 넘겨주는 불투명한 값이고, 마지막 페이지면 null 이다.
+ */
+@Getter
+public class KeysetPage<T> {
+
+    private final List<T> content;
+    private final String nextCursor;
+
+    public KeysetPage(List<T> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
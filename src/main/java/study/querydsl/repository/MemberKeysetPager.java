@@ -0,0 +1,137 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * offset/limit 대신 키셋(seek) 방식으로 회원 목록을 페이징한다.
+ *
+ * offset 페이징은 뒤 페이지로 갈수록 건너뛰는 행을 DB가 모두 읽고 버려야 하지만,
+ * 키셋 페이징은 직전 페이지 마지막 행의 정렬 키보다 "뒤"에 있는 행만 조건으로 찾기 때문에
+ * 몇 번째 페이지든 비용이 일정하다.
+ *
+ * 1. 정렬 조건 마지막에 member.id asc를 붙여서 순서를 유일하게 만든다.(tie-breaker)
+ * 2. null 정렬 키는 항상 마지막(nulls last)으로 보낸다.
+ * 3. 다음 페이지 커서에는 마지막 행의 정렬 키 값들이 담긴다.
+ */
+@Component
+@RequiredArgsConstructor
+public class MemberKeysetPager {
+
+    private final JPAQueryFactory queryFactory;
+
+    /**
+     * @param condition 추가 검색 조건, 없으면 null
+     * @param cursor    이전 페이지의 {@link KeysetPage#getNextCursor()}, 첫 페이지면 null
+     * @param size      한 페이지에 보여질 개수
+     * @param orders    QMember 경로에 대한 정렬 조건 ex) member.username.desc()
+     */
+    public KeysetPage<Member> fetchPage(Predicate condition, String cursor, int size, OrderSpecifier<?>... orders) {
+        if (size < 1) {
+            throw new IllegalArgumentException("페이지 크기는 1 이상이어야 합니다.");
+        }
+        List<OrderSpecifier<?>> sortKeys = sortKeys(orders);
+        Object[] after = cursor == null ? null : KeysetCursor.decode(cursor, sortKeys.size());
+
+        Expression<?>[] projection = new Expression<?>[sortKeys.size() + 1];
+        projection[0] = member;
+        for (int i = 0; i < sortKeys.size(); i++) {
+            projection[i + 1] = sortKeys.get(i).getTarget();
+        }
+
+        List<Tuple> rows = queryFactory
+                .select(projection)
+                .from(member)
+                .where(condition, after == null ? null : seek(sortKeys, after))
+                .orderBy(sortKeys.toArray(new OrderSpecifier<?>[0]))
+                .limit(size + 1) // 한 건을 더 조회해서 다음 페이지 존재 여부를 판단한다.
+                .fetch();
+
+        boolean hasNext = rows.size() > size;
+        List<Tuple> pageRows = hasNext ? rows.subList(0, size) : rows;
+
+        List<Member> content = new ArrayList<>(pageRows.size());
+        for (Tuple row : pageRows) {
+            content.add(row.get(member));
+        }
+        String nextCursor = hasNext ? KeysetCursor.encode(keyValues(pageRows.get(size - 1), sortKeys)) : null;
+        return new KeysetPage<>(content, nextCursor);
+    }
+
+    private List<OrderSpecifier<?>> sortKeys(OrderSpecifier<?>[] orders) {
+        List<OrderSpecifier<?>> sortKeys = new ArrayList<>(orders.length + 1);
+        for (OrderSpecifier<?> order : orders) {
+            if (order.getNullHandling() == OrderSpecifier.NullHandling.NullsFirst) {
+                throw new IllegalArgumentException("키셋 페이징은 nulls first 정렬을 지원하지 않습니다: " + order);
+            }
+            sortKeys.add(order.nullsLast());
+        }
+        if (sortKeys.isEmpty() || !sortKeys.get(sortKeys.size() - 1).getTarget().equals(member.id)) {
+            sortKeys.add(member.id.asc());
+        }
+        return sortKeys;
+    }
+
+    /**
+     * (k1 > v1) or (k1 = v1 and k2 > v2) or ... 형태의 seek 조건
+     * 마지막 키(member.id)는 null이 될 수 없으므로 null 비교를 생략한다.
+     */
+    private Predicate seek(List<OrderSpecifier<?>> sortKeys, Object[] after) {
+        List<Predicate> branches = new ArrayList<>();
+        List<Predicate> equalPrefix = new ArrayList<>();
+        for (int i = 0; i < sortKeys.size(); i++) {
+            OrderSpecifier<?> key = sortKeys.get(i);
+            Object value = after[i];
+            boolean nullable = i < sortKeys.size() - 1;
+
+            Predicate greater = greater(key, value, nullable);
+            if (greater != null) {
+                List<Predicate> branch = new ArrayList<>(equalPrefix);
+                branch.add(greater);
+                branches.add(ExpressionUtils.allOf(branch));
+            }
+            equalPrefix.add(value == null
+                    ? Expressions.booleanOperation(Ops.IS_NULL, key.getTarget())
+                    : Expressions.booleanOperation(Ops.EQ, key.getTarget(), Expressions.constant(value)));
+        }
+        return ExpressionUtils.anyOf(branches);
+    }
+
+    /**
+     * nulls last 정렬에서 value 보다 뒤에 오는 행의 조건, 뒤에 올 수 있는 행이 없으면 null
+     */
+    private Predicate greater(OrderSpecifier<?> key, Object value, boolean nullable) {
+        if (value == null) {
+            return null;
+        }
+        Ops op = key.getOrder() == Order.ASC ? Ops.GT : Ops.LT;
+        Predicate compare = Expressions.booleanOperation(op, key.getTarget(), Expressions.constant(value));
+        if (!nullable) {
+            return compare;
+        }
+        return ExpressionUtils.or(compare, Expressions.booleanOperation(Ops.IS_NULL, key.getTarget()));
+    }
+
+    private Object[] keyValues(Tuple row, List<OrderSpecifier<?>> sortKeys) {
+        Object[] values = new Object[sortKeys.size()];
+        for (int i = 0; i < sortKeys.size(); i++) {
+            values[i] = row.get(sortKeys.get(i).getTarget());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,166 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Param;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * MemberSearchCondition으로 회원을 검색한다.
+ *
+ * 동적쿼리_BooleanBuilder/WhereParam처럼 요청마다 BooleanBuilder, 람다, 조건 식을 만들고 JPQL로 직렬화하지 않는다.
+ * - 조건 식은 값 대신 Param을 넣어서 처음에 한 번만 만든다.
+ * - 어떤 조건이 있는지(비트마스크)별로 JPQL을 한 번만 직렬화해서 배열에 들고 있는다. (조건 4개 -> 최대 16개)
+ * - 요청마다 비트마스크를 구하고 그 JPQL에 조건 값만 바인딩한다. null 조건은 비트만 꺼지므로 할당이 없다.
+ * JPQL 문자열이 같으므로 Hibernate의 쿼리 플랜 캐시도 그대로 적중한다.
+ *
+ * JPAQuery를 거치지 않으므로 QueryObserver(메트릭, 인덱스 제안)에는 잡히지 않는다.
+ */
+@Repository
+public class MemberSearchRepository {
+
+    private static final Param<String> USERNAME = new Param<>(String.class, "username");
+    private static final Param<String> TEAM_NAME = new Param<>(String.class, "teamName");
+    private static final Param<Integer> AGE_GOE = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> AGE_LOE = new Param<>(Integer.class, "ageLoe");
+
+    /**
+     * i번째 조건은 비트마스크의 i번째 비트, 값은 value(condition, i)
+     */
+    private static final List<Param<?>> PARAMS = List.of(USERNAME, TEAM_NAME, AGE_GOE, AGE_LOE);
+    private static final List<BooleanExpression> CONDITIONS = List.of(
+            member.username.eq(USERNAME),
+            team.name.eq(TEAM_NAME),
+            member.age.goe(AGE_GOE),
+            member.age.loe(AGE_LOE));
+    private static final QMemberTeamDto PROJECTION =
+            new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name);
+
+    private final EntityManager em;
+    private final JPQLTemplates templates = HQLTemplates.DEFAULT;
+    /**
+     * 처음 쓰일 때 만든다. 두 스레드가 동시에 만들어도 같은 JPQL이 나오므로 잠그지 않는다.
+     */
+    private final Plan[] plans = new Plan[1 << CONDITIONS.size()];
+
+    public MemberSearchRepository(EntityManager em) {
+        this.em = em;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        Plan plan = plan(presentConditions(condition));
+        Query query = em.createQuery(plan.jpql);
+        for (int i = 0; i < plan.conditions.length; i++) {
+            query.setParameter(i + 1, value(condition, plan.conditions[i]));
+        }
+
+        if (templates.getQueryHandler().transform(query, PROJECTION)) {
+            return query.getResultList();
+        }
+        List<Object[]> rows = query.getResultList();
+        List<MemberTeamDto> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add(PROJECTION.newInstance(row));
+        }
+        return result;
+    }
+
+    /**
+     * 테스트용, 조건 조합에 쓰는 JPQL
+     */
+    String jpql(MemberSearchCondition condition) {
+        return plan(presentConditions(condition)).jpql;
+    }
+
+    private Plan plan(int present) {
+        Plan plan = plans[present];
+        if (plan == null) {
+            plan = Plan.create(templates, em, present);
+            plans[present] = plan;
+        }
+        return plan;
+    }
+
+    private static int presentConditions(MemberSearchCondition condition) {
+        int present = 0;
+        if (StringUtils.hasText(condition.getUsername())) {
+            present |= 1;
+        }
+        if (StringUtils.hasText(condition.getTeamName())) {
+            present |= 1 << 1;
+        }
+        if (condition.getAgeGoe() != null) {
+            present |= 1 << 2;
+        }
+        if (condition.getAgeLoe() != null) {
+            present |= 1 << 3;
+        }
+        return present;
+    }
+
+    private static Object value(MemberSearchCondition condition, int index) {
+        switch (index) {
+            case 0:
+                return condition.getUsername();
+            case 1:
+                return condition.getTeamName();
+            case 2:
+                return condition.getAgeGoe();
+            default:
+                return condition.getAgeLoe();
+        }
+    }
+
+    /**
+     * jpql: 조건 조합 하나의 JPQL
+     * conditions[i]: (i + 1)번째 JPQL 파라미터에 바인딩할 조건 번호
+     */
+    private static final class Plan {
+
+        private final String jpql;
+        private final int[] conditions;
+
+        private Plan(String jpql, int[] conditions) {
+            this.jpql = jpql;
+            this.conditions = conditions;
+        }
+
+        static Plan create(JPQLTemplates templates, EntityManager em, int present) {
+            JPAQuery<MemberTeamDto> query = new JPAQuery<Void>()
+                    .select(PROJECTION)
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .orderBy(member.id.asc());
+            for (int i = 0; i < CONDITIONS.size(); i++) {
+                if ((present & 1 << i) != 0) {
+                    query.where(CONDITIONS.get(i));
+                }
+            }
+
+            JPQLSerializer serializer = new JPQLSerializer(templates, em);
+            serializer.serialize(query.getMetadata(), false, null);
+            List<Object> constants = serializer.getConstants();
+            int[] conditions = new int[constants.size()];
+            for (int i = 0; i < constants.size(); i++) {
+                conditions[i] = PARAMS.indexOf(constants.get(i));
+            }
+            return new Plan(serializer.toString(), conditions);
+        }
+    }
+}
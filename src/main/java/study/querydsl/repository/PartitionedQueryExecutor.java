@@ -0,0 +1,300 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.time.temporal.Temporal;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * 큰 조회를 id 구간으로 나누어 여러 커넥션에서 동시에 실행하고 결과를 합친다.
+ *
+ * 1. 같은 조건으로 id의 min/max를 구하고, 그 구간을 partitions개로 나눈다.
+ * 2. 구간마다 새 EntityManager(커넥션)로 원래 쿼리에 id 구간 조건을 더해서 executor에서 실행한다.
+ * 3. orderBy가 없으면 구간마다 id 순으로 읽어서 구간 순서대로 이어붙이고(결과는 id 순),
+ *    있으면 정렬 값을 함께 조회해서 k-way 병합한다.
+ *    limit/offset은 구간마다 offset + limit개까지만 읽고 병합한 뒤에 적용한다.
+ *
+ * 엔티티, Tuple, DTO 프로젝션 모두 된다.
+ * 구간마다 다른 EntityManager에서 읽고 닫으므로 돌려받은 엔티티는 준영속 상태이고,
+ * 호출한 스레드의 트랜잭션 밖에서 실행되므로 커밋된 데이터만 읽는다.
+ *
+ * 행이 구간별로 나뉘어도 결과가 같아야 하므로 distinct, groupBy, having은 지원하지 않는다.
+ * 병합할 때 정렬 값은 DB가 아니라 자바의 Comparable로 비교한다.
+ * 문자열은 DB 콜레이션(대소문자, 악센트, 뒤쪽 공백 무시 ...)과 String.compareTo의 순서가 다를 수 있으므로
+ * 숫자, 날짜/시간, boolean 정렬만 받고 나머지는 IllegalArgumentException을 던진다.
+ * nullsFirst()/nullsLast()가 없는 정렬의 null 위치는
+ * DB마다 다르므로(H2는 가장 작은 값, PostgreSQL/Oracle은 가장 큰 값) JDBC 메타데이터에서 읽은 DB 기본값을 따른다.
+ */
+public class PartitionedQueryExecutor {
+
+    private final EntityManagerFactory emf;
+    private final Executor executor;
+    private final int defaultPartitions;
+    private volatile NullOrdering nullOrdering;
+
+    public PartitionedQueryExecutor(EntityManagerFactory emf, Executor executor, int defaultPartitions) {
+        this.emf = emf;
+        this.executor = executor;
+        this.defaultPartitions = defaultPartitions;
+    }
+
+    public <T> List<T> fetch(JPAQuery<T> query, NumberPath<Long> idPath) {
+        return fetch(query, idPath, defaultPartitions);
+    }
+
+    /**
+     * @param idPath 구간을 나눌 루트 엔티티의 id ex) member.id
+     */
+    public <T> List<T> fetch(JPAQuery<T> query, NumberPath<Long> idPath, int partitions) {
+        QueryMetadata metadata = query.getMetadata();
+        if (metadata.isDistinct() || !metadata.getGroupBy().isEmpty() || metadata.getHaving() != null) {
+            throw new IllegalArgumentException("distinct, groupBy, having이 있는 쿼리는 나누어 실행할 수 없습니다.");
+        }
+        for (OrderSpecifier<?> order : metadata.getOrderBy()) {
+            if (!mergeable(order.getTarget().getType())) {
+                throw new IllegalArgumentException("숫자, 날짜/시간, boolean이 아닌 값으로 정렬한 쿼리는 나누어 실행할 수 없습니다: "
+                        + order.getTarget());
+            }
+        }
+
+        List<long[]> ranges = ranges(query, idPath, partitions);
+        if (ranges.isEmpty()) {
+            return new ArrayList<>();
+        }
+        QueryModifiers modifiers = metadata.getModifiers();
+        Long partitionLimit = modifiers.getLimit() == null ? null
+                : modifiers.getLimit() + (modifiers.getOffset() == null ? 0 : modifiers.getOffset());
+        List<OrderSpecifier<?>> orderBy = metadata.getOrderBy();
+
+        List<CompletableFuture<List<Tuple>>> futures = new ArrayList<>(ranges.size());
+        for (long[] range : ranges) {
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> fetchPartition(query, idPath, range, orderBy, partitionLimit), executor));
+        }
+        List<List<Tuple>> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<List<Tuple>> future : futures) {
+            results.add(join(future));
+        }
+
+        List<T> merged = orderBy.isEmpty() ? concat(results) : merge(results, orderBy, nullOrdering());
+        int from = modifiers.getOffset() == null ? 0 : (int) Math.min(modifiers.getOffset(), merged.size());
+        int to = modifiers.getLimit() == null ? merged.size() : (int) Math.min(from + modifiers.getLimit(), merged.size());
+        return from == 0 && to == merged.size() ? merged : new ArrayList<>(merged.subList(from, to));
+    }
+
+    /**
+     * DB 정렬 순서와 Comparable 순서가 같은 타입
+     */
+    private static boolean mergeable(Class<?> type) {
+        return Number.class.isAssignableFrom(type)
+                || Temporal.class.isAssignableFrom(type)
+                || Date.class.isAssignableFrom(type)
+                || type == Boolean.class;
+    }
+
+    /**
+     * 조건에 맞는 id의 min ~ max를 partitions개의 겹치지 않는 구간 [from, to]로 나눈다.
+     */
+    private List<long[]> ranges(JPAQuery<?> query, NumberPath<Long> idPath, int partitions) {
+        Tuple minMax = withEntityManager(em -> {
+            JPAQuery<?> rangeQuery = query.clone(em);
+            rangeQuery.getMetadata().clearOrderBy();
+            rangeQuery.restrict(QueryModifiers.EMPTY);
+            return rangeQuery.select(idPath.min(), idPath.max()).fetchOne();
+        });
+        List<long[]> ranges = new ArrayList<>(partitions);
+        if (minMax == null || minMax.get(0, Long.class) == null) {
+            return ranges;
+        }
+        long min = minMax.get(0, Long.class);
+        long max = minMax.get(1, Long.class);
+        long size = Math.max(1, (max - min + partitions) / partitions);
+        for (long from = min; from <= max; from += size) {
+            ranges.add(new long[]{from, Math.min(max, from + size - 1)});
+        }
+        return ranges;
+    }
+
+    /**
+     * 0번째 값은 원래 프로젝션, 그 뒤는 정렬 값이다.
+     */
+    private List<Tuple> fetchPartition(JPAQuery<?> query, NumberPath<Long> idPath, long[] range,
+                                       List<OrderSpecifier<?>> orderBy, Long limit) {
+        return withEntityManager(em -> {
+            JPAQuery<?> partition = query.clone(em)
+                    .where(idPath.between(range[0], range[1]))
+                    .setHint(QueryHints.READ_ONLY, true);
+            partition.restrict(new QueryModifiers(limit, null));
+            if (orderBy.isEmpty()) {
+                // 구간 안의 순서가 정해져야 이어붙인 결과가 id 순이고, limit도 앞쪽 id부터 자른다.
+                partition.orderBy(idPath.asc());
+            }
+
+            Expression<?>[] projection = new Expression<?>[1 + orderBy.size()];
+            projection[0] = query.getMetadata().getProjection();
+            for (int i = 0; i < orderBy.size(); i++) {
+                projection[i + 1] = orderBy.get(i).getTarget();
+            }
+            return partition.select(projection).fetch();
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> concat(List<List<Tuple>> results) {
+        int size = results.stream().mapToInt(List::size).sum();
+        List<T> merged = new ArrayList<>(size);
+        for (List<Tuple> rows : results) {
+            for (Tuple row : rows) {
+                merged.add((T) row.get(0, Object.class));
+            }
+        }
+        return merged;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> merge(List<List<Tuple>> results, List<OrderSpecifier<?>> orderBy,
+                                     NullOrdering nullOrdering) {
+        Comparator<Tuple> rowOrder = rowComparator(orderBy, nullOrdering);
+        // 정렬 값이 같으면 앞 구간(작은 id)의 행이 먼저 나온다.
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(
+                Comparator.<Cursor, Tuple>comparing(Cursor::current, rowOrder).thenComparingInt(cursor -> cursor.partition));
+        int size = 0;
+        for (int i = 0; i < results.size(); i++) {
+            size += results.get(i).size();
+            if (!results.get(i).isEmpty()) {
+                queue.add(new Cursor(i, results.get(i)));
+            }
+        }
+
+        List<T> merged = new ArrayList<>(size);
+        while (!queue.isEmpty()) {
+            Cursor cursor = queue.poll();
+            merged.add((T) cursor.current().get(0, Object.class));
+            if (cursor.next()) {
+                queue.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Tuple> rowComparator(List<OrderSpecifier<?>> orderBy, NullOrdering nullOrdering) {
+        Comparator<Tuple> comparator = (a, b) -> 0;
+        for (int i = 0; i < orderBy.size(); i++) {
+            int column = i + 1;
+            OrderSpecifier<?> order = orderBy.get(i);
+            boolean nullsFirst = order.getNullHandling() == OrderSpecifier.NullHandling.Default
+                    ? nullOrdering.nullsFirst(order.getOrder())
+                    : order.getNullHandling() == OrderSpecifier.NullHandling.NullsFirst;
+            Comparator<Comparable> values = Comparator.naturalOrder();
+            if (order.getOrder() == Order.DESC) {
+                values = values.reversed();
+            }
+            values = nullsFirst ? Comparator.nullsFirst(values) : Comparator.nullsLast(values);
+            Comparator<Comparable> columnOrder = values;
+            comparator = comparator.thenComparing(row -> (Comparable) row.get(column, Object.class), columnOrder);
+        }
+        return comparator;
+    }
+
+    /**
+     * nullsFirst()/nullsLast()가 없을 때 DB가 null을 두는 위치, 처음 병합할 때 한 번 읽는다.
+     */
+    private NullOrdering nullOrdering() {
+        NullOrdering ordering = nullOrdering;
+        if (ordering == null) {
+            ordering = withEntityManager(em -> em.unwrap(Session.class)
+                    .doReturningWork(connection -> NullOrdering.of(connection.getMetaData())));
+            nullOrdering = ordering;
+        }
+        return ordering;
+    }
+
+    private <R> R withEntityManager(Function<EntityManager, R> work) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return work.apply(em);
+        } finally {
+            em.close();
+        }
+    }
+
+    private static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private enum NullOrdering {
+        LOW, HIGH, START, END;
+
+        static NullOrdering of(DatabaseMetaData metaData) throws SQLException {
+            if (metaData.nullsAreSortedAtStart()) {
+                return START;
+            }
+            if (metaData.nullsAreSortedAtEnd()) {
+                return END;
+            }
+            return metaData.nullsAreSortedHigh() ? HIGH : LOW;
+        }
+
+        boolean nullsFirst(Order order) {
+            switch (this) {
+                case START:
+                    return true;
+                case END:
+                    return false;
+                case HIGH:
+                    return order == Order.DESC;
+                default:
+                    return order == Order.ASC;
+            }
+        }
+    }
+
+    private static final class Cursor {
+
+        private final int partition;
+        private final List<Tuple> rows;
+        private int index;
+
+        private Cursor(int partition, List<Tuple> rows) {
+            this.partition = partition;
+            this.rows = rows;
+        }
+
+        private Tuple current() {
+            return rows.get(index);
+        }
+
+        private boolean next() {
+            return ++index < rows.size();
+        }
+    }
+}
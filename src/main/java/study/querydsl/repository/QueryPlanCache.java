@@ -0,0 +1,209 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.NonUniqueResultException;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.ParamNotSetException;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 상수 값만 다른 같은 모양의 쿼리는 JPQL 직렬화를 다시 하지 않고 캐시된 JPQL과 파라미터 배치를 재사용한다.
+ *
+ * 1. 처음 보는 모양이면 JPQLSerializer로 직렬화하고, JPQL 파라미터(?1, ?2 ...)가
+ *    쿼리의 몇 번째 상수에서 왔는지를 기록해둔다.
+ * 2. 같은 모양이 다시 오면 상수 값만 모아서 캐시된 JPQL에 바인딩한다.
+ *    JPQL 문자열도 같으므로 Hibernate의 쿼리 플랜 캐시도 그대로 적중한다.
+ *
+ * like 패턴(startsWith, contains ...)처럼 템플릿이 상수 값을 바꾸거나,
+ * case 식처럼 상수를 JPQL에 직접 써넣는 쿼리는 캐시하지 않고 매번 직렬화한다.
+ *
+ * JPAQuery에 준 힌트, 락 모드, 플러시 모드는 적용되지 않는다.
+ */
+public class QueryPlanCache {
+
+    private final EntityManager em;
+    private final JPQLTemplates templates;
+    private final int maxEntries;
+    private final Map<String, Plan> plans = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder uncacheable = new LongAdder();
+
+    public QueryPlanCache(EntityManager em, JPQLTemplates templates, int maxEntries) {
+        this.em = em;
+        this.templates = templates;
+        this.maxEntries = maxEntries;
+    }
+
+    public <T> List<T> fetch(JPAQuery<T> query) {
+        QueryMetadata metadata = query.getMetadata();
+        QueryShape shape = QueryShape.of(metadata);
+
+        Plan plan = plans.get(shape.getKey());
+        if (plan != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            plan = Plan.create(serialize(metadata), shape);
+            if (plan.cacheable && plans.size() < maxEntries) {
+                plans.put(shape.getKey(), plan);
+            } else if (!plan.cacheable) {
+                uncacheable.increment();
+            }
+        }
+        return execute(plan, shape, metadata);
+    }
+
+    public <T> T fetchOne(JPAQuery<T> query) {
+        List<T> result = fetch(query);
+        if (result.isEmpty()) {
+            return null;
+        }
+        if (result.size() > 1) {
+            throw new NonUniqueResultException();
+        }
+        return result.get(0);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * 미스 중에서 모양 때문에 캐시할 수 없었던 횟수
+     */
+    public long getUncacheableCount() {
+        return uncacheable.sum();
+    }
+
+    public int size() {
+        return plans.size();
+    }
+
+    public void clear() {
+        plans.clear();
+    }
+
+    private JPQLSerializer serialize(QueryMetadata metadata) {
+        JPQLSerializer serializer = new JPQLSerializer(templates, em);
+        serializer.serialize(metadata, false, null);
+        return serializer;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> execute(Plan plan, QueryShape shape, QueryMetadata metadata) {
+        Query query = em.createQuery(plan.jpql);
+        for (int i = 0; i < plan.slots.length; i++) {
+            Object value = plan.cacheable ? shape.getConstants().get(plan.slots[i]) : plan.serializedConstants.get(i);
+            if (value instanceof ParamExpression) {
+                value = param(metadata, (ParamExpression<?>) value);
+            }
+            query.setParameter(i + 1, value);
+        }
+        QueryModifiers modifiers = metadata.getModifiers();
+        if (modifiers.getLimit() != null) {
+            query.setMaxResults(modifiers.getLimitAsInteger());
+        }
+        if (modifiers.getOffset() != null) {
+            query.setFirstResult(modifiers.getOffsetAsInteger());
+        }
+
+        Expression<?> projection = metadata.getProjection();
+        if (!(projection instanceof FactoryExpression)
+                || templates.getQueryHandler().transform(query, (FactoryExpression<?>) projection)) {
+            return query.getResultList();
+        }
+        FactoryExpression<?> factory = (FactoryExpression<?>) projection;
+        List<?> rows = query.getResultList();
+        List<T> result = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            result.add((T) (row instanceof Object[] ? factory.newInstance((Object[]) row) : factory.newInstance(row)));
+        }
+        return result;
+    }
+
+    private Object param(QueryMetadata metadata, ParamExpression<?> param) {
+        Object value = metadata.getParams().get(param);
+        if (value == null) {
+            throw new ParamNotSetException(param);
+        }
+        return value;
+    }
+
+    /**
+     * jpql: 직렬화된 JPQL
+     * slots[i]: (i + 1)번째 JPQL 파라미터에 바인딩할 상수의 QueryShape 상수 목록 상 위치
+     */
+    private static final class Plan {
+
+        private final String jpql;
+        private final int[] slots;
+        private final boolean cacheable;
+        private final List<Object> serializedConstants;
+
+        private Plan(String jpql, int[] slots, boolean cacheable, List<Object> serializedConstants) {
+            this.jpql = jpql;
+            this.slots = slots;
+            this.cacheable = cacheable;
+            this.serializedConstants = serializedConstants;
+        }
+
+        /**
+         * 직렬화된 상수가 모두 쿼리의 상수 객체 그대로이고(같은 인스턴스),
+         * 쿼리의 상수도 모두 파라미터로 나갔을 때만 캐시할 수 있다.
+         * case 식 안의 상수는 JPQL에 직접 쓰일 수 있으므로 case 식이 있으면 캐시하지 않는다.
+         */
+        static Plan create(JPQLSerializer serializer, QueryShape shape) {
+            List<Object> serialized = serializer.getConstants();
+            List<Object> constants = shape.getConstants();
+            int[] slots = new int[serialized.size()];
+            boolean[] used = new boolean[constants.size()];
+            boolean cacheable = !shape.containsCase();
+
+            for (int i = 0; i < serialized.size(); i++) {
+                Object value = serialized.get(i);
+                slots[i] = -1;
+                if (!(value instanceof ParamExpression)) {
+                    for (int j = 0; j < constants.size(); j++) {
+                        if (constants.get(j) == value) {
+                            slots[i] = j;
+                            break;
+                        }
+                    }
+                }
+                if (slots[i] < 0) {
+                    cacheable = false;
+                    continue;
+                }
+                // 값이 같아서 합쳐진 상수들도 사용된 것으로 본다.
+                for (int j = 0; j < constants.size(); j++) {
+                    if (constants.get(j).equals(value)) {
+                        used[j] = true;
+                    }
+                }
+            }
+            for (boolean u : used) {
+                cacheable &= u;
+            }
+            return new Plan(serializer.toString(), slots, cacheable, new ArrayList<>(serialized));
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinFlag;
+import com.querydsl.core.QueryFlag;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 쿼리의 "모양"
+ *
+ * key는 상수 값을 뺀 나머지(경로, 연산자, 조인, 정렬 ...)로 만든 문자열이고,
+ * constants는 쿼리에 나온 상수 값들을 순회 순서대로 모은 것이다.
+ * 상수 값만 다른 두 쿼리는 key가 같다.
+ *
+ * JPQLSerializer는 같은 값의 상수를 하나의 파라미터로 합치므로,
+ * 앞에 나온 상수와 값이 같은지도 key에 포함한다.
+ *
+ * fingerprint()는 key를 줄인 값으로, 메트릭 태그처럼 쿼리 모양을 짧게 구분할 때 쓴다.
+ */
+public final class QueryShape {
+
+    private final String key;
+    private final List<Object> constants;
+    private final boolean containsCase;
+
+    private QueryShape(String key, List<Object> constants, boolean containsCase) {
+        this.key = key;
+        this.constants = constants;
+        this.containsCase = containsCase;
+    }
+
+    static QueryShape of(QueryMetadata metadata) {
+        Builder builder = new Builder();
+        builder.metadata(metadata);
+        return new QueryShape(builder.key.toString(), builder.constants, builder.containsCase);
+    }
+
+    /**
+     * key의 64비트 FNV-1a 해시(16자리 16진수). 실행할 때마다, 서버가 바뀌어도 같은 모양이면 같은 값이다.
+     */
+    public static String fingerprint(QueryMetadata metadata) {
+        String key = of(metadata).key;
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        String hex = Long.toHexString(hash);
+        return "0".repeat(16 - hex.length()) + hex;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    List<Object> getConstants() {
+        return constants;
+    }
+
+    boolean containsCase() {
+        return containsCase;
+    }
+
+    private static final Set<Ops> CASE_OPERATORS = EnumSet.of(
+            Ops.CASE, Ops.CASE_WHEN, Ops.CASE_ELSE, Ops.CASE_EQ, Ops.CASE_EQ_WHEN, Ops.CASE_EQ_ELSE);
+
+    private static final class Builder implements Visitor<Void, Void> {
+
+        private final StringBuilder key = new StringBuilder();
+        private final List<Object> constants = new ArrayList<>();
+        private boolean containsCase;
+
+        private void metadata(QueryMetadata metadata) {
+            key.append("select");
+            if (metadata.isDistinct()) {
+                key.append(" distinct");
+            }
+            key.append('(');
+            handle(metadata.getProjection());
+            key.append(")from(");
+            for (JoinExpression join : metadata.getJoins()) {
+                key.append(join.getType()).append(' ');
+                handle(join.getTarget());
+                for (JoinFlag flag : join.getFlags()) {
+                    key.append(' ').append(flag.getPosition()).append(':');
+                    handle(flag.getFlag());
+                }
+                if (join.getCondition() != null) {
+                    key.append(" on ");
+                    handle(join.getCondition());
+                }
+                key.append(',');
+            }
+            key.append(")where(");
+            handle(metadata.getWhere());
+            key.append(")groupBy(");
+            handleAll(metadata.getGroupBy());
+            key.append(")having(");
+            handle(metadata.getHaving());
+            key.append(")orderBy(");
+            for (OrderSpecifier<?> order : metadata.getOrderBy()) {
+                handle(order.getTarget());
+                key.append(' ').append(order.getOrder()).append(' ').append(order.getNullHandling()).append(',');
+            }
+            key.append(")flags(");
+            for (QueryFlag flag : metadata.getFlags()) {
+                key.append(flag.getPosition()).append(':');
+                handle(flag.getFlag());
+                key.append(',');
+            }
+            key.append(')');
+        }
+
+        private void handle(Expression<?> expr) {
+            if (expr != null) {
+                expr.accept(this, null);
+            }
+        }
+
+        private void handleAll(List<? extends Expression<?>> exprs) {
+            for (Expression<?> expr : exprs) {
+                handle(expr);
+                key.append(',');
+            }
+        }
+
+        @Override
+        public Void visit(Constant<?> expr, Void context) {
+            Object value = expr.getConstant();
+            key.append("?").append(value.getClass().getName());
+            int same = constants.indexOf(value);
+            if (same >= 0) {
+                key.append('=').append(same);
+            }
+            constants.add(value);
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Void context) {
+            key.append(expr.getClass().getName()).append('<').append(expr.getType().getName()).append(">(");
+            handleAll(expr.getArgs());
+            key.append(')');
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, Void context) {
+            if (CASE_OPERATORS.contains(expr.getOperator())) {
+                containsCase = true;
+            }
+            key.append(expr.getOperator()).append('(');
+            handleAll(expr.getArgs());
+            key.append(')');
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Void context) {
+            key.append(':').append(expr.getName());
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Void context) {
+            key.append(expr.getType().getName()).append(' ').append(expr);
+            return null;
+        }
+
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Void context) {
+            key.append("subquery(");
+            metadata(expr.getMetadata());
+            key.append(expr.getMetadata().getModifiers().getLimit())
+                    .append(',')
+                    .append(expr.getMetadata().getModifiers().getOffset())
+                    .append(')');
+            return null;
+        }
+
+        /**
+         * 템플릿 인자 중 식이 아닌 값은 그대로 JPQL에 들어갈 수 있으므로 key에 값을 넣는다.
+         */
+        @Override
+        public Void visit(TemplateExpression<?> expr, Void context) {
+            key.append(expr.getTemplate()).append('(');
+            for (Object arg : expr.getArgs()) {
+                if (arg instanceof Expression) {
+                    handle((Expression<?>) arg);
+                } else {
+                    key.append(arg);
+                }
+                key.append(',');
+            }
+            key.append(')');
+            return null;
+        }
+    }
+}
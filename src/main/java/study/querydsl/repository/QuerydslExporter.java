@@ -0,0 +1,151 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Querydsl 프로젝션 쿼리의 결과를 엔티티나 Tuple로 만들지 않고 JDBC ResultSet에서 바로 파일로 내보낸다.
+ *
+ * tupleProjection처럼 fetch()한 뒤 문자열로 바꾸면 행마다 Object[], Tuple, 값 문자열이 만들어지고
+ * 전체 결과가 List로 메모리에 올라온다. 여기서는
+ *
+ * 1. 쿼리를 JPQL로 직렬화하고, Hibernate 쿼리 플랜 캐시에서 그 JPQL의 SQL과 파라미터 위치를 꺼낸다. (SqlTranslation)
+ * 2. 트랜잭션의 커넥션으로 SQL을 실행하고 fetchSize만큼씩 가져온다.
+ * 3. 값을 타입별로 꺼내서 재사용하는 다이렉트 버퍼에 쓰고, 버퍼가 차면 FileChannel로 내보낸다.
+ *    - exportCsv: UTF-8 CSV (CsvExportWriter)
+ *    - exportColumnar: 배치 단위 컬럼형 바이너리 (ColumnarExportWriter)
+ *
+ * select에는 컬럼(member.username, team.name, 집계 ...)만 쓴다. 엔티티를 select 하면 IllegalArgumentException.
+ * in 조건에 컬렉션을 넘긴 쿼리는 지원하지 않는다. offset은 SQL에 넣지 않고 앞의 행을 읽어서 건너뛴다.
+ * 영속성 컨텍스트의 변경 내용은 먼저 flush 한다. 트랜잭션 안에서 사용한다.
+ */
+public class QuerydslExporter {
+
+    private final EntityManager em;
+    private final JPQLTemplates templates;
+    private final int fetchSize;
+    private final int bufferSize;
+    private final int batchRows;
+
+    /**
+     * @param bufferSize CSV 버퍼 크기 (bytes)
+     * @param batchRows  컬럼형 파일의 배치 하나의 행 수
+     */
+    public QuerydslExporter(EntityManager em, JPQLTemplates templates, int fetchSize, int bufferSize, int batchRows) {
+        if (fetchSize < 1 || bufferSize < 64 || batchRows < 1) {
+            throw new IllegalArgumentException("fetchSize, batchRows는 1 이상, bufferSize는 64 이상이어야 합니다.");
+        }
+        this.em = em;
+        this.templates = templates;
+        this.fetchSize = fetchSize;
+        this.bufferSize = bufferSize;
+        this.batchRows = batchRows;
+    }
+
+    public ExportResult exportCsv(JPAQuery<?> query, java.nio.file.Path file) throws IOException {
+        return export(query, file, channel -> new CsvExportWriter(channel, bufferSize));
+    }
+
+    public ExportResult exportColumnar(JPAQuery<?> query, java.nio.file.Path file) throws IOException {
+        return export(query, file, channel -> new ColumnarExportWriter(channel, batchRows));
+    }
+
+    private ExportResult export(JPAQuery<?> query, java.nio.file.Path file,
+                                Function<FileChannel, ExportWriter> writers) throws IOException {
+        QueryMetadata metadata = query.getMetadata();
+        SqlTranslation translation = SqlTranslation.of(em, templates, metadata);
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+
+        long start = System.nanoTime();
+        if (session.isTransactionInProgress()) {
+            session.flush();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             ExportWriter writer = writers.apply(channel)) {
+            long rows = session.doReturningWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(translation.getSql())) {
+                    translation.bind(statement, 1, session);
+                    return write(statement, metadata, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return new ExportResult(rows, channel.position(), System.nanoTime() - start);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long write(PreparedStatement statement, QueryMetadata metadata, ExportWriter writer)
+            throws SQLException, IOException {
+        QueryModifiers modifiers = metadata.getModifiers();
+        long offset = modifiers.getOffset() == null ? 0 : modifiers.getOffset();
+        if (modifiers.getLimit() != null) {
+            statement.setMaxRows(Math.toIntExact(offset + modifiers.getLimit()));
+        }
+        statement.setFetchSize(fetchSize);
+        try (ResultSet rs = statement.executeQuery()) {
+            ResultSetMetaData meta = rs.getMetaData();
+            ExportWriter.ColumnType[] types = new ExportWriter.ColumnType[meta.getColumnCount()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = ExportWriter.ColumnType.of(meta.getColumnType(i + 1));
+            }
+            writer.header(columnNames(metadata.getProjection(), meta), types);
+
+            for (long skipped = 0; skipped < offset && rs.next(); skipped++) {
+                // offset만큼 건너뛴다.
+            }
+            long rows = 0;
+            while (rs.next()) {
+                writer.row(rs);
+                rows++;
+            }
+            writer.finish();
+            return rows;
+        }
+    }
+
+    /**
+     * 프로젝션의 경로 이름(username, age ...), 알 수 없으면 SQL 컬럼 라벨
+     */
+    private static String[] columnNames(Expression<?> projection, ResultSetMetaData meta) throws SQLException {
+        List<? extends Expression<?>> args = projection instanceof FactoryExpression
+                ? ((FactoryExpression<?>) projection).getArgs()
+                : Collections.singletonList(projection);
+        String[] names = new String[meta.getColumnCount()];
+        for (int i = 0; i < names.length; i++) {
+            String name = args.size() == names.length ? name(args.get(i)) : null;
+            names[i] = name != null ? name : meta.getColumnLabel(i + 1);
+        }
+        return names;
+    }
+
+    private static String name(Expression<?> expr) {
+        if (expr instanceof Operation && ((Operation<?>) expr).getOperator() == Ops.ALIAS) {
+            expr = ((Operation<?>) expr).getArg(1);
+        }
+        return expr instanceof Path ? ((Path<?>) expr).getMetadata().getName() : null;
+    }
+}
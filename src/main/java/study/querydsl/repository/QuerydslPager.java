@@ -0,0 +1,149 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * fetchResults()/fetchCount()를 대신하는 페이징 도우미
+ *
+ * 1. 첫 페이지나 마지막 페이지처럼 조회한 내용이 limit보다 적으면 count 쿼리를 생략한다.
+ * 2. count 쿼리를 별도 executor에서 새 EntityManager로 실행하고 future로 돌려줄 수 있다.
+ * 3. countCacheTtl이 0보다 크면 같은 조건(distinct/프로젝션/from/join/where/groupBy/having)의 count를 TTL 동안 재사용한다.
+ *    키에 조건의 상수까지 들어가므로 countCacheMaxEntries개까지만 담는다.
+ *    가득 차면 만료된 것을 지우고, 그래도 자리가 없으면 새 count는 캐시하지 않는다.
+ *
+ * 정렬은 넘겨받은 query의 orderBy를 그대로 사용하고 Pageable의 Sort는 보지 않는다.
+ * count는 JPAQuery의 count 쿼리를 사용하므로 groupBy 쿼리는 지원하지 않는다.
+ */
+public class QuerydslPager {
+
+    private final EntityManagerFactory emf;
+    private final Executor countExecutor;
+    private final long countCacheTtlNanos;
+    private final int countCacheMaxEntries;
+    private final Map<String, CachedCount> countCache = new ConcurrentHashMap<>();
+
+    public QuerydslPager(EntityManagerFactory emf, Executor countExecutor, Duration countCacheTtl) {
+        this(emf, countExecutor, countCacheTtl, 1000);
+    }
+
+    public QuerydslPager(EntityManagerFactory emf, Executor countExecutor, Duration countCacheTtl,
+                         int countCacheMaxEntries) {
+        this.emf = emf;
+        this.countExecutor = countExecutor;
+        this.countCacheTtlNanos = countCacheTtl.toNanos();
+        this.countCacheMaxEntries = countCacheMaxEntries;
+    }
+
+    public <T> Page<T> fetchPage(JPAQuery<T> query, Pageable pageable) {
+        JPAQuery<T> countQuery = query.clone();
+        List<T> content = fetchContent(query, pageable);
+
+        Long total = totalWithoutCount(content, pageable);
+        if (total == null) {
+            total = cachedCount(countQuery);
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * count 쿼리는 호출한 스레드의 트랜잭션 밖에서 실행되므로 커밋된 데이터만 센다.
+     */
+    public <T> AsyncPage<T> fetchPageAsync(JPAQuery<T> query, Pageable pageable) {
+        JPAQuery<T> countQuery = query.clone();
+        CompletableFuture<Long> total = CompletableFuture.supplyAsync(() -> {
+            EntityManager em = emf.createEntityManager();
+            try {
+                return cachedCount(countQuery.clone(em));
+            } finally {
+                em.close();
+            }
+        }, countExecutor);
+
+        List<T> content = fetchContent(query, pageable);
+
+        Long knownTotal = totalWithoutCount(content, pageable);
+        if (knownTotal != null) {
+            total.cancel(false); // 아직 시작하지 않았다면 count 쿼리를 실행하지 않는다.
+            total = CompletableFuture.completedFuture(knownTotal);
+        }
+        return new AsyncPage<>(content, pageable, total);
+    }
+
+    public void evictCountCache() {
+        countCache.clear();
+    }
+
+    private <T> List<T> fetchContent(JPAQuery<T> query, Pageable pageable) {
+        if (pageable.isPaged()) {
+            query.offset(pageable.getOffset())
+                    .limit(pageable.getPageSize());
+        }
+        return query.fetch();
+    }
+
+    /**
+     * PageableExecutionUtils와 같은 규칙으로 count 쿼리 없이 전체 개수를 알 수 있으면 돌려준다.
+     */
+    private Long totalWithoutCount(List<?> content, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return (long) content.size();
+        }
+        if (content.size() < pageable.getPageSize() && (pageable.getOffset() == 0 || !content.isEmpty())) {
+            return pageable.getOffset() + content.size();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("deprecation")
+    private long cachedCount(JPAQuery<?> countQuery) {
+        if (countCacheTtlNanos <= 0) {
+            return countQuery.fetchCount();
+        }
+        String key = countKey(countQuery.getMetadata());
+        long now = System.nanoTime();
+        CachedCount cached = countCache.get(key);
+        if (cached != null && now - cached.createdAt < countCacheTtlNanos) {
+            return cached.count;
+        }
+        long count = countQuery.fetchCount();
+        if (cached == null && countCache.size() >= countCacheMaxEntries) {
+            countCache.values().removeIf(entry -> now - entry.createdAt >= countCacheTtlNanos);
+        }
+        if (cached != null || countCache.size() < countCacheMaxEntries) {
+            countCache.put(key, new CachedCount(count, now));
+        }
+        return count;
+    }
+
+    /**
+     * where(a, b)와 BooleanBuilder로 a.and(b)를 조립한 조건은 같은 문자열이 되므로 같은 키를 쓴다.
+     * distinct면 count(distinct 프로젝션)이 되므로 distinct 여부와 프로젝션도 키에 넣는다.
+     */
+    private String countKey(QueryMetadata metadata) {
+        return metadata.isDistinct() + "|" + metadata.getProjection() + "|" + metadata.getJoins() + "|"
+                + metadata.getWhere() + "|" + metadata.getGroupBy() + "|" + metadata.getHaving();
+    }
+
+    private static final class CachedCount {
+        private final long count;
+        private final long createdAt;
+
+        private CachedCount(long count, long createdAt) {
+            this.count = count;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package study.querydsl.repository;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.annotations.QueryHints;
+
+import javax.persistence.EntityManager;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * fetch()처럼 전체 결과를 List로 만들지 않고, 한 행씩 흘려보내는 조회
+ *
+ * 1. Hibernate scroll(FORWARD_ONLY)로 JDBC 커서를 열고, fetchSize 만큼씩 가져온다.
+ * 2. read-only 힌트로 조회해서 변경 감지용 스냅샷을 만들지 않는다.
+ * 3. clearInterval 행마다 EntityManager를 flush 하고 clear 해서 영속성 컨텍스트가 커지지 않게 한다.
+ *    이미 넘겨준 엔티티는 준영속 상태가 되므로 지연 로딩을 쓰려면 fetch join으로 가져와야 한다.
+ *    같은 트랜잭션에서 먼저 바꿔둔 엔티티도 DB에 반영된 뒤 준영속 상태가 되므로, 흘려보낸 뒤에 또 바꾸려면 다시 조회한다.
+ *
+ * 커서가 트랜잭션의 커넥션을 사용하므로 트랜잭션 안에서 try-with-resources로 사용한다.
+ * query는 같은 EntityManager(JPAQueryFactory 빈)로 만든 것이어야 clear가 의미가 있다.
+ */
+public class QuerydslStreams {
+
+    private final EntityManager em;
+    private final int fetchSize;
+    private final int clearInterval;
+
+    public QuerydslStreams(EntityManager em, int fetchSize, int clearInterval) {
+        this.em = em;
+        this.fetchSize = fetchSize;
+        this.clearInterval = clearInterval;
+    }
+
+    public <T> Stream<T> stream(JPAQuery<T> query) {
+        return stream(query, fetchSize, clearInterval);
+    }
+
+    public <T> Stream<T> stream(JPAQuery<T> query, int fetchSize, int clearInterval) {
+        if (fetchSize < 1 || clearInterval < 1) {
+            throw new IllegalArgumentException("fetchSize와 clearInterval은 1 이상이어야 합니다.");
+        }
+        CloseableIterator<T> rows = query
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true)
+                .iterate();
+        ClearingIterator<T> iterator = new ClearingIterator<>(rows, em, clearInterval);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(rows::close);
+    }
+
+    private static final class ClearingIterator<T> implements Iterator<T> {
+
+        private final CloseableIterator<T> rows;
+        private final EntityManager em;
+        private final int clearInterval;
+        private long count;
+
+        private ClearingIterator(CloseableIterator<T> rows, EntityManager em, int clearInterval) {
+            this.rows = rows;
+            this.em = em;
+            this.clearInterval = clearInterval;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return rows.hasNext();
+        }
+
+        /**
+         * 다음 행을 읽기 전에 clear 해서, 호출한 쪽이 처리 중인 엔티티는 건드리지 않는다.
+         * clear는 flush 되지 않은 변경을 버리므로 먼저 flush 한다. (흘려보낸 엔티티는 read-only라 변경 감지를 건너뛴다.)
+         */
+        @Override
+        public T next() {
+            if (count > 0 && count % clearInterval == 0) {
+                em.flush();
+                em.clear();
+            }
+            count++;
+            return rows.next();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.ParamNotSetException;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import org.hibernate.engine.query.spi.HQLQueryPlan;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.hql.internal.ast.QueryTranslatorImpl;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.hibernate.param.ParameterSpecification;
+import org.hibernate.param.PositionalParameterSpecification;
+import org.hibernate.type.Type;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Querydsl 조회 쿼리를 Hibernate가 번역한 SQL과 그 파라미터로 바꾼다. (QuerydslExporter, BulkInsertExecutor)
+ *
+ * 쿼리를 JPQL로 직렬화하고 Hibernate 쿼리 플랜 캐시에서 번역 결과를 꺼내므로, 같은 JPQL이면 다시 번역하지 않는다.
+ * 컬럼(member.username, team.name, 집계 ...)만 select 할 수 있고, in 조건에 컬렉션을 넘긴 쿼리는 지원하지 않는다.
+ * limit/offset은 SQL에 들어가지 않으므로 쓰는 쪽에서 처리한다.
+ */
+final class SqlTranslation {
+
+    private final QueryMetadata metadata;
+    private final List<Object> constants;
+    private final QueryTranslator translator;
+
+    private SqlTranslation(QueryMetadata metadata, List<Object> constants, QueryTranslator translator) {
+        this.metadata = metadata;
+        this.constants = constants;
+        this.translator = translator;
+    }
+
+    static SqlTranslation of(EntityManager em, JPQLTemplates templates, QueryMetadata metadata) {
+        JPQLSerializer serializer = new JPQLSerializer(templates, em);
+        serializer.serialize(metadata, false, null);
+        String jpql = serializer.toString();
+
+        HQLQueryPlan plan = em.unwrap(SessionImplementor.class).getFactory().getQueryPlanCache()
+                .getHQLQueryPlan(jpql, false, Collections.emptyMap());
+        QueryTranslator[] translators = plan.getTranslators();
+        if (translators.length != 1 || !(translators[0] instanceof QueryTranslatorImpl)) {
+            throw new IllegalArgumentException("SQL 하나로 바꿀 수 없는 쿼리입니다. " + jpql);
+        }
+        for (Type type : translators[0].getReturnTypes()) {
+            if (type.isAssociationType()) {
+                throw new IllegalArgumentException("엔티티 대신 컬럼을 select 해야 합니다. ex) member.team 대신 member.team.id " + jpql);
+            }
+        }
+        return new SqlTranslation(metadata, serializer.getConstants(), translators[0]);
+    }
+
+    String getSql() {
+        return translator.getSQLString();
+    }
+
+    Type[] getReturnTypes() {
+        return translator.getReturnTypes();
+    }
+
+    /**
+     * JPQL 파라미터(?1, ?2 ...)는 직렬화된 상수의 순서와 같고, SQL에는 Hibernate가 모은 순서대로 나온다.
+     *
+     * @param position 첫 파라미터의 위치
+     * @return 다음 파라미터의 위치
+     */
+    int bind(PreparedStatement statement, int position, SessionImplementor session) throws SQLException {
+        for (ParameterSpecification parameter : ((QueryTranslatorImpl) translator).getCollectedParameterSpecifications()) {
+            if (!(parameter instanceof PositionalParameterSpecification)) {
+                throw new IllegalArgumentException("지원하지 않는 파라미터입니다. " + parameter.renderDisplayInfo());
+            }
+            Object value = constants.get(((PositionalParameterSpecification) parameter).getLabel() - 1);
+            if (value instanceof ParamExpression) {
+                ParamExpression<?> param = (ParamExpression<?>) value;
+                value = metadata.getParams().get(param);
+                if (value == null) {
+                    throw new ParamNotSetException(param);
+                }
+            }
+            if (value instanceof Collection) {
+                throw new IllegalArgumentException("컬렉션 파라미터는 지원하지 않습니다. " + value);
+            }
+            Type type = parameter.getExpectedType();
+            if (type == null) {
+                statement.setObject(position++, value);
+            } else {
+                type.nullSafeSet(statement, value, position, session);
+                position += type.getColumnSpan(session.getFactory());
+            }
+        }
+        return position;
+    }
+}
@@ -0,0 +1,78 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.hibernate.HibernateQuery;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import javax.persistence.EntityManager;
+import java.util.function.Function;
+
+/**
+ * 영속성 컨텍스트 없이 StatelessSession으로 조회한다.
+ *
+ * read-only 힌트나 읽기 전용 트랜잭션은 스냅샷만 만들지 않을 뿐, 엔티티는 영속성 컨텍스트에 등록되고 flush 때 훑어진다.
+ * StatelessSession은 영속성 컨텍스트와 1차/2차 캐시가 없어서 조회한 엔티티가 처음부터 준영속 상태로 나온다.
+ * - 연관(member.team)이 필요하면 fetch join으로 같이 가져온다. 지연 로딩 프록시는 초기화할 수 없다.
+ * - 같은 행을 두 번 조회하면 서로 다른 인스턴스가 나온다.
+ * - 넘겨주는 것은 조회 쿼리뿐이라 쓰기 API가 없다.
+ *
+ * 호출한 트랜잭션의 커넥션을 그대로 쓴다. 쓰기 가능한 세션이면 영속성 컨텍스트의 변경 내용을 먼저 flush 한다.
+ */
+public class StatelessQueryExecutor {
+
+    private final EntityManager em;
+    private final JPQLTemplates templates;
+
+    public StatelessQueryExecutor(EntityManager em, JPQLTemplates templates) {
+        this.em = em;
+        this.templates = templates;
+    }
+
+    /**
+     * ex) read(queries -> queries.selectFrom(member).join(member.team, team).fetchJoin().fetch())
+     */
+    public <R> R read(Function<StatelessQueries, R> work) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        if (session.isTransactionInProgress() && !session.isDefaultReadOnly()) {
+            session.flush();
+        }
+        return session.doReturningWork(connection -> {
+            StatelessSession stateless = session.getFactory().openStatelessSession(connection);
+            try {
+                return work.apply(new StatelessQueries(stateless, templates));
+            } finally {
+                stateless.close();
+            }
+        });
+    }
+
+    /**
+     * read() 안에서만 쓴다. 세션이 닫힌 뒤에는 쿼리를 실행할 수 없다.
+     */
+    public static class StatelessQueries {
+
+        private final StatelessSession session;
+        private final JPQLTemplates templates;
+
+        private StatelessQueries(StatelessSession session, JPQLTemplates templates) {
+            this.session = session;
+            this.templates = templates;
+        }
+
+        public <T> HibernateQuery<T> select(Expression<T> expr) {
+            return new HibernateQuery<Void>(session, templates).select(expr);
+        }
+
+        public HibernateQuery<Tuple> select(Expression<?>... exprs) {
+            return new HibernateQuery<Void>(session, templates).select(exprs);
+        }
+
+        public <T> HibernateQuery<T> selectFrom(EntityPath<T> from) {
+            return select(from).from(from);
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.EntityType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * select 절의 스칼라 서브쿼리를 행마다 실행되지 않게 바꿔서 실행한다.
+ *
+ * selectSubQuery, findUserDtoByField처럼 바깥 쿼리를 참조하지 않는 서브쿼리는 먼저 한 번만 실행해서 값을 구하고,
+ * 바깥 쿼리에서는 빼고 조회한 뒤 결과에 그 값을 채운다.
+ *
+ * select(memberSub.age.max()).from(memberSub).where(memberSub.team.eq(member.team))처럼
+ * 바깥 쿼리와 동등 조건으로만 연결된 집계 서브쿼리는 연결 키로 groupBy 한 쿼리를 한 번 실행하고,
+ * 바깥 쿼리에는 연결 키를 대신 조회해서 메모리에서 조인한다. (JPQL은 from 절 서브쿼리를 지원하지 않는다.)
+ * 짝이 없는 행은 서브쿼리와 같이 count면 0, 나머지는 null이 된다.
+ *
+ * 다음과 같이 바꿔도 결과가 같다고 보장할 수 없으면 원래 쿼리를 그대로 실행한다.
+ * - 바깥 쿼리에 distinct, groupBy, having이 있거나 정렬에 서브쿼리가 쓰인 경우
+ * - 바깥 쿼리에 limit/offset이 있는 경우의 상관 서브쿼리 (몇 행만 계산하는 편이 싸다.)
+ * - 상관 서브쿼리가 엔티티 하나에서 하는 집계가 아니거나, 동등 조건이 아닌 조건으로 바깥 쿼리를 참조하는 경우
+ * - 연결 키가 문자열인 경우
+ *   메모리 조인은 키를 자바의 equals로 비교하므로, 대소문자나 뒤쪽 공백을 무시하는 콜레이션에서
+ *   SQL로는 같은 값('A'와 'a ')이 짝을 찾지 못한다.
+ */
+public class SubQueryOptimizer {
+
+    private static final Set<Ops.AggOps> AGGREGATES = EnumSet.of(
+            Ops.AggOps.AVG_AGG, Ops.AggOps.MAX_AGG, Ops.AggOps.MIN_AGG, Ops.AggOps.SUM_AGG,
+            Ops.AggOps.COUNT_AGG, Ops.AggOps.COUNT_DISTINCT_AGG);
+
+    private final EntityManager em;
+    private final JPQLTemplates templates;
+
+    public SubQueryOptimizer(EntityManager em, JPQLTemplates templates) {
+        this.em = em;
+        this.templates = templates;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> List<T> fetch(JPAQuery<T> query) {
+        Rewrite rewrite = analyze(query.getMetadata());
+        if (!rewrite.isRewritten()) {
+            return query.fetch();
+        }
+
+        Object[] hoisted = new Object[rewrite.slots.size()];
+        List<Map<List<Object>, Object>> grouped = new ArrayList<>(rewrite.slots.size());
+        for (int i = 0; i < rewrite.slots.size(); i++) {
+            Slot slot = rewrite.slots.get(i);
+            grouped.add(null);
+            if (slot.kind == Kind.HOISTED) {
+                List<?> values = new JPAQuery<>(em, templates, slot.subQuery.getMetadata().clone()).fetch();
+                if (values.size() > 1) {
+                    // 원래 쿼리도 실패하는 경우이므로 원래 쿼리의 오류를 그대로 낸다.
+                    return query.fetch();
+                }
+                hoisted[i] = values.isEmpty() ? null : values.get(0);
+            } else if (slot.kind == Kind.GROUPED_JOIN) {
+                grouped.set(i, fetchGroups(slot));
+            }
+        }
+
+        List<Tuple> rows = query.clone()
+                .select(rewrite.columns.toArray(new Expression<?>[0]))
+                .fetch();
+
+        List<T> result = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            Object[] args = new Object[rewrite.slots.size()];
+            for (int i = 0; i < args.length; i++) {
+                Slot slot = rewrite.slots.get(i);
+                switch (slot.kind) {
+                    case COLUMN:
+                        args[i] = row.get(slot.column, Object.class);
+                        break;
+                    case HOISTED:
+                        args[i] = hoisted[i];
+                        break;
+                    default:
+                        args[i] = lookup(grouped.get(i), slot, row);
+                }
+            }
+            result.add((T) (rewrite.factory != null ? rewrite.factory.newInstance(args) : args[0]));
+        }
+        return result;
+    }
+
+    /**
+     * SQL에서 null = null은 참이 아니므로 바깥 행의 키에 null이 있으면 짝이 없는 것으로 본다.
+     */
+    private static Object lookup(Map<List<Object>, Object> groups, Slot slot, Tuple row) {
+        List<Object> key = new ArrayList<>(slot.outerKeyColumns.length);
+        for (int column : slot.outerKeyColumns) {
+            Object value = row.get(column, Object.class);
+            if (value == null) {
+                return slot.defaultValue;
+            }
+            key.add(value);
+        }
+        return groups.getOrDefault(key, slot.defaultValue);
+    }
+
+    /**
+     * 키가 null인 행(ex. 팀이 없는 회원)은 어느 바깥 행과도 같지 않으므로 묶지 않는다.
+     */
+    private Map<List<Object>, Object> fetchGroups(Slot slot) {
+        Expression<?>[] projection = Arrays.copyOf(slot.innerKeys, slot.innerKeys.length + 1);
+        projection[slot.innerKeys.length] = slot.aggregate;
+        List<Predicate> where = new ArrayList<>(slot.filters);
+        for (Expression<?> innerKey : slot.innerKeys) {
+            where.add(ExpressionUtils.isNotNull(innerKey));
+        }
+        List<Tuple> rows = new JPAQuery<>(em, templates)
+                .select(projection)
+                .from(slot.from)
+                .where(where.toArray(new Predicate[0]))
+                .groupBy(slot.innerKeys)
+                .fetch();
+
+        Map<List<Object>, Object> values = new HashMap<>(rows.size() * 2);
+        for (Tuple row : rows) {
+            List<Object> key = new ArrayList<>(slot.innerKeys.length);
+            for (int i = 0; i < slot.innerKeys.length; i++) {
+                key.add(row.get(i, Object.class));
+            }
+            values.put(key, row.get(slot.innerKeys.length, Object.class));
+        }
+        return values;
+    }
+
+    // 분석
+
+    Rewrite analyze(QueryMetadata metadata) {
+        Expression<?> projection = metadata.getProjection();
+        FactoryExpression<?> factory = projection instanceof FactoryExpression ? (FactoryExpression<?>) projection : null;
+        List<Expression<?>> args = factory != null ? factory.getArgs() : Collections.singletonList(projection);
+
+        Rewrite rewrite = new Rewrite(factory);
+        if (metadata.isDistinct() || !metadata.getGroupBy().isEmpty() || metadata.getHaving() != null
+                || orderByUsesSubQuery(metadata)) {
+            return rewrite.unchanged(args);
+        }
+        Set<Path<?>> outerRoots = declaredRoots(metadata);
+        boolean paged = metadata.getModifiers().isRestricting();
+
+        for (Expression<?> arg : args) {
+            SubQueryExpression<?> subQuery = unwrapSubQuery(arg);
+            Slot slot = null;
+            if (subQuery != null) {
+                slot = hoist(subQuery);
+                if (slot == null && !paged) {
+                    slot = groupedJoin(subQuery, outerRoots);
+                }
+            }
+            rewrite.slots.add(slot != null ? slot : Slot.column(arg));
+        }
+        return rewrite.assignColumns();
+    }
+
+    private static SubQueryExpression<?> unwrapSubQuery(Expression<?> arg) {
+        if (arg instanceof SubQueryExpression) {
+            return (SubQueryExpression<?>) arg;
+        }
+        if (arg instanceof Operation && ((Operation<?>) arg).getOperator() == Ops.ALIAS
+                && ((Operation<?>) arg).getArg(0) instanceof SubQueryExpression) {
+            return (SubQueryExpression<?>) ((Operation<?>) arg).getArg(0);
+        }
+        return null;
+    }
+
+    private static boolean orderByUsesSubQuery(QueryMetadata metadata) {
+        for (OrderSpecifier<?> order : metadata.getOrderBy()) {
+            Expression<?> target = order.getTarget();
+            boolean alias = target instanceof Path && ((Path<?>) target).getMetadata().isRoot()
+                    && !declaredRoots(metadata).contains(target);
+            // 서브쿼리를 직접 쓰거나 select 절의 별칭으로 정렬하는 경우
+            if (alias || Roots.of(target).subQuery) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 바깥 쿼리를 참조하지 않으면 미리 실행할 수 있다.
+     */
+    private static Slot hoist(SubQueryExpression<?> subQuery) {
+        Roots roots = Roots.of(subQuery);
+        if (roots.param || !roots.declared.containsAll(roots.used)) {
+            return null;
+        }
+        Slot slot = new Slot(Kind.HOISTED);
+        slot.subQuery = subQuery;
+        return slot;
+    }
+
+    private Slot groupedJoin(SubQueryExpression<?> subQuery, Set<Path<?>> outerRoots) {
+        QueryMetadata sub = subQuery.getMetadata();
+        if (sub.getJoins().size() != 1 || sub.isDistinct() || !sub.getGroupBy().isEmpty() || sub.getHaving() != null
+                || sub.getModifiers().isRestricting()) {
+            return null;
+        }
+        JoinExpression join = sub.getJoins().get(0);
+        if (join.getType() != JoinType.DEFAULT || !(join.getTarget() instanceof EntityPath)) {
+            return null;
+        }
+        EntityPath<?> from = (EntityPath<?>) join.getTarget();
+        Set<Path<?>> innerRoots = Collections.singleton(from);
+
+        Expression<?> aggregate = sub.getProjection();
+        if (!(aggregate instanceof Operation) || !AGGREGATES.contains(((Operation<?>) aggregate).getOperator())
+                || !Roots.of(aggregate).within(innerRoots)) {
+            return null;
+        }
+
+        List<Predicate> filters = new ArrayList<>();
+        List<Expression<?>> innerKeys = new ArrayList<>();
+        List<Expression<?>> outerKeys = new ArrayList<>();
+        for (Predicate conjunct : conjuncts(sub.getWhere())) {
+            if (Roots.of(conjunct).within(innerRoots)) {
+                filters.add(conjunct);
+                continue;
+            }
+            if (!(conjunct instanceof Operation) || ((Operation<?>) conjunct).getOperator() != Ops.EQ) {
+                return null;
+            }
+            Expression<?> left = ((Operation<?>) conjunct).getArg(0);
+            Expression<?> right = ((Operation<?>) conjunct).getArg(1);
+            Roots leftRoots = Roots.of(left);
+            Roots rightRoots = Roots.of(right);
+            if (leftRoots.correlates(innerRoots) && rightRoots.correlates(outerRoots)) {
+                innerKeys.add(key(left));
+                outerKeys.add(key(right));
+            } else if (rightRoots.correlates(innerRoots) && leftRoots.correlates(outerRoots)) {
+                innerKeys.add(key(right));
+                outerKeys.add(key(left));
+            } else {
+                return null;
+            }
+        }
+        if (innerKeys.isEmpty() || textKeys(innerKeys) || textKeys(outerKeys)) {
+            return null;
+        }
+
+        Slot slot = new Slot(Kind.GROUPED_JOIN);
+        slot.from = from;
+        slot.aggregate = aggregate;
+        slot.filters = filters;
+        slot.innerKeys = innerKeys.toArray(new Expression<?>[0]);
+        slot.outerKeys = outerKeys.toArray(new Expression<?>[0]);
+        Ops.AggOps operator = (Ops.AggOps) ((Operation<?>) aggregate).getOperator();
+        slot.defaultValue = operator == Ops.AggOps.COUNT_AGG || operator == Ops.AggOps.COUNT_DISTINCT_AGG ? 0L : null;
+        return slot;
+    }
+
+    /**
+     * 엔티티끼리 비교하면(memberSub.team = member.team) 엔티티 대신 id로 묶고 비교한다.
+     */
+    private Expression<?> key(Expression<?> expr) {
+        if (!(expr instanceof Path) || !expr.getType().isAnnotationPresent(Entity.class)) {
+            return expr;
+        }
+        EntityType<?> entityType = em.getMetamodel().entity(expr.getType());
+        String idName = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        return new PathBuilder<>(expr.getType(), ((Path<?>) expr).getMetadata()).get(idName);
+    }
+
+    /**
+     * 문자열은 DB 콜레이션에 따라 equals와 다르게 비교될 수 있다.
+     */
+    private static boolean textKeys(List<Expression<?>> keys) {
+        for (Expression<?> key : keys) {
+            if (CharSequence.class.isAssignableFrom(key.getType()) || key.getType() == Character.class) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Predicate> conjuncts(Predicate where) {
+        List<Predicate> conjuncts = new ArrayList<>();
+        if (where == null) {
+            return conjuncts;
+        }
+        if (where instanceof Operation && ((Operation<?>) where).getOperator() == Ops.AND) {
+            for (Expression<?> arg : ((Operation<?>) where).getArgs()) {
+                conjuncts.addAll(conjuncts((Predicate) arg));
+            }
+        } else {
+            conjuncts.add(where);
+        }
+        return conjuncts;
+    }
+
+    /**
+     * from/join 절에서 선언한 별칭들
+     * join(member.team, team)이면 team이다.
+     */
+    private static Set<Path<?>> declaredRoots(QueryMetadata metadata) {
+        Set<Path<?>> roots = new HashSet<>();
+        for (JoinExpression join : metadata.getJoins()) {
+            Expression<?> target = join.getTarget();
+            if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+                target = ((Operation<?>) target).getArg(1);
+            }
+            if (target instanceof Path) {
+                roots.add(((Path<?>) target).getRoot());
+            }
+        }
+        return roots;
+    }
+
+    enum Kind {
+        COLUMN, HOISTED, GROUPED_JOIN
+    }
+
+    /**
+     * 원래 프로젝션의 인자 하나를 어떻게 구하는지
+     * COLUMN       : 바꾼 쿼리의 column번째 값
+     * HOISTED      : 미리 한 번 실행한 subQuery의 값
+     * GROUPED_JOIN : from을 innerKeys로 groupBy 한 aggregate 값 중, 바꾼 쿼리의 outerKeyColumns 값과 키가 같은 것
+     */
+    static final class Slot {
+
+        final Kind kind;
+        Expression<?> expr;
+        int column;
+        SubQueryExpression<?> subQuery;
+        EntityPath<?> from;
+        Expression<?> aggregate;
+        List<Predicate> filters;
+        Expression<?>[] innerKeys;
+        Expression<?>[] outerKeys;
+        int[] outerKeyColumns;
+        Object defaultValue;
+
+        private Slot(Kind kind) {
+            this.kind = kind;
+        }
+
+        static Slot column(Expression<?> expr) {
+            Slot slot = new Slot(Kind.COLUMN);
+            slot.expr = expr;
+            return slot;
+        }
+    }
+
+    static final class Rewrite {
+
+        final FactoryExpression<?> factory;
+        final List<Slot> slots = new ArrayList<>();
+        final List<Expression<?>> columns = new ArrayList<>();
+
+        private Rewrite(FactoryExpression<?> factory) {
+            this.factory = factory;
+        }
+
+        private Rewrite unchanged(List<Expression<?>> args) {
+            for (Expression<?> arg : args) {
+                slots.add(Slot.column(arg));
+            }
+            return assignColumns();
+        }
+
+        /**
+         * 바꾼 쿼리가 조회할 식의 목록을 만든다. 남는 식이 없으면 바꾸지 않는다.
+         */
+        private Rewrite assignColumns() {
+            for (Slot slot : slots) {
+                if (slot.kind == Kind.COLUMN) {
+                    slot.column = columns.size();
+                    columns.add(slot.expr);
+                } else if (slot.kind == Kind.GROUPED_JOIN) {
+                    slot.outerKeyColumns = new int[slot.outerKeys.length];
+                    for (int i = 0; i < slot.outerKeys.length; i++) {
+                        slot.outerKeyColumns[i] = columns.size();
+                        columns.add(slot.outerKeys[i]);
+                    }
+                }
+            }
+            return this;
+        }
+
+        boolean isRewritten() {
+            if (columns.isEmpty()) {
+                return false;
+            }
+            for (Slot slot : slots) {
+                if (slot.kind != Kind.COLUMN) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        List<Kind> kinds() {
+            List<Kind> kinds = new ArrayList<>(slots.size());
+            for (Slot slot : slots) {
+                kinds.add(slot.kind);
+            }
+            return kinds;
+        }
+    }
+
+    /**
+     * 식에서 쓰인 루트 경로(used)와 그 안의 서브쿼리가 선언한 별칭(declared)
+     */
+    private static final class Roots implements Visitor<Void, Void> {
+
+        private final Set<Path<?>> used = new HashSet<>();
+        private final Set<Path<?>> declared = new HashSet<>();
+        private boolean subQuery;
+        private boolean param;
+
+        static Roots of(Expression<?> expr) {
+            Roots roots = new Roots();
+            expr.accept(roots, null);
+            return roots;
+        }
+
+        boolean within(Set<Path<?>> roots) {
+            return !subQuery && !param && roots.containsAll(used);
+        }
+
+        boolean correlates(Set<Path<?>> roots) {
+            return !used.isEmpty() && within(roots);
+        }
+
+        private void handle(Expression<?> expr) {
+            if (expr != null) {
+                expr.accept(this, null);
+            }
+        }
+
+        @Override
+        public Void visit(Constant<?> expr, Void context) {
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Void context) {
+            expr.getArgs().forEach(this::handle);
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, Void context) {
+            expr.getArgs().forEach(this::handle);
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Void context) {
+            // 파라미터 값은 바깥 쿼리에 있으므로 따로 떼어 실행할 수 없다.
+            param = true;
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Void context) {
+            used.add(expr.getRoot());
+            return null;
+        }
+
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Void context) {
+            subQuery = true;
+            QueryMetadata metadata = expr.getMetadata();
+            declared.addAll(declaredRoots(metadata));
+            for (JoinExpression join : metadata.getJoins()) {
+                handle(join.getTarget());
+                handle(join.getCondition());
+            }
+            handle(metadata.getProjection());
+            handle(metadata.getWhere());
+            metadata.getGroupBy().forEach(this::handle);
+            handle(metadata.getHaving());
+            for (OrderSpecifier<?> order : metadata.getOrderBy()) {
+                handle(order.getTarget());
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, Void context) {
+            for (Object arg : expr.getArgs()) {
+                if (arg instanceof Expression) {
+                    handle((Expression<?>) arg);
+                }
+            }
+            return null;
+        }
+    }
+}
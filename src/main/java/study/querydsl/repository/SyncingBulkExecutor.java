@@ -0,0 +1,301 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.persister.entity.EntityPersister;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 벌크 수정/삭제 후에 영속성 컨텍스트를 em.clear() 없이 맞춰준다.
+ *
+ * bulkUpdate처럼 queryFactory.update(...)를 실행하면 DB만 바뀌고 이미 조회해둔 엔티티는 옛날 값을 그대로 가진다.
+ * 여기서는 영속성 컨텍스트에 있는 엔티티 중에서 실제로 영향을 받는 것만 골라서 맞춘다.
+ *
+ * 1. 실행 전에 관리 중인 엔티티의 id 중 where 조건에 맞는 것을 IN 절로 조회한다.
+ * 2. 벌크 연산을 실행한다.
+ * 3. 수정이면 그 엔티티들의 바뀐 컬럼 값만 다시 조회해서 엔티티와 스냅샷에 같이 넣는다.
+ *    (스냅샷도 바꾸므로 flush 시점에 update가 다시 나가지 않는다.)
+ *    루트 엔티티의 기본 값 타입 필드가 아닌 경로를 수정했거나 삭제한 경우에는 해당 엔티티만 detach 한다.
+ *
+ * 관리 중인 엔티티가 없으면 추가 쿼리 없이 벌크 연산만 실행한다.
+ * 삭제된 회원이 이미 로딩된 team.getMembers() 컬렉션에서 빠지지는 않는다.
+ *
+ * 벌크 연산은 엔티티 이벤트를 발생시키지 않으므로, 집계 테이블처럼 따로 맞춰야 하는 것은
+ * {@link BulkListener}로 실행 전후에 끼어든다.
+ * ObservingJPAQueryFactory는 자기 update/delete에서 BulkListener에 알리므로, 그 팩토리를 쓸 때는 리스너를 넘기지 않는다.
+ */
+public class SyncingBulkExecutor {
+
+    private static final int IN_CHUNK_SIZE = 1000;
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final List<BulkListener> listeners;
+
+    public SyncingBulkExecutor(EntityManager em, JPAQueryFactory queryFactory) {
+        this(em, queryFactory, Collections.emptyList());
+    }
+
+    public SyncingBulkExecutor(EntityManager em, JPAQueryFactory queryFactory, List<BulkListener> listeners) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.listeners = listeners;
+    }
+
+    public SyncingUpdateClause update(EntityPath<?> entity) {
+        return new SyncingUpdateClause(entity);
+    }
+
+    public long delete(EntityPath<?> entity, Predicate... where) {
+        em.flush();
+        Target target = new Target(entity);
+        Map<Object, Object> affected = target.affectedManagedEntities(where);
+        List<Runnable> afterExecute = new ArrayList<>(listeners.size());
+        for (BulkListener listener : listeners) {
+            afterExecute.add(listener.beforeDelete(entity, where));
+        }
+
+        long count = queryFactory.delete(entity).where(where).execute();
+
+        affected.values().forEach(em::detach);
+        afterExecute.forEach(Runnable::run);
+        return count;
+    }
+
+    public class SyncingUpdateClause {
+
+        private final EntityPath<?> entity;
+        private final List<Path<?>> paths = new ArrayList<>();
+        private final List<Object> values = new ArrayList<>();
+        private final List<Predicate> where = new ArrayList<>();
+
+        private SyncingUpdateClause(EntityPath<?> entity) {
+            this.entity = entity;
+        }
+
+        public <T> SyncingUpdateClause set(Path<T> path, T value) {
+            paths.add(path);
+            values.add(value);
+            return this;
+        }
+
+        public <T> SyncingUpdateClause set(Path<T> path, Expression<? extends T> expression) {
+            paths.add(path);
+            values.add(expression);
+            return this;
+        }
+
+        /**
+         * 여러 번 부르면 Querydsl 절처럼 and로 합친다.
+         */
+        public SyncingUpdateClause where(Predicate... where) {
+            for (Predicate predicate : where) {
+                if (predicate != null) {
+                    this.where.add(predicate);
+                }
+            }
+            return this;
+        }
+
+        public long execute() {
+            Predicate[] where = this.where.toArray(new Predicate[0]);
+            em.flush();
+            Target target = new Target(entity);
+            Map<Object, Object> affected = target.affectedManagedEntities(where);
+            List<Runnable> afterExecute = new ArrayList<>(listeners.size());
+            for (BulkListener listener : listeners) {
+                afterExecute.add(listener.beforeUpdate(entity, where, paths, values));
+            }
+
+            JPAUpdateClause update = queryFactory.update(entity).where(where);
+            set(update, paths, values);
+            long count = update.execute();
+
+            target.reload(affected, paths);
+            afterExecute.forEach(Runnable::run);
+            return count;
+        }
+    }
+
+    /**
+     * JPAUpdateClause.set(List, List)는 값을 모두 상수로 감싸서 member.age.add(1) 같은 식도 파라미터로 바인딩한다.
+     * 그래서 짝마다 식이면 set(Path, Expression), 값이면 set(Path, value)로 넣는다.
+     */
+    @SuppressWarnings("unchecked")
+    static void set(JPAUpdateClause update, List<Path<?>> paths, List<Object> values) {
+        for (int i = 0; i < paths.size(); i++) {
+            Path<Object> path = (Path<Object>) paths.get(i);
+            Object value = values.get(i);
+            if (value instanceof Expression) {
+                update.set(path, (Expression<?>) value);
+            } else {
+                update.set(path, value);
+            }
+        }
+    }
+
+    /**
+     * beforeXxx는 벌크 연산 직전(where 조건이 아직 바뀌기 전의 행에 맞을 때)에 불리고,
+     * 반환한 작업은 벌크 연산 직후 같은 트랜잭션에서 실행된다.
+     */
+    public interface BulkListener {
+
+        Runnable NO_OP = () -> {
+        };
+
+        /**
+         * @param values paths와 같은 순서의 값. 상수이거나 식(Expression)이다.
+         */
+        default Runnable beforeUpdate(EntityPath<?> entity, Predicate[] where, List<Path<?>> paths, List<Object> values) {
+            return NO_OP;
+        }
+
+        default Runnable beforeDelete(EntityPath<?> entity, Predicate[] where) {
+            return NO_OP;
+        }
+
+        /**
+         * BulkInsertExecutor의 insert
+         *
+         * @param rows columns와 같은 순서의 값, insert ... select면 미리 알 수 없으므로 null
+         */
+        default Runnable beforeInsert(EntityPath<?> entity, List<Path<?>> columns, List<Object[]> rows) {
+            return NO_OP;
+        }
+    }
+
+    /**
+     * 벌크 연산 대상 엔티티 타입과 그 영속성 컨텍스트 정보
+     */
+    private class Target {
+
+        private final EntityPath<?> entity;
+        private final SessionImplementor session;
+        private final EntityPersister persister;
+        private final PathBuilder<Object> idPath;
+
+        private Target(EntityPath<?> entity) {
+            this.entity = entity;
+            this.session = em.unwrap(SessionImplementor.class);
+            this.persister = session.getFactory().getMetamodel().entityPersister(entity.getType());
+            this.idPath = new PathBuilder<>(entity.getType(), entity.getMetadata())
+                    .get(persister.getIdentifierPropertyName());
+        }
+
+        /**
+         * @return 영속성 컨텍스트에 있는 엔티티 중 where 조건에 맞는 것 (id -> 엔티티)
+         */
+        private Map<Object, Object> affectedManagedEntities(Predicate[] where) {
+            Map<Object, Object> managed = new HashMap<>();
+            for (Map.Entry<Object, EntityEntry> entry : session.getPersistenceContext().reentrantSafeEntityEntries()) {
+                EntityEntry entityEntry = entry.getValue();
+                if (entityEntry.getPersister() == persister && entityEntry.getStatus() == Status.MANAGED) {
+                    managed.put(entityEntry.getId(), entry.getKey());
+                }
+            }
+            if (managed.isEmpty()) {
+                return managed;
+            }
+
+            Map<Object, Object> affected = new HashMap<>();
+            for (List<Object> ids : chunks(managed.keySet())) {
+                List<Object> matched = queryFactory
+                        .select(idPath)
+                        .from(entity)
+                        .where(where)
+                        .where(idPath.in(ids))
+                        .fetch();
+                for (Object id : matched) {
+                    affected.put(id, managed.get(id));
+                }
+            }
+            return affected;
+        }
+
+        private void reload(Map<Object, Object> affected, List<Path<?>> paths) {
+            if (affected.isEmpty()) {
+                return;
+            }
+            int[] propertyIndexes = new int[paths.size()];
+            for (int i = 0; i < paths.size(); i++) {
+                propertyIndexes[i] = basicPropertyIndex(paths.get(i));
+                if (propertyIndexes[i] < 0) {
+                    affected.values().forEach(em::detach);
+                    return;
+                }
+            }
+
+            Expression<?>[] projection = new Expression<?>[paths.size() + 1];
+            projection[0] = idPath;
+            for (int i = 0; i < paths.size(); i++) {
+                projection[i + 1] = paths.get(i);
+            }
+            for (List<Object> ids : chunks(affected.keySet())) {
+                List<Tuple> rows = queryFactory
+                        .select(projection)
+                        .from(entity)
+                        .where(idPath.in(ids))
+                        .fetch();
+                for (Tuple row : rows) {
+                    Object instance = affected.get(row.get(idPath));
+                    Object[] loadedState = session.getPersistenceContext().getEntry(instance).getLoadedState();
+                    for (int i = 0; i < paths.size(); i++) {
+                        Object value = row.get(i + 1, Object.class);
+                        persister.setPropertyValue(instance, propertyIndexes[i], value);
+                        if (loadedState != null) {
+                            loadedState[propertyIndexes[i]] = value;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * 루트 엔티티의 바로 아래 기본 값 타입 필드면 그 속성 번호, 아니면 -1
+         */
+        private int basicPropertyIndex(Path<?> path) {
+            if (!entity.equals(path.getMetadata().getParent())) {
+                return -1;
+            }
+            String name = path.getMetadata().getName();
+            for (int i = 0; i < persister.getPropertyNames().length; i++) {
+                if (persister.getPropertyNames()[i].equals(name)) {
+                    return persister.getPropertyTypes()[i].isAssociationType() ? -1 : i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static List<List<Object>> chunks(Collection<Object> ids) {
+        List<List<Object>> chunks = new ArrayList<>();
+        List<Object> chunk = new ArrayList<>(IN_CHUNK_SIZE);
+        for (Object id : ids) {
+            chunk.add(id);
+            if (chunk.size() == IN_CHUNK_SIZE) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(IN_CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,45 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.stereotype.Repository;
+import study.querydsl.entity.Team;
+
+import java.util.List;
+
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀 조회는 쿼리 캐시(team-queries 영역)를 사용한다.
+ *
+ * 쿼리 캐시에는 팀 id만 저장되고 엔티티는 2차 캐시에서 꺼낸다.
+ * queryFactory.update(team)/delete(team) 같은 벌크 연산은 Hibernate가 실행 시점에
+ * team 테이블의 변경 시각을 갱신하고 Team 엔티티 영역을 비우므로, 캐시된 결과가 그대로 쓰이지 않는다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TeamQueryRepository {
+
+    public static final String TEAM_QUERY_REGION = "team-queries";
+
+    private final JPAQueryFactory queryFactory;
+
+    public Team findByName(String name) {
+        return queryFactory
+                .selectFrom(team)
+                .where(team.name.eq(name))
+                .setHint(QueryHints.CACHEABLE, true)
+                .setHint(QueryHints.CACHE_REGION, TEAM_QUERY_REGION)
+                .fetchOne();
+    }
+
+    public List<Team> findAll() {
+        return queryFactory
+                .selectFrom(team)
+                .orderBy(team.name.asc())
+                .setHint(QueryHints.CACHEABLE, true)
+                .setHint(QueryHints.CACHE_REGION, TEAM_QUERY_REGION)
+                .fetch();
+    }
+}
@@ -0,0 +1,62 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.QTeamStatsDto;
+import study.querydsl.dto.TeamStatsDto;
+
+import java.util.List;
+
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.entity.QTeamStats.teamStats;
+
+/**
+ * group()/aggregation()의 팀별 집계를 회원 테이블을 읽지 않고 team_stats에서 바로 가져온다.
+ *
+ * 같은 트랜잭션에서 바꾼 회원은 flush 된 뒤에 반영된다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TeamStatsRepository {
+
+    private final JPAQueryFactory queryFactory;
+
+    /**
+     * select team.name, count, sum, avg, max, min from member join member.team team group by team.name 과 같은 결과
+     * team_stats는 팀(team_id)마다 한 행이므로 이름이 같은 팀은 여기서 한 행으로 합친다.
+     * 회원이 없는 팀은 빠진다.
+     */
+    public List<TeamStatsDto> findAll() {
+        return queryFactory
+                .select(byName())
+                .from(teamStats)
+                .join(team).on(team.id.eq(teamStats.teamId))
+                .where(teamStats.memberCount.gt(0))
+                .groupBy(team.name)
+                .orderBy(team.name.asc())
+                .fetch();
+    }
+
+    /**
+     * 이름이 같은 팀이 여럿이면 합친 결과
+     */
+    public TeamStatsDto findByTeamName(String name) {
+        return queryFactory
+                .select(byName())
+                .from(teamStats)
+                .join(team).on(team.id.eq(teamStats.teamId))
+                .where(team.name.eq(name))
+                .groupBy(team.name)
+                .fetchOne();
+    }
+
+    private static QTeamStatsDto byName() {
+        return new QTeamStatsDto(
+                team.name,
+                teamStats.memberCount.sum(),
+                teamStats.ageSum.sum(),
+                teamStats.minAge.min(),
+                teamStats.maxAge.max());
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 팀과 회원 대량 적재
+ *
+ * id는 pooled-lo 시퀀스로 메모리에서 할당하고, insert는 hibernate.jdbc.batch_size 단위로 묶여서 나간다.
+ * flushSize 마다 flush/clear 해서 영속성 컨텍스트가 계속 커지지 않게 한다.
+ *
+ * 회원의 팀은 changeTeam() 대신 getReference()로 연결한다.
+ * changeTeam()은 팀의 members 컬렉션을 건드리므로 팀 프록시를 초기화하고 컬렉션에 회원을 쌓아둔다. 적재에는 FK만 있으면 된다.
+ */
+@Service
+@Transactional
+public class MemberBulkImportService {
+
+    private final EntityManager em;
+    private final int flushSize;
+
+    public MemberBulkImportService(EntityManager em, @Value("${querydsl.bulk-import.flush-size:100}") int flushSize) {
+        this.em = em;
+        this.flushSize = flushSize;
+    }
+
+    /**
+     * teamCount개의 팀을 만들고 memberCount명의 회원을 팀에 고르게 나누어 넣는다.
+     * 회원 이름은 member0, member1 ... 이고 나이는 0~99 사이로 순환한다.
+     *
+     * @return 만들어진 팀의 id 목록
+     */
+    public List<Long> importMembers(int teamCount, int memberCount) {
+        if (teamCount < 1) {
+            throw new IllegalArgumentException("팀은 1개 이상이어야 합니다.");
+        }
+        List<Long> teamIds = new ArrayList<>(teamCount);
+        for (int i = 0; i < teamCount; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            teamIds.add(team.getId());
+            flushAndClearEvery(i + 1);
+        }
+        flushAndClear();
+
+        for (int i = 0; i < memberCount; i++) {
+            Member member = new Member("member" + i, i % 100);
+            member.setTeam(em.getReference(Team.class, teamIds.get(i % teamCount)));
+            em.persist(member);
+            flushAndClearEvery(i + 1);
+        }
+        flushAndClear();
+        return teamIds;
+    }
+
+    private void flushAndClearEvery(int count) {
+        if (count % flushSize == 0) {
+            flushAndClear();
+        }
+    }
+
+    private void flushAndClear() {
+        em.flush();
+        em.clear();
+    }
+}
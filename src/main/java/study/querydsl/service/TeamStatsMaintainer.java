@@ -0,0 +1,472 @@
+package study.querydsl.service;
+
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Session;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AutoFlushEvent;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.SyncingBulkExecutor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * team_stats(팀별 회원 수, 나이 합계/최소/최대)를 회원 변경에 맞춰 조금씩 갱신한다.
+ *
+ * 1. 회원 insert/delete, changeTeam(), setAge()는 Hibernate 엔티티 이벤트에서 팀별 증감분으로 모아둔다.
+ * 2. flush가 끝나면(회원 테이블에 반영된 뒤) 모아둔 증감분을 팀마다 update 한 번으로 반영한다.
+ *    최소/최대 나이는 지워진 나이가 현재 최소/최대일 때만 그 팀의 회원을 다시 읽어서 구한다.
+ * 3. 벌크 수정/삭제는 실행 전에 영향받는 팀을 구해두고 실행 후에 그 팀만 다시 집계한다.
+ *    queryFactory.update(member)/delete(member)를 직접 실행해도 ObservingJPAQueryFactory가 알려준다. (SyncingBulkExecutor 포함)
+ *    ChunkedBulkExecutor는 구간마다 그 구간 트랜잭션 안에서 알려준다.
+ *    BulkInsertExecutor의 회원 insert는 values()로 넘긴 팀만, insert ... select면 전체를 다시 집계한다.
+ *
+ * team_stats는 JDBC로 직접 갱신하므로 Hibernate의 다른 이벤트나 2차 캐시에는 영향을 주지 않는다.
+ * queryFactory.insert(member)처럼 리스너를 거치지 않은 벌크 연산,
+ * JDBC로 직접 바꾼 데이터는 rebuildAll()로 다시 맞춰야 한다.
+ *
+ * 지연 초기화(spring.main.lazy-initialization)에서도 리스너가 등록되도록 바로 만든다.
+ */
+@Service
+@Lazy(false)
+public class TeamStatsMaintainer implements PostInsertEventListener, PostUpdateEventListener,
+        PostDeleteEventListener, FlushEventListener, AutoFlushEventListener, SyncingBulkExecutor.BulkListener,
+        SmartInitializingSingleton {
+
+    private static final String INSERT_SQL =
+            "insert into team_stats (team_id, member_count, age_sum, min_age, max_age) values (?, 0, 0, null, null)";
+    private static final String DELETE_SQL = "delete from team_stats where team_id = ?";
+    private static final String RECOMPUTE_SQL = "update team_stats set"
+            + " member_count = (select count(*) from member m where m.team_id = team_stats.team_id),"
+            + " age_sum = (select coalesce(sum(m.age), 0) from member m where m.team_id = team_stats.team_id),"
+            + " min_age = (select min(m.age) from member m where m.team_id = team_stats.team_id),"
+            + " max_age = (select max(m.age) from member m where m.team_id = team_stats.team_id)"
+            + " where team_id = ?";
+    private static final String REBUILD_SQL = "insert into team_stats (team_id, member_count, age_sum, min_age, max_age)"
+            + " select t.team_id, count(m.member_id), coalesce(sum(m.age), 0), min(m.age), max(m.age)"
+            + " from team t left join member m on m.team_id = t.team_id"
+            + " group by t.team_id";
+
+    private final EntityManagerFactory emf;
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+
+    /**
+     * 세션별로 아직 team_stats에 반영하지 않은 변경
+     */
+    private final Map<EventSource, Changes> pending = new ConcurrentHashMap<>();
+
+    public TeamStatsMaintainer(EntityManagerFactory emf, EntityManager em, JPAQueryFactory queryFactory) {
+        this.emf = emf;
+        this.em = em;
+        this.queryFactory = queryFactory;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        registry.appendListeners(EventType.FLUSH, this);
+        registry.appendListeners(EventType.AUTO_FLUSH, this);
+    }
+
+    /**
+     * 회원/팀 테이블로부터 team_stats 전체를 다시 만든다.
+     */
+    @Transactional
+    public void rebuildAll() {
+        em.flush();
+        em.unwrap(Session.class).doWork(TeamStatsMaintainer::rebuild);
+    }
+
+    /**
+     * 지정한 팀만 회원 테이블에서 다시 집계한다.
+     */
+    @Transactional
+    public void recompute(Collection<Long> teamIds) {
+        em.flush();
+        List<Object[]> rows = new ArrayList<>(teamIds.size());
+        for (Long teamId : teamIds) {
+            rows.add(new Object[]{teamId});
+        }
+        em.unwrap(Session.class).doWork(connection -> executeBatch(connection, RECOMPUTE_SQL, rows));
+    }
+
+    // 엔티티 이벤트
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Team) {
+            changes(event.getSession()).created.add((Long) event.getId());
+        } else if (entity instanceof Member) {
+            MemberState state = new MemberState(event.getPersister(), event.getState());
+            changes(event.getSession()).add(state.teamId, state.age);
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Member)) {
+            return;
+        }
+        if (event.getOldState() == null) {
+            // 스냅샷 없이 update()된 엔티티는 이전 팀을 알 수 없다.
+            changes(event.getSession()).rebuildAll = true;
+            return;
+        }
+        MemberState before = new MemberState(event.getPersister(), event.getOldState());
+        MemberState after = new MemberState(event.getPersister(), event.getState());
+        if (Objects.equals(before.teamId, after.teamId) && before.age == after.age) {
+            return;
+        }
+        Changes changes = changes(event.getSession());
+        changes.remove(before.teamId, before.age);
+        changes.add(after.teamId, after.age);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Team) {
+            changes(event.getSession()).deleted.add((Long) event.getId());
+        } else if (entity instanceof Member) {
+            MemberState state = new MemberState(event.getPersister(), event.getDeletedState());
+            changes(event.getSession()).remove(state.teamId, state.age);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    @Override
+    public void onFlush(FlushEvent event) {
+        apply(event.getSession());
+    }
+
+    @Override
+    public void onAutoFlush(AutoFlushEvent event) {
+        apply(event.getSession());
+    }
+
+    // ObservingJPAQueryFactory, ChunkedBulkExecutor, BulkInsertExecutor
+
+    @Override
+    public Runnable beforeUpdate(EntityPath<?> entity, Predicate[] where, List<Path<?>> paths, List<Object> values) {
+        if (!Member.class.equals(entity.getType())) {
+            return NO_OP;
+        }
+        boolean affectsStats = false;
+        Set<Long> newTeamIds = new HashSet<>();
+        for (int i = 0; i < paths.size(); i++) {
+            Path<?> path = paths.get(i);
+            if (!entity.equals(path.getMetadata().getParent())) {
+                continue;
+            }
+            String name = path.getMetadata().getName();
+            if (name.equals("age")) {
+                affectsStats = true;
+            } else if (name.equals("team")) {
+                affectsStats = true;
+                Object value = values.get(i);
+                if (value instanceof Constant) {
+                    value = ((Constant<?>) value).getConstant();
+                }
+                if (value instanceof Team) {
+                    newTeamIds.add(((Team) value).getId());
+                } else if (value != null) {
+                    // 식으로 팀을 바꾸면 어느 팀으로 가는지 미리 알 수 없다.
+                    return this::rebuildAll;
+                }
+            }
+        }
+        if (!affectsStats) {
+            return NO_OP;
+        }
+        Set<Long> teamIds = new HashSet<>(memberTeamIds(entity, where));
+        teamIds.addAll(newTeamIds);
+        return () -> recompute(teamIds);
+    }
+
+    @Override
+    public Runnable beforeDelete(EntityPath<?> entity, Predicate[] where) {
+        if (Member.class.equals(entity.getType())) {
+            List<Long> teamIds = memberTeamIds(entity, where);
+            return () -> recompute(teamIds);
+        }
+        if (Team.class.equals(entity.getType())) {
+            List<Long> teamIds = queryFactory
+                    .select(new PathBuilder<>(entity.getType(), entity.getMetadata()).get("id", Long.class))
+                    .from(entity)
+                    .where(where)
+                    .fetch();
+            return () -> deleteStats(teamIds);
+        }
+        return NO_OP;
+    }
+
+    @Override
+    public Runnable beforeInsert(EntityPath<?> entity, List<Path<?>> columns, List<Object[]> rows) {
+        if (Team.class.equals(entity.getType())) {
+            // 새 팀의 id는 insert 후에야 알 수 있다.
+            return this::rebuildAll;
+        }
+        if (!Member.class.equals(entity.getType())) {
+            return NO_OP;
+        }
+        int team = -1;
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).getMetadata().getName().equals("team")) {
+                team = i;
+            }
+        }
+        if (team < 0) {
+            // 팀이 없는 회원은 집계에 들어가지 않는다.
+            return NO_OP;
+        }
+        if (rows == null) {
+            return this::rebuildAll;
+        }
+        Set<Long> teamIds = new HashSet<>();
+        for (Object[] row : rows) {
+            if (row[team] instanceof Team) {
+                teamIds.add(((Team) row[team]).getId());
+            }
+        }
+        return () -> recompute(teamIds);
+    }
+
+    private List<Long> memberTeamIds(EntityPath<?> entity, Predicate[] where) {
+        List<Long> teamIds = queryFactory
+                .select(new PathBuilder<>(entity.getType(), entity.getMetadata()).get("team").get("id", Long.class))
+                .distinct()
+                .from(entity)
+                .where(where)
+                .fetch();
+        teamIds.removeIf(Objects::isNull);
+        return teamIds;
+    }
+
+    private void deleteStats(List<Long> teamIds) {
+        List<Object[]> rows = new ArrayList<>(teamIds.size());
+        for (Long teamId : teamIds) {
+            rows.add(new Object[]{teamId});
+        }
+        em.unwrap(Session.class).doWork(connection -> executeBatch(connection, DELETE_SQL, rows));
+    }
+
+    // 반영
+
+    private Changes changes(EventSource session) {
+        return pending.computeIfAbsent(session, s -> {
+            // flush 없이 롤백되거나 세션이 끝나도 남지 않게 한다.
+            s.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, ignored) -> pending.remove(s));
+            return new Changes();
+        });
+    }
+
+    private void apply(EventSource session) {
+        Changes changes = pending.remove(session);
+        if (changes == null) {
+            return;
+        }
+        session.doWork(connection -> {
+            if (changes.rebuildAll) {
+                rebuild(connection);
+                return;
+            }
+            List<Object[]> created = new ArrayList<>(changes.created.size());
+            for (Long teamId : changes.created) {
+                created.add(new Object[]{teamId});
+            }
+            executeBatch(connection, INSERT_SQL, created);
+
+            // 같은 모양의 update끼리 JDBC 배치로 묶는다.
+            Map<String, List<Object[]>> updates = new LinkedHashMap<>();
+            for (Map.Entry<Long, Delta> entry : changes.deltas.entrySet()) {
+                entry.getValue().toUpdate(entry.getKey(), updates);
+            }
+            for (Map.Entry<String, List<Object[]>> update : updates.entrySet()) {
+                executeBatch(connection, update.getKey(), update.getValue());
+            }
+
+            List<Object[]> deleted = new ArrayList<>(changes.deleted.size());
+            for (Long teamId : changes.deleted) {
+                deleted.add(new Object[]{teamId});
+            }
+            executeBatch(connection, DELETE_SQL, deleted);
+        });
+    }
+
+    private static void rebuild(Connection connection) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement("delete from team_stats");
+             PreparedStatement insert = connection.prepareStatement(REBUILD_SQL)) {
+            delete.executeUpdate();
+            insert.executeUpdate();
+        }
+    }
+
+    private static void executeBatch(Connection connection, String sql, List<Object[]> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    statement.setObject(i + 1, row[i]);
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * 엔티티 상태 배열에서 꺼낸 회원의 팀 id와 나이
+     */
+    private static final class MemberState {
+
+        private final Long teamId;
+        private final int age;
+
+        private MemberState(EntityPersister persister, Object[] state) {
+            Team team = (Team) state[persister.getEntityMetamodel().getPropertyIndex("team")];
+            this.teamId = team == null ? null : team.getId();
+            this.age = (Integer) state[persister.getEntityMetamodel().getPropertyIndex("age")];
+        }
+    }
+
+    private static final class Changes {
+
+        private final Set<Long> created = new LinkedHashSet<>();
+        private final Set<Long> deleted = new LinkedHashSet<>();
+        private final Map<Long, Delta> deltas = new LinkedHashMap<>();
+        private boolean rebuildAll;
+
+        private void add(Long teamId, int age) {
+            if (teamId != null) {
+                deltas.computeIfAbsent(teamId, id -> new Delta()).add(age);
+            }
+        }
+
+        private void remove(Long teamId, int age) {
+            if (teamId != null) {
+                deltas.computeIfAbsent(teamId, id -> new Delta()).remove(age);
+            }
+        }
+    }
+
+    /**
+     * 한 팀의 증감분
+     * 지워진 나이 중 가장 작은/큰 값이 현재 최소/최대 이상/이하이면 최소/최대는 회원 테이블에서 다시 구한다.
+     */
+    private static final class Delta {
+
+        private long count;
+        private long sum;
+        private Integer addedMin;
+        private Integer addedMax;
+        private Integer removedMin;
+        private Integer removedMax;
+
+        private void add(int age) {
+            count++;
+            sum += age;
+            addedMin = addedMin == null ? age : Math.min(addedMin, age);
+            addedMax = addedMax == null ? age : Math.max(addedMax, age);
+        }
+
+        private void remove(int age) {
+            count--;
+            sum -= age;
+            removedMin = removedMin == null ? age : Math.min(removedMin, age);
+            removedMax = removedMax == null ? age : Math.max(removedMax, age);
+        }
+
+        private void toUpdate(Long teamId, Map<String, List<Object[]>> updates) {
+            List<Object> params = new ArrayList<>();
+            StringBuilder sql = new StringBuilder("update team_stats set member_count = member_count + ?, age_sum = age_sum + ?");
+            params.add(count);
+            params.add(sum);
+
+            sql.append(", min_age = ");
+            if (removedMin != null) {
+                sql.append("case when min_age >= ? then (select min(m.age) from member m where m.team_id = team_stats.team_id) else ");
+                params.add(removedMin);
+            }
+            if (addedMin != null) {
+                sql.append("case when min_age is null or min_age > ? then ? else min_age end");
+                params.add(addedMin);
+                params.add(addedMin);
+            } else {
+                sql.append("min_age");
+            }
+            if (removedMin != null) {
+                sql.append(" end");
+            }
+
+            sql.append(", max_age = ");
+            if (removedMax != null) {
+                sql.append("case when max_age <= ? then (select max(m.age) from member m where m.team_id = team_stats.team_id) else ");
+                params.add(removedMax);
+            }
+            if (addedMax != null) {
+                sql.append("case when max_age is null or max_age < ? then ? else max_age end");
+                params.add(addedMax);
+                params.add(addedMax);
+            } else {
+                sql.append("max_age");
+            }
+            if (removedMax != null) {
+                sql.append(" end");
+            }
+
+            sql.append(" where team_id = ?");
+            params.add(teamId);
+            updates.computeIfAbsent(sql.toString(), key -> new ArrayList<>()).add(params.toArray());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package study.querydsl.support;
+
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+/**
+ * 행마다 계산하던 식(complexCase의 CaseBuilder ...)을 DB가 미리 계산해서 저장하는 컬럼으로 옮기는 규칙
+ *
+ * - DerivedColumnMaintainer가 target 컬럼을 expression으로 계산되는 generated column으로 바꾸고 인덱스를 만든다.
+ *   insert/update, 벌크 수정, JDBC 적재 모두 DB가 값을 맞추므로 엔티티 이벤트를 거치지 않아도 된다.
+ *   엔티티 필드(와 2차 캐시)는 insert/update 직전에 같은 식을 자바에서 계산해서 맞춘다.
+ * - ObservingJPAQuery는 select/where/groupBy/orderBy 어디서든 expression과 같은 식을 만나면 target 경로로 바꿔서 직렬화한다.
+ *   그래서 같은 CASE 식으로 조건을 걸거나 묶으면 행마다 계산하지 않고 target 컬럼의 인덱스를 쓴다.
+ *   DerivedColumnMaintainer가 시작할 때 target이 generated column인지 확인한 것만 바꾼다.
+ *
+ * 같은 식인지는 Querydsl 식의 equals(연산자와 인자가 모두 같은지)로 본다.
+ * expression은 target과 같은 엔티티의 기본 값 타입 필드, 상수, 비교/논리/CASE 연산으로만 만든다.
+ */
+public final class DerivedColumn<T> {
+
+    private final Path<T> target;
+    private final Operation<T> expression;
+
+    private DerivedColumn(Path<T> target, Operation<T> expression) {
+        this.target = target;
+        this.expression = expression;
+    }
+
+    /**
+     * @param target     값을 저장할 필드 ex) member.ageBucket (insertable/updatable = false로 매핑한다.)
+     * @param expression 그 값을 계산하는 식 ex) new CaseBuilder().when(member.age.between(0, 20)).then("0~20살") ...
+     */
+    public static <T> DerivedColumn<T> of(Path<T> target, Expression<T> expression) {
+        if (!(expression instanceof Operation)) {
+            throw new IllegalArgumentException("식이 아닙니다. " + expression);
+        }
+        if (!target.getRoot().equals(target.getMetadata().getParent())) {
+            throw new IllegalArgumentException("루트 엔티티의 필드가 아닙니다. " + target);
+        }
+        return new DerivedColumn<>(target, (Operation<T>) expression);
+    }
+
+    public Path<T> getTarget() {
+        return target;
+    }
+
+    /**
+     * 쿼리에 그대로 쓰면 target으로 바뀐다.
+     */
+    public Operation<T> getExpression() {
+        return expression;
+    }
+
+    boolean matches(Operator operator, List<? extends Expression<?>> args) {
+        return expression.getOperator() == operator && expression.getArgs().equals(args);
+    }
+
+    /**
+     * DB와 같은 규칙(null과의 비교는 알 수 없음, CASE에서는 거짓)으로 expression을 계산한다.
+     *
+     * @param values 경로의 현재 값
+     */
+    Object evaluate(Function<Path<?>, Object> values) {
+        return evaluate(expression, values);
+    }
+
+    private static Object evaluate(Expression<?> expression, Function<Path<?>, Object> values) {
+        if (expression instanceof Constant) {
+            return ((Constant<?>) expression).getConstant();
+        }
+        if (expression instanceof Path) {
+            return values.apply((Path<?>) expression);
+        }
+        if (!(expression instanceof Operation) || !(((Operation<?>) expression).getOperator() instanceof Ops)) {
+            throw new IllegalArgumentException("계산할 수 없는 식입니다. " + expression);
+        }
+        Operation<?> operation = (Operation<?>) expression;
+        List<Expression<?>> args = operation.getArgs();
+        switch ((Ops) operation.getOperator()) {
+            case CASE:
+            case CASE_ELSE:
+            case CASE_EQ_ELSE:
+                return evaluate(args.get(0), values);
+            case CASE_WHEN:
+                return isTrue(args.get(0), values) ? evaluate(args.get(1), values) : evaluate(args.get(2), values);
+            case CASE_EQ:
+                return evaluate(args.get(1), values);
+            case CASE_EQ_WHEN:
+                return Boolean.TRUE.equals(compare(args.get(0), args.get(1), values, c -> c == 0))
+                        ? evaluate(args.get(2), values) : evaluate(args.get(3), values);
+            case AND:
+                return and(evaluate(args.get(0), values), evaluate(args.get(1), values));
+            case OR:
+                return or(evaluate(args.get(0), values), evaluate(args.get(1), values));
+            case NOT:
+                Object value = evaluate(args.get(0), values);
+                return value == null ? null : !(Boolean) value;
+            case IS_NULL:
+                return evaluate(args.get(0), values) == null;
+            case IS_NOT_NULL:
+                return evaluate(args.get(0), values) != null;
+            case EQ:
+                return compare(args.get(0), args.get(1), values, c -> c == 0);
+            case NE:
+                return compare(args.get(0), args.get(1), values, c -> c != 0);
+            case LT:
+                return compare(args.get(0), args.get(1), values, c -> c < 0);
+            case LOE:
+                return compare(args.get(0), args.get(1), values, c -> c <= 0);
+            case GT:
+                return compare(args.get(0), args.get(1), values, c -> c > 0);
+            case GOE:
+                return compare(args.get(0), args.get(1), values, c -> c >= 0);
+            case BETWEEN:
+                return and(compare(args.get(0), args.get(1), values, c -> c >= 0),
+                        compare(args.get(0), args.get(2), values, c -> c <= 0));
+            default:
+                throw new IllegalArgumentException("계산할 수 없는 식입니다. " + expression);
+        }
+    }
+
+    private static boolean isTrue(Expression<?> expression, Function<Path<?>, Object> values) {
+        return Boolean.TRUE.equals(evaluate(expression, values));
+    }
+
+    /**
+     * 어느 한쪽이 null이면 SQL처럼 알 수 없음(null)
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Boolean compare(Expression<?> left, Expression<?> right, Function<Path<?>, Object> values,
+                                   IntPredicate result) {
+        Object a = evaluate(left, values);
+        Object b = evaluate(right, values);
+        if (a == null || b == null) {
+            return null;
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return result.test(new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString())));
+        }
+        return result.test(((Comparable) a).compareTo(b));
+    }
+
+    private static Boolean and(Object a, Object b) {
+        if (Boolean.FALSE.equals(a) || Boolean.FALSE.equals(b)) {
+            return false;
+        }
+        return a == null || b == null ? null : true;
+    }
+
+    private static Boolean or(Object a, Object b) {
+        if (Boolean.TRUE.equals(a) || Boolean.TRUE.equals(b)) {
+            return true;
+        }
+        return a == null || b == null ? null : false;
+    }
+}
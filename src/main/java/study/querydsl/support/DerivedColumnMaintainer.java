@@ -0,0 +1,248 @@
+package study.querydsl.support;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PreInsertEvent;
+import org.hibernate.event.spi.PreInsertEventListener;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+import org.hibernate.mapping.Column;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * DerivedColumn을 DB와 엔티티에 적용한다.
+ *
+ * 1. createColumns면 시작할 때 target 컬럼을 expression으로 계산되는 generated column으로 다시 만들고 인덱스를 건다.
+ *    ex) alter table member add column age_bucket varchar(255) generated always as (case when age between 0 and 20 ...)
+ *    스키마를 마이그레이션 도구로 관리하는 DB에서는 끄고, 로그에 남는 DDL을 마이그레이션에 옮긴다.
+ *    만들었든 마이그레이션으로 있든, 시작할 때 target이 generated column인지 확인한 것만 {@link #getVerifiedColumns()}에 넣는다.
+ *    확인하지 못한 식은 쿼리에서 바꿔 쓰지 않는다. (일반 컬럼이면 값이 항상 null이다.)
+ * 2. insert/update 직전에 같은 식을 자바에서 계산해서 엔티티 필드와 상태(2차 캐시에 들어가는 값)를 맞춘다.
+ *    target은 insertable/updatable = false로 매핑하므로 SQL에는 나가지 않고,
+ *    generated column을 다시 읽는 select(@Generated)도 없어서 insert 배치가 끊기지 않는다.
+ */
+@Slf4j
+public class DerivedColumnMaintainer implements PreInsertEventListener, PreUpdateEventListener,
+        SmartInitializingSingleton {
+
+    private final EntityManagerFactory emf;
+    private final DataSource dataSource;
+    private final List<DerivedColumn<?>> derivedColumns;
+    private final boolean createColumns;
+    private final List<DerivedColumn<?>> verifiedColumns = new CopyOnWriteArrayList<>();
+
+    public DerivedColumnMaintainer(EntityManagerFactory emf, DataSource dataSource,
+                                   List<DerivedColumn<?>> derivedColumns, boolean createColumns) {
+        this.emf = emf;
+        this.dataSource = dataSource;
+        this.derivedColumns = derivedColumns;
+        this.createColumns = createColumns;
+    }
+
+    /**
+     * 다른 빈을 모두 만든 뒤에 적용한다. EntityManagerFactory를 백그라운드에서 만들면(StartupConfig) 여기서 완료를 기다린다.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        EventListenerRegistry listeners = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.PRE_INSERT, this);
+        listeners.appendListeners(EventType.PRE_UPDATE, this);
+
+        if (derivedColumns.isEmpty()) {
+            return;
+        }
+        if (createColumns) {
+            createColumns();
+        }
+        verifyColumns();
+    }
+
+    /**
+     * target이 generated column인 것이 확인된 DerivedColumn, ObservingJPAQuery가 이것만 target으로 바꿔 쓴다.
+     * 시작이 끝나기 전에는 비어 있으므로 그동안의 쿼리는 식을 그대로 실행한다.
+     */
+    public List<DerivedColumn<?>> getVerifiedColumns() {
+        return verifiedColumns;
+    }
+
+    /**
+     * 테스트용, target 컬럼을 만드는 DDL
+     */
+    List<String> ddl(DerivedColumn<?> derivedColumn) {
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        Path<?> target = derivedColumn.getTarget();
+        AbstractEntityPersister persister = persister(sessionFactory, target);
+        String table = persister.getTableName();
+        String column = persister.getPropertyColumnNames(target.getMetadata().getName())[0];
+        int sqlType = persister.getPropertyType(target.getMetadata().getName()).sqlTypes(sessionFactory)[0];
+        String type = sessionFactory.getJdbcServices().getDialect()
+                .getTypeName(sqlType, Column.DEFAULT_LENGTH, Column.DEFAULT_PRECISION, Column.DEFAULT_SCALE);
+
+        ColumnSerializer expression = new ColumnSerializer(persister, target.getRoot());
+        expression.handle(derivedColumn.getExpression());
+
+        List<String> ddl = new ArrayList<>(3);
+        ddl.add("alter table " + table + " drop column if exists " + column);
+        ddl.add("alter table " + table + " add column " + column + " " + type
+                + " generated always as (" + expression + ")");
+        ddl.add("create index idx_" + table + "_" + column + " on " + table + " (" + column + ")");
+        return ddl;
+    }
+
+    @Override
+    public boolean onPreInsert(PreInsertEvent event) {
+        apply(event.getPersister(), event.getEntity(), event.getState());
+        return false;
+    }
+
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        apply(event.getPersister(), event.getEntity(), event.getState());
+        return false;
+    }
+
+    private void apply(EntityPersister persister, Object entity, Object[] state) {
+        for (DerivedColumn<?> derivedColumn : derivedColumns) {
+            if (derivedColumn.getTarget().getRoot().getType() != persister.getMappedClass()) {
+                continue;
+            }
+            Object value = derivedColumn.evaluate(path -> state[propertyIndex(persister, path)]);
+            int target = propertyIndex(persister, derivedColumn.getTarget());
+            state[target] = value;
+            persister.setPropertyValue(entity, target, value);
+        }
+    }
+
+    private void createColumns() {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (DerivedColumn<?> derivedColumn : derivedColumns) {
+                for (String ddl : ddl(derivedColumn)) {
+                    log.info("계산 컬럼: {}", ddl);
+                    statement.execute(ddl);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("계산 컬럼을 만들지 못했습니다.", e);
+        }
+    }
+
+    private void verifyColumns() {
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (DerivedColumn<?> derivedColumn : derivedColumns) {
+                Path<?> target = derivedColumn.getTarget();
+                AbstractEntityPersister persister = persister(sessionFactory, target);
+                String table = persister.getTableName();
+                String column = persister.getPropertyColumnNames(target.getMetadata().getName())[0];
+                if (isGenerated(connection, metaData, table, column)) {
+                    verifiedColumns.add(derivedColumn);
+                } else {
+                    log.warn("{}.{}이 generated column이 아니어서 식을 바꿔 쓰지 않습니다. "
+                            + "querydsl.derived-columns.create-columns를 켜거나 DDL을 마이그레이션에 넣으세요.", table, column);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("계산 컬럼을 확인하지 못했습니다.", e);
+        }
+    }
+
+    private static boolean isGenerated(Connection connection, DatabaseMetaData metaData, String table, String column)
+            throws SQLException {
+        try (ResultSet columns = metaData.getColumns(connection.getCatalog(), connection.getSchema(),
+                pattern(metaData, table), pattern(metaData, column))) {
+            while (columns.next()) {
+                if ("YES".equals(columns.getString("IS_GENERATEDCOLUMN"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 따옴표 없는 이름을 DB가 저장하는 대소문자로 바꾸고 LIKE 패턴 문자(_, %)를 이스케이프한다.
+     */
+    private static String pattern(DatabaseMetaData metaData, String identifier) throws SQLException {
+        String name = identifier;
+        if (metaData.storesUpperCaseIdentifiers()) {
+            name = name.toUpperCase();
+        } else if (metaData.storesLowerCaseIdentifiers()) {
+            name = name.toLowerCase();
+        }
+        String escape = metaData.getSearchStringEscape();
+        return name.replace(escape, escape + escape).replace("_", escape + "_").replace("%", escape + "%");
+    }
+
+    private static int propertyIndex(EntityPersister persister, Path<?> path) {
+        if (!path.getRoot().equals(path.getMetadata().getParent())) {
+            throw new IllegalArgumentException("루트 엔티티의 필드가 아닙니다. " + path);
+        }
+        return persister.getEntityMetamodel().getPropertyIndex(path.getMetadata().getName());
+    }
+
+    private static AbstractEntityPersister persister(SessionFactoryImplementor sessionFactory, Path<?> target) {
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(target.getRoot().getType());
+        if (!(persister instanceof AbstractEntityPersister)) {
+            throw new IllegalArgumentException("테이블에 매핑된 엔티티가 아닙니다. " + target);
+        }
+        return (AbstractEntityPersister) persister;
+    }
+
+    /**
+     * 식을 SQL로 쓴다. 경로는 컬럼 이름으로, 상수는 리터럴로 바꾸고 나머지 연산은 JPQL 템플릿을 그대로 쓴다.
+     * (비교/논리/CASE 연산은 JPQL과 SQL의 모양이 같다.)
+     */
+    private static class ColumnSerializer extends JPQLSerializer {
+
+        private final AbstractEntityPersister persister;
+        private final Path<?> root;
+
+        ColumnSerializer(AbstractEntityPersister persister, Path<?> root) {
+            super(HQLTemplates.DEFAULT);
+            this.persister = persister;
+            this.root = root;
+        }
+
+        @Override
+        public Void visit(Path<?> path, Void context) {
+            if (!root.equals(path.getMetadata().getParent())) {
+                throw new IllegalArgumentException("루트 엔티티의 필드가 아닙니다. " + path);
+            }
+            append(persister.getPropertyColumnNames(path.getMetadata().getName())[0]);
+            return null;
+        }
+
+        @Override
+        public void visitConstant(Object constant) {
+            if (constant instanceof Number || constant instanceof Boolean) {
+                append(constant.toString());
+            } else if (constant instanceof String) {
+                append("'" + ((String) constant).replace("'", "''") + "'");
+            } else {
+                throw new IllegalArgumentException("리터럴로 쓸 수 없는 상수입니다. " + constant);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package study.querydsl.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operator;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * DerivedColumn의 식과 같은 부분을 만나면 그 식 대신 target 경로를 쓰는 JPQLSerializer
+ */
+class DerivedColumnSerializer extends JPQLSerializer {
+
+    private final List<DerivedColumn<?>> derivedColumns;
+
+    DerivedColumnSerializer(JPQLTemplates templates, EntityManager em, List<DerivedColumn<?>> derivedColumns) {
+        super(templates, em);
+        this.derivedColumns = derivedColumns;
+    }
+
+    @Override
+    protected void visitOperation(Class<?> type, Operator operator, List<? extends Expression<?>> args) {
+        for (DerivedColumn<?> derivedColumn : derivedColumns) {
+            if (derivedColumn.matches(operator, args)) {
+                handle(derivedColumn.getTarget());
+                return;
+            }
+        }
+        super.visitOperation(type, operator, args);
+    }
+}
@@ -0,0 +1,35 @@
+package study.querydsl.support;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 엔티티가 로딩(DB나 2차 캐시에서 읽어 영속성 컨텍스트에 올라감)될 때마다 QueryActivity에 센다.
+ */
+public class EntityLoadCounter implements PostLoadEventListener, SmartInitializingSingleton {
+
+    private final EntityManagerFactory emf;
+
+    public EntityLoadCounter(EntityManagerFactory emf) {
+        this.emf = emf;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class)
+                .appendListeners(EventType.POST_LOAD, this);
+    }
+
+    @Override
+    public void onPostLoad(PostLoadEvent event) {
+        QueryActivity.entityLoaded();
+    }
+}
@@ -0,0 +1,477 @@
+package study.querydsl.support;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.PathType;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import org.hibernate.HibernateException;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.Type;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 실행된 쿼리의 조건과 정렬 경로를 모아서 만들면 좋을 복합 인덱스를 제안한다.
+ *
+ * 쿼리마다 루트 별칭(member, team, memberSub ...)별로 컬럼을 나눈다.
+ * - 동등 조건: eq, in, isNull (join on 조건과 컬렉션 조인의 FK 포함)
+ * - 정렬: orderBy가 모두 같은 별칭의 컬럼일 때만, 방향과 nulls 위치까지
+ * - 범위 조건: between, goe, gt, loe, lt, startsWith 중 처음 나온 것 하나
+ * 인덱스 컬럼 순서는 동등 -> 정렬 -> 범위다. 범위 조건 뒤의 컬럼은 인덱스로 찾을 수 없기 때문이다.
+ * or 아래의 조건은 인덱스 하나로 처리할 수 없으므로 보지 않고, id 동등 조건이 있으면 PK로 충분하므로 제안하지 않는다.
+ * member.team.id는 member.team_id 컬럼으로 보고, member.team.name처럼 조인이 필요한 경로는 보지 않는다.
+ * 서브쿼리는 따로 분석하고 바깥 쿼리의 실행 시간을 함께 더한다.
+ *
+ * suggestions()는 실행 시간 합이 큰 순서로 돌려주고,
+ * 이미 있는 인덱스(앞부분이 같으면 같은 인덱스로 본다)로 처리되는 후보는 빼고,
+ * 다른 후보의 앞부분인 후보는 긴 쪽에 합친다.
+ */
+public class IndexAdvisor implements QueryObserver {
+
+    private static final Set<Ops> EQUALITY = EnumSet.of(Ops.EQ, Ops.IN, Ops.IS_NULL);
+    private static final Set<Ops> RANGE = EnumSet.of(Ops.BETWEEN, Ops.GOE, Ops.GT, Ops.LOE, Ops.LT, Ops.STARTS_WITH);
+
+    private final SessionFactoryImplementor sessionFactory;
+    private final DataSource dataSource;
+    private final Map<String, Candidate> candidates = new ConcurrentHashMap<>();
+
+    public IndexAdvisor(EntityManagerFactory emf, DataSource dataSource) {
+        this.sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void onQuery(QueryExecution execution) {
+        analyze(execution.getMetadata(), execution.getElapsedNanos(), new HashSet<>());
+    }
+
+    public List<IndexSuggestion> suggestions() {
+        List<Candidate> longestFirst = new ArrayList<>(candidates.values());
+        longestFirst.sort(Comparator.comparingInt((Candidate candidate) -> candidate.columns.size()).reversed());
+        Map<String, List<List<IndexColumn>>> existing = existingIndexes(
+                longestFirst.stream().map(candidate -> candidate.table).collect(Collectors.toSet()));
+
+        // 남길 후보 -> {실행 횟수, 실행 시간}
+        Map<Candidate, long[]> kept = new LinkedHashMap<>();
+        for (Candidate candidate : longestFirst) {
+            if (existing.get(candidate.table).stream().anyMatch(index -> isPrefix(candidate.columns, index))) {
+                continue;
+            }
+            Candidate into = kept.keySet().stream()
+                    .filter(other -> other.table.equals(candidate.table) && isPrefix(candidate.columns, other.columns))
+                    .findFirst()
+                    .orElse(candidate);
+            long[] stats = kept.computeIfAbsent(into, k -> new long[2]);
+            stats[0] += candidate.executions.sum();
+            stats[1] += candidate.nanos.sum();
+        }
+
+        List<IndexSuggestion> suggestions = new ArrayList<>(kept.size());
+        kept.forEach((candidate, stats) -> suggestions.add(candidate.toSuggestion(stats[0], stats[1])));
+        suggestions.sort(Comparator.comparingLong(IndexSuggestion::getTotalNanos).reversed());
+        return suggestions;
+    }
+
+    public void reset() {
+        candidates.clear();
+    }
+
+    /**
+     * @param recorded 한 번 실행에서 같은 후보를 두 번 세지 않도록 이미 기록한 후보의 key
+     */
+    private void analyze(QueryMetadata metadata, long elapsedNanos, Set<String> recorded) {
+        Analysis analysis = new Analysis();
+        for (JoinExpression join : metadata.getJoins()) {
+            analysis.join(join.getTarget());
+            analysis.predicate(join.getCondition());
+        }
+        analysis.predicate(metadata.getWhere());
+        analysis.orderBy(metadata.getOrderBy());
+        analysis.findSubQueries(metadata.getProjection());
+        analysis.findSubQueries(metadata.getHaving());
+
+        for (Access access : analysis.accesses.values()) {
+            List<IndexColumn> columns = access.columns();
+            if (columns.isEmpty()) {
+                continue;
+            }
+            String key = access.table + columns;
+            if (recorded.add(key)) {
+                candidates.computeIfAbsent(key, k -> new Candidate(access.table, columns)).record(elapsedNanos);
+            }
+        }
+        for (QueryMetadata subQuery : analysis.subQueries) {
+            analyze(subQuery, elapsedNanos, recorded);
+        }
+    }
+
+    /**
+     * @return 테이블 -> 인덱스별 컬럼 목록
+     */
+    private Map<String, List<List<IndexColumn>>> existingIndexes(Set<String> tables) {
+        Map<String, List<List<IndexColumn>>> indexes = new HashMap<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData meta = connection.getMetaData();
+            for (String table : tables) {
+                String name = meta.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT)
+                        : meta.storesLowerCaseIdentifiers() ? table.toLowerCase(Locale.ROOT) : table;
+                // INDEX_NAME, ORDINAL_POSITION 순서로 나온다.
+                Map<String, List<IndexColumn>> columnsByIndex = new LinkedHashMap<>();
+                try (ResultSet rs = meta.getIndexInfo(connection.getCatalog(), connection.getSchema(), name, false, true)) {
+                    while (rs.next()) {
+                        String index = rs.getString("INDEX_NAME");
+                        String column = rs.getString("COLUMN_NAME");
+                        if (index != null && column != null) {
+                            boolean descending = "D".equals(rs.getString("ASC_OR_DESC"));
+                            columnsByIndex.computeIfAbsent(index, k -> new ArrayList<>())
+                                    .add(new IndexColumn(column, descending, null));
+                        }
+                    }
+                }
+                indexes.put(table, new ArrayList<>(columnsByIndex.values()));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("인덱스 정보를 읽지 못했습니다.", e);
+        }
+        return indexes;
+    }
+
+    /**
+     * 컬럼 이름은 대소문자를 구분하지 않고, 정렬 컬럼은 방향까지 같아야 한다.
+     */
+    private static boolean isPrefix(List<IndexColumn> prefix, List<IndexColumn> index) {
+        if (prefix.size() > index.size()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.size(); i++) {
+            IndexColumn column = prefix.get(i);
+            if (!column.name.equalsIgnoreCase(index.get(i).name)
+                    || column.nullHandling != null && column.descending != index.get(i).descending) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private AbstractEntityPersister persister(Class<?> type) {
+        try {
+            EntityPersister persister = sessionFactory.getMetamodel().entityPersister(type);
+            return persister instanceof AbstractEntityPersister ? (AbstractEntityPersister) persister : null;
+        } catch (HibernateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 루트 별칭 하나가 쿼리에서 쓰인 컬럼
+     */
+    private static final class Access {
+
+        private final String table;
+        private final List<IndexColumn> equality = new ArrayList<>();
+        private final List<IndexColumn> sort = new ArrayList<>();
+        private final List<IndexColumn> range = new ArrayList<>();
+        private boolean unique;
+
+        private Access(String table) {
+            this.table = table;
+        }
+
+        private List<IndexColumn> columns() {
+            List<IndexColumn> columns = new ArrayList<>();
+            if (unique) {
+                return columns;
+            }
+            Set<String> names = new HashSet<>();
+            for (IndexColumn column : equality) {
+                if (names.add(column.name)) {
+                    columns.add(column);
+                }
+            }
+            for (IndexColumn column : sort) {
+                if (names.add(column.name)) {
+                    columns.add(column);
+                }
+            }
+            if (!range.isEmpty() && names.add(range.get(0).name)) {
+                columns.add(range.get(0));
+            }
+            return columns;
+        }
+    }
+
+    /**
+     * 쿼리 하나(서브쿼리 제외)를 훑으면서 별칭별 컬럼과 서브쿼리를 모은다.
+     */
+    private final class Analysis {
+
+        private final Map<Path<?>, Access> accesses = new LinkedHashMap<>();
+        private final List<QueryMetadata> subQueries = new ArrayList<>();
+
+        /**
+         * join(team.members, member)면 member 쪽 FK로 찾으므로 FK 컬럼을 동등 조건으로 본다.
+         */
+        private void join(Expression<?> target) {
+            if (!(target instanceof Operation) || ((Operation<?>) target).getOperator() != Ops.ALIAS) {
+                return;
+            }
+            Operation<?> alias = (Operation<?>) target;
+            if (!(alias.getArg(0) instanceof Path) || !(alias.getArg(1) instanceof Path)) {
+                return;
+            }
+            PathMetadata association = ((Path<?>) alias.getArg(0)).getMetadata();
+            Path<?> owner = association.getParent();
+            AbstractEntityPersister ownerPersister = owner == null ? null : persister(owner.getType());
+            if (ownerPersister == null || association.getPathType() != PathType.PROPERTY) {
+                return;
+            }
+            Type type = propertyType(ownerPersister, association.getName());
+            if (!(type instanceof CollectionType)) {
+                return;
+            }
+            CollectionPersister collection = sessionFactory.getMetamodel()
+                    .collectionPersister(((CollectionType) type).getRole());
+            Access access = access((Path<?>) alias.getArg(1));
+            if (collection.isOneToMany() && collection instanceof AbstractCollectionPersister && access != null) {
+                for (String column : ((AbstractCollectionPersister) collection).getKeyColumnNames()) {
+                    access.equality.add(new IndexColumn(column, false, null));
+                }
+            }
+        }
+
+        private void predicate(Expression<?> expr) {
+            if (!(expr instanceof Operation)) {
+                findSubQueries(expr);
+                return;
+            }
+            Operation<?> operation = (Operation<?>) expr;
+            if (operation.getOperator() == Ops.AND) {
+                operation.getArgs().forEach(this::predicate);
+                return;
+            }
+            boolean equality = EQUALITY.contains(operation.getOperator());
+            if (equality || RANGE.contains(operation.getOperator())) {
+                // member.username.eq(team.name)처럼 양쪽이 컬럼이면 어느 쪽으로든 찾을 수 있다.
+                for (Expression<?> arg : operation.getArgs()) {
+                    ColumnRef column = column(arg);
+                    if (column == null) {
+                        continue;
+                    }
+                    Access access = access(column.root);
+                    if (equality && column.identifier) {
+                        access.unique = true;
+                    }
+                    for (String name : column.names) {
+                        (equality ? access.equality : access.range).add(new IndexColumn(name, false, null));
+                    }
+                }
+            }
+            findSubQueries(expr);
+        }
+
+        private void orderBy(List<OrderSpecifier<?>> orderBy) {
+            List<IndexColumn> columns = new ArrayList<>();
+            Path<?> root = null;
+            for (OrderSpecifier<?> order : orderBy) {
+                ColumnRef column = column(order.getTarget());
+                if (column == null || root != null && !root.equals(column.root)) {
+                    return;
+                }
+                root = column.root;
+                for (String name : column.names) {
+                    columns.add(new IndexColumn(name, !order.isAscending(), order.getNullHandling()));
+                }
+            }
+            if (root != null) {
+                access(root).sort.addAll(columns);
+            }
+        }
+
+        private void findSubQueries(Expression<?> expr) {
+            if (expr instanceof SubQueryExpression) {
+                subQueries.add(((SubQueryExpression<?>) expr).getMetadata());
+            } else if (expr instanceof Operation) {
+                ((Operation<?>) expr).getArgs().forEach(this::findSubQueries);
+            } else if (expr instanceof FactoryExpression) {
+                ((FactoryExpression<?>) expr).getArgs().forEach(this::findSubQueries);
+            } else if (expr instanceof TemplateExpression) {
+                for (Object arg : ((TemplateExpression<?>) expr).getArgs()) {
+                    if (arg instanceof Expression) {
+                        findSubQueries((Expression<?>) arg);
+                    }
+                }
+            }
+        }
+
+        private Access access(Path<?> root) {
+            Access access = accesses.get(root);
+            if (access == null) {
+                AbstractEntityPersister persister = persister(root.getType());
+                if (persister == null) {
+                    return null;
+                }
+                access = new Access(persister.getTableName());
+                accesses.put(root, access);
+            }
+            return access;
+        }
+
+        /**
+         * member.username, member.team(FK), member.team.id(FK)를 컬럼으로 바꾼다. 그 밖의 식이면 null
+         */
+        private ColumnRef column(Expression<?> expr) {
+            if (!(expr instanceof Path)) {
+                return null;
+            }
+            PathMetadata metadata = ((Path<?>) expr).getMetadata();
+            Path<?> parent = metadata.getParent();
+            if (parent == null || metadata.getPathType() != PathType.PROPERTY) {
+                return null;
+            }
+            if (parent.getMetadata().isRoot()) {
+                AbstractEntityPersister persister = persister(parent.getType());
+                if (persister == null) {
+                    return null;
+                }
+                if (metadata.getName().equals(persister.getIdentifierPropertyName())) {
+                    return new ColumnRef(parent, persister.getIdentifierColumnNames(), true);
+                }
+                Type type = propertyType(persister, metadata.getName());
+                if (type == null || type.isCollectionType()) {
+                    return null;
+                }
+                return columnRef(parent, persister, metadata.getName());
+            }
+
+            Path<?> root = parent.getMetadata().getParent();
+            if (root == null || !root.getMetadata().isRoot() || parent.getMetadata().getPathType() != PathType.PROPERTY) {
+                return null;
+            }
+            AbstractEntityPersister persister = persister(root.getType());
+            AbstractEntityPersister target = persister(parent.getType());
+            if (persister == null || target == null || !metadata.getName().equals(target.getIdentifierPropertyName())) {
+                return null;
+            }
+            Type type = propertyType(persister, parent.getMetadata().getName());
+            if (type == null || !type.isEntityType()) {
+                return null;
+            }
+            return columnRef(root, persister, parent.getMetadata().getName());
+        }
+
+        /**
+         * mappedBy 쪽 일대일처럼 컬럼이 없는 속성이면 null
+         */
+        private ColumnRef columnRef(Path<?> root, AbstractEntityPersister persister, String property) {
+            String[] names = persister.getPropertyColumnNames(property);
+            return names.length == 0 ? null : new ColumnRef(root, names, false);
+        }
+
+        private Type propertyType(AbstractEntityPersister persister, String property) {
+            try {
+                return persister.getPropertyType(property);
+            } catch (HibernateException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final class ColumnRef {
+
+        private final Path<?> root;
+        private final List<String> names;
+        private final boolean identifier;
+
+        private ColumnRef(Path<?> root, String[] names, boolean identifier) {
+            this.root = root;
+            this.names = Arrays.asList(names);
+            this.identifier = identifier;
+        }
+    }
+
+    /**
+     * @param nullHandling 정렬 컬럼이 아니면 null
+     */
+    private static final class IndexColumn {
+
+        private final String name;
+        private final boolean descending;
+        private final OrderSpecifier.NullHandling nullHandling;
+
+        private IndexColumn(String name, boolean descending, OrderSpecifier.NullHandling nullHandling) {
+            this.name = name;
+            this.descending = descending;
+            this.nullHandling = nullHandling;
+        }
+
+        @Override
+        public String toString() {
+            String ddl = descending ? name + " desc" : name;
+            if (nullHandling == OrderSpecifier.NullHandling.NullsFirst) {
+                return ddl + " nulls first";
+            }
+            if (nullHandling == OrderSpecifier.NullHandling.NullsLast) {
+                return ddl + " nulls last";
+            }
+            return ddl;
+        }
+    }
+
+    private static final class Candidate {
+
+        private final String table;
+        private final List<IndexColumn> columns;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private Candidate(String table, List<IndexColumn> columns) {
+            this.table = table;
+            this.columns = columns;
+        }
+
+        private void record(long elapsedNanos) {
+            executions.increment();
+            nanos.add(elapsedNanos);
+        }
+
+        private IndexSuggestion toSuggestion(long executions, long totalNanos) {
+            List<String> names = columns.stream().map(column -> column.name).collect(Collectors.toList());
+            String name = ("idx_" + table + "_" + String.join("_", names)).replace('.', '_').toLowerCase(Locale.ROOT);
+            String ddl = "create index " + name + " on " + table + " ("
+                    + columns.stream().map(IndexColumn::toString).collect(Collectors.joining(", ")) + ")";
+            return new IndexSuggestion(table, names, name, ddl, executions, totalNanos);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package study.querydsl.support;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * IndexAdvisor가 제안하는 인덱스 하나
+ * executions, totalNanos는 이 인덱스를 쓸 수 있었던 쿼리의 실행 횟수와 걸린 시간의 합이다.
+ */
+@Getter
+public class IndexSuggestion {
+
+    private final String table;
+    private final List<String> columns;
+    private final String name;
+    private final String ddl;
+    private final long executions;
+    private final long totalNanos;
+
+    public IndexSuggestion(String table, List<String> columns, String name, String ddl,
+                           long executions, long totalNanos) {
+        this.table = table;
+        this.columns = columns;
+        this.name = name;
+        this.ddl = ddl;
+        this.executions = executions;
+        this.totalNanos = totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return ddl + "; -- executions=" + executions + ", totalMillis=" + totalNanos / 1_000_000;
+    }
+}
@@ -0,0 +1,11 @@
+package study.querydsl.support;
+
+/**
+ * 한 범위(요청/트랜잭션) 안에서 같은 SQL이 임계치보다 많이 실행되었을 때 던진다.
+ */
+public class NPlusOneException extends RuntimeException {
+
+    public NPlusOneException(String message) {
+        super(message);
+    }
+}
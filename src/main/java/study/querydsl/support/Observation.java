@@ -0,0 +1,50 @@
+package study.querydsl.support;
+
+import com.querydsl.core.QueryMetadata;
+import study.querydsl.repository.QueryShape;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * 쿼리 실행 하나를 재서 QueryObserver에 알린다.
+ * 실행 후에 메타데이터가 바뀌어도 모양이 같도록 fingerprint는 실행 전에 구한다.
+ * fingerprint는 실행마다 쿼리 트리 전체를 순회해서 구하므로, 관찰자가 없으면 구하지 않고 바로 실행한다.
+ */
+final class Observation {
+
+    private Observation() {
+    }
+
+    static <R> R observe(List<QueryObserver> observers, QueryExecution.Operation operation,
+                         QueryMetadata metadata, Object query, Supplier<R> call, ToLongFunction<R> rows) {
+        if (observers.isEmpty()) {
+            return call.get();
+        }
+        String fingerprint = QueryShape.fingerprint(metadata);
+        QueryActivity activity = QueryActivity.current();
+        long statements = activity.getStatements();
+        long entities = activity.getEntities();
+        long start = System.nanoTime();
+
+        R result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            notify(observers, new QueryExecution(fingerprint, operation, metadata, query, System.nanoTime() - start,
+                    -1, activity.getStatements() - statements, activity.getEntities() - entities, e));
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        notify(observers, new QueryExecution(fingerprint, operation, metadata, query, elapsed,
+                rows.applyAsLong(result), activity.getStatements() - statements, activity.getEntities() - entities, null));
+        return result;
+    }
+
+    private static void notify(List<QueryObserver> observers, QueryExecution execution) {
+        for (QueryObserver observer : observers) {
+            observer.onQuery(execution);
+        }
+    }
+}
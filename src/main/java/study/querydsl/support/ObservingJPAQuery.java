@@ -0,0 +1,132 @@
+package study.querydsl.support;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryResults;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.orm.jpa.EntityManagerProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.support.QueryExecution.Operation;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * fetch/fetchOne/fetchResults/fetchCount/iterate/stream 실행을 QueryObserver에 알린다.
+ * select()는 같은 인스턴스를 돌려주고 clone()도 이 타입을 유지하므로 관찰이 끊기지 않는다.
+ * iterate/stream은 커서를 여는 데까지만 재고, 행 수는 -1로 알린다.
+ *
+ * 조회는 ReplicaRouting.readOnly()로 감싸므로, 복제본 라우팅을 켜면 트랜잭션 밖의 조회는 복제본으로 간다.
+ * 단, 조회가 끝나도 EntityManager가 커넥션을 계속 들고 있을 수 있으면 감싸지 않는다. ({@link #replicaSafe()})
+ * DerivedColumn이 있으면 그 식을 미리 계산된 컬럼 경로로 바꿔서 직렬화한다.
+ */
+public class ObservingJPAQuery<T> extends JPAQuery<T> {
+
+    private final EntityManager em;
+    private final JPQLTemplates templates;
+    private final List<QueryObserver> observers;
+    private final List<DerivedColumn<?>> derivedColumns;
+    /**
+     * fetchFirst -> fetchOne처럼 안에서 다른 실행 메서드를 부르면 바깥 것 하나만 센다.
+     */
+    private boolean observing;
+
+    public ObservingJPAQuery(EntityManager em, JPQLTemplates templates, List<QueryObserver> observers) {
+        this(em, templates, new DefaultQueryMetadata(), observers, Collections.emptyList());
+    }
+
+    public ObservingJPAQuery(EntityManager em, JPQLTemplates templates, List<QueryObserver> observers,
+                             List<DerivedColumn<?>> derivedColumns) {
+        this(em, templates, new DefaultQueryMetadata(), observers, derivedColumns);
+    }
+
+    public ObservingJPAQuery(EntityManager em, JPQLTemplates templates, QueryMetadata metadata,
+                             List<QueryObserver> observers, List<DerivedColumn<?>> derivedColumns) {
+        super(em, templates, metadata);
+        this.em = em;
+        this.templates = templates;
+        this.observers = observers;
+        this.derivedColumns = derivedColumns;
+    }
+
+    @Override
+    public List<T> fetch() {
+        return observe(Operation.FETCH, super::fetch, List::size);
+    }
+
+    @Override
+    public T fetchOne() {
+        return observe(Operation.FETCH_ONE, super::fetchOne, result -> result == null ? 0 : 1);
+    }
+
+    @Override
+    @Deprecated
+    public QueryResults<T> fetchResults() {
+        return observe(Operation.FETCH_RESULTS, super::fetchResults, results -> results.getResults().size());
+    }
+
+    @Override
+    @Deprecated
+    public long fetchCount() {
+        return observe(Operation.FETCH_COUNT, super::fetchCount, count -> 1);
+    }
+
+    @Override
+    public CloseableIterator<T> iterate() {
+        return observe(Operation.ITERATE, super::iterate, iterator -> -1);
+    }
+
+    @Override
+    public Stream<T> stream() {
+        return observe(Operation.STREAM, super::stream, stream -> -1);
+    }
+
+    @Override
+    public ObservingJPAQuery<T> clone(EntityManager entityManager, JPQLTemplates templates) {
+        ObservingJPAQuery<T> query = new ObservingJPAQuery<>(entityManager, templates, getMetadata().clone(), observers,
+                derivedColumns);
+        query.clone(this);
+        return query;
+    }
+
+    @Override
+    protected JPQLSerializer createSerializer() {
+        if (derivedColumns.isEmpty()) {
+            return super.createSerializer();
+        }
+        return new DerivedColumnSerializer(templates, em, derivedColumns);
+    }
+
+    private <R> R observe(Operation operation, Supplier<R> call, ToLongFunction<R> rows) {
+        if (observing) {
+            return call.get();
+        }
+        observing = true;
+        try {
+            Supplier<R> observed = () -> Observation.observe(observers, operation, getMetadata(), this, call, rows);
+            return replicaSafe() ? ReplicaRouting.readOnly(observed) : observed.get();
+        } finally {
+            observing = false;
+        }
+    }
+
+    /**
+     * 스프링 공유 EntityManager이고 스레드에 묶인 EntityManager가 없을 때만 트랜잭션 밖의 조회를 복제본으로 보낸다.
+     *
+     * open-in-view처럼 EntityManager가 스레드에 묶여 있거나 직접 만든 EntityManager면,
+     * 스프링이 쓰는 연결 처리 방식(DELAYED_ACQUISITION_AND_HOLD) 때문에 처음 얻은 커넥션을 EntityManager가 닫힐 때까지 들고 있다.
+     * 그 커넥션이 복제본이면 같은 EntityManager로 이어지는 @Transactional 쓰기까지 복제본에서 실행된다.
+     * 트랜잭션 안에서는 이 표시와 상관없이 트랜잭션의 읽기 전용 여부로 정한다.
+     */
+    private boolean replicaSafe() {
+        return em instanceof EntityManagerProxy
+                && !TransactionSynchronizationManager.hasResource(em.getEntityManagerFactory());
+    }
+}
@@ -0,0 +1,242 @@
+package study.querydsl.support;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPADeleteClause;
+import com.querydsl.jpa.impl.JPAInsertClause;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.hibernate.annotations.QueryHints;
+import study.querydsl.repository.SyncingBulkExecutor.BulkListener;
+import study.querydsl.support.QueryExecution.Operation;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 만든 쿼리와 update/delete가 실행될 때마다 {@link QueryObserver}에 알려주는 JPAQueryFactory
+ * select/selectFrom/from 모두 query()를 거치므로 여기서 만든 쿼리는 전부 관찰된다.
+ * 관찰자가 없어도 조회는 ObservingJPAQuery로 만든다. (복제본 라우팅, ReplicaRouting, DerivedColumn으로 바꿔 쓰기)
+ *
+ * JPAUpdateClause/JPADeleteClause는 메타데이터를 꺼낼 수 없으므로
+ * 대상 엔티티와 where 조건을 따로 모아서 알린다. (set 절은 모양에 들어가지 않는다.)
+ * update/delete는 실행 전후에 {@link BulkListener}에도 알리므로, 이 팩토리로 실행한 벌크 연산은
+ * SyncingBulkExecutor를 거치지 않아도 집계 테이블(TeamStatsMaintainer)이 맞춰진다.
+ * 읽기 전용 트랜잭션에서 update/delete를 실행하면 ReadOnlyViolationException을 던진다. (ReadOnlyGuard)
+ *
+ * {@link #readOnly()}는 조회한 엔티티를 스냅샷 없이 읽기 전용으로 가져오는 팩토리를 돌려준다.
+ */
+public class ObservingJPAQueryFactory extends JPAQueryFactory {
+
+    private final JPQLTemplates templates;
+    private final EntityManager em;
+    private final List<QueryObserver> observers;
+    private final List<DerivedColumn<?>> derivedColumns;
+    private final Supplier<List<BulkListener>> bulkListeners;
+    private final boolean readOnly;
+
+    public ObservingJPAQueryFactory(JPQLTemplates templates, EntityManager em, List<QueryObserver> observers) {
+        this(templates, em, observers, Collections.emptyList());
+    }
+
+    public ObservingJPAQueryFactory(JPQLTemplates templates, EntityManager em, List<QueryObserver> observers,
+                                    List<DerivedColumn<?>> derivedColumns) {
+        this(templates, em, observers, derivedColumns, Collections::emptyList);
+    }
+
+    /**
+     * BulkListener는 이 팩토리를 주입받는 빈(TeamStatsMaintainer)일 수 있어서 실행할 때 꺼내 쓴다.
+     */
+    public ObservingJPAQueryFactory(JPQLTemplates templates, EntityManager em, List<QueryObserver> observers,
+                                    List<DerivedColumn<?>> derivedColumns, Supplier<List<BulkListener>> bulkListeners) {
+        this(templates, em, observers, derivedColumns, bulkListeners, false);
+    }
+
+    private ObservingJPAQueryFactory(JPQLTemplates templates, EntityManager em, List<QueryObserver> observers,
+                                     List<DerivedColumn<?>> derivedColumns, Supplier<List<BulkListener>> bulkListeners,
+                                     boolean readOnly) {
+        super(templates, em);
+        this.templates = templates;
+        this.em = em;
+        this.observers = observers;
+        this.derivedColumns = derivedColumns;
+        this.bulkListeners = bulkListeners;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * 같은 설정으로 조회만 하는 팩토리
+     *
+     * 쿼리마다 read-only 힌트를 붙여서, 조회한 엔티티(fetch join 포함)는 스냅샷을 만들지 않고 flush 때 변경 감지를 건너뛴다.
+     * 엔티티를 바꿔도 DB에 반영되지 않는다. update/delete/insert는 만들 때 ReadOnlyViolationException을 던진다.
+     * 트랜잭션 전체를 읽기 전용으로 하려면 @Transactional(readOnly = true)를 쓴다.
+     */
+    public ObservingJPAQueryFactory readOnly() {
+        if (readOnly) {
+            return this;
+        }
+        return new ObservingJPAQueryFactory(templates, em, observers, derivedColumns, bulkListeners, true);
+    }
+
+    @Override
+    public JPAQuery<?> query() {
+        JPAQuery<?> query = new ObservingJPAQuery<Void>(em, templates, observers, derivedColumns);
+        if (readOnly) {
+            query.setHint(QueryHints.READ_ONLY, true);
+        }
+        return query;
+    }
+
+    @Override
+    public JPAUpdateClause update(EntityPath<?> path) {
+        checkWritable("update");
+        return new ObservingUpdateClause(path);
+    }
+
+    @Override
+    public JPADeleteClause delete(EntityPath<?> path) {
+        checkWritable("delete");
+        return new ObservingDeleteClause(path);
+    }
+
+    @Override
+    public JPAInsertClause insert(EntityPath<?> path) {
+        checkWritable("insert");
+        return super.insert(path);
+    }
+
+    private void checkWritable(String operation) {
+        if (readOnly) {
+            throw new ReadOnlyViolationException("읽기 전용 JPAQueryFactory로는 " + operation + " 할 수 없습니다.");
+        }
+    }
+
+    private static QueryMetadata dmlMetadata(EntityPath<?> entity) {
+        QueryMetadata metadata = new DefaultQueryMetadata();
+        metadata.addJoin(JoinType.DEFAULT, entity);
+        return metadata;
+    }
+
+    private static void addWhere(QueryMetadata metadata, Predicate[] where) {
+        for (Predicate predicate : where) {
+            if (predicate != null) {
+                metadata.addWhere(predicate);
+            }
+        }
+    }
+
+    private static Predicate[] whereOf(QueryMetadata metadata) {
+        Predicate where = metadata.getWhere();
+        return where != null ? new Predicate[]{where} : new Predicate[0];
+    }
+
+    private static long runAfter(List<Runnable> afterExecute, long count) {
+        for (Runnable runnable : afterExecute) {
+            runnable.run();
+        }
+        return count;
+    }
+
+    private class ObservingUpdateClause extends JPAUpdateClause {
+
+        private final EntityPath<?> entity;
+        private final QueryMetadata metadata;
+        private final Map<Path<?>, Object> updates = new LinkedHashMap<>();
+
+        private ObservingUpdateClause(EntityPath<?> entity) {
+            super(em, entity, templates);
+            this.entity = entity;
+            this.metadata = dmlMetadata(entity);
+        }
+
+        @Override
+        public JPAUpdateClause where(Predicate... where) {
+            addWhere(metadata, where);
+            return super.where(where);
+        }
+
+        @Override
+        public <T> JPAUpdateClause set(Path<T> path, T value) {
+            super.set(path, value);
+            updates.put(path, value);
+            return this;
+        }
+
+        @Override
+        public <T> JPAUpdateClause set(Path<T> path, Expression<? extends T> expression) {
+            super.set(path, expression);
+            updates.put(path, expression);
+            return this;
+        }
+
+        @Override
+        public <T> JPAUpdateClause setNull(Path<T> path) {
+            super.setNull(path);
+            updates.put(path, null);
+            return this;
+        }
+
+        @Override
+        public JPAUpdateClause set(List<? extends Path<?>> paths, List<?> values) {
+            super.set(paths, values);
+            for (int i = 0; i < paths.size(); i++) {
+                updates.put(paths.get(i), values.get(i));
+            }
+            return this;
+        }
+
+        @Override
+        public long execute() {
+            ReadOnlyGuard.checkWritable();
+            List<Path<?>> paths = new ArrayList<>(updates.keySet());
+            List<Object> values = new ArrayList<>(updates.values());
+            List<Runnable> afterExecute = new ArrayList<>();
+            for (BulkListener listener : bulkListeners.get()) {
+                afterExecute.add(listener.beforeUpdate(entity, whereOf(metadata), paths, values));
+            }
+            return runAfter(afterExecute,
+                    Observation.observe(observers, Operation.EXECUTE, metadata, this, super::execute, count -> count));
+        }
+    }
+
+    private class ObservingDeleteClause extends JPADeleteClause {
+
+        private final EntityPath<?> entity;
+        private final QueryMetadata metadata;
+
+        private ObservingDeleteClause(EntityPath<?> entity) {
+            super(em, entity, templates);
+            this.entity = entity;
+            this.metadata = dmlMetadata(entity);
+        }
+
+        @Override
+        public JPADeleteClause where(Predicate... where) {
+            addWhere(metadata, where);
+            return super.where(where);
+        }
+
+        @Override
+        public long execute() {
+            ReadOnlyGuard.checkWritable();
+            List<Runnable> afterExecute = new ArrayList<>();
+            for (BulkListener listener : bulkListeners.get()) {
+                afterExecute.add(listener.beforeDelete(entity, whereOf(metadata)));
+            }
+            return runAfter(afterExecute,
+                    Observation.observe(observers, Operation.EXECUTE, metadata, this, super::execute, count -> count));
+        }
+    }
+}
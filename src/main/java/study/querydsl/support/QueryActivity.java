@@ -0,0 +1,61 @@
+package study.querydsl.support;
+
+/**
+ * 현재 스레드에서 지금까지 나간 SQL 수와 로딩된 엔티티 수
+ * 쿼리 실행 전후 값의 차이로 쿼리 하나가 만든 양을 센다.
+ *
+ * SQL은 QueryCountInspector가, 엔티티는 EntityLoadCounter가 센다.
+ * select가 아닌 SQL(insert/update/delete ...)이 나간 시각도 남겨서 쓰기 직후의 읽기를 primary로 보낼 때 쓴다.
+ * 스레드마다 객체 하나를 두고 값만 올리므로 세는 동안 할당이 없다.
+ */
+public final class QueryActivity {
+
+    private static final ThreadLocal<QueryActivity> CURRENT = ThreadLocal.withInitial(QueryActivity::new);
+
+    private long statements;
+    private long entities;
+    private boolean written;
+    private long writtenAt;
+
+    private QueryActivity() {
+    }
+
+    public static QueryActivity current() {
+        return CURRENT.get();
+    }
+
+    static void statementPrepared(boolean write) {
+        QueryActivity activity = CURRENT.get();
+        activity.statements++;
+        if (write) {
+            activity.written = true;
+            activity.writtenAt = System.nanoTime();
+        }
+    }
+
+    static void entityLoaded() {
+        CURRENT.get().entities++;
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    public long getEntities() {
+        return entities;
+    }
+
+    /**
+     * 이 스레드에서 마지막 쓰기 SQL이 나간 지 window가 지나지 않았으면 true
+     */
+    public boolean wroteWithin(long windowNanos) {
+        return wroteWithin(windowNanos, System.nanoTime());
+    }
+
+    /**
+     * @param nowNanos System.nanoTime() 기준의 지금 시각
+     */
+    public boolean wroteWithin(long windowNanos, long nowNanos) {
+        return written && nowNanos - writtenAt < windowNanos;
+    }
+}
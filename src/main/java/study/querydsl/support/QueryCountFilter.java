@@ -0,0 +1,30 @@
+package study.querydsl.support;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 요청 하나를 SQL 집계 범위로 묶는다.
+ * open-in-view로 트랜잭션 밖(뷰 렌더링)에서 일어나는 지연 로딩도 함께 센다.
+ */
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    private final QueryCountInspector inspector;
+
+    public QueryCountFilter(QueryCountInspector inspector) {
+        this.inspector = inspector;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try (QueryCountInspector.Scope scope = inspector.open()) {
+            filterChain.doFilter(request, response);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package study.querydsl.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hibernate가 실행하는 SQL을 범위(scope)별로 세어서 N+1을 찾는다.
+ *
+ * 범위는 요청(QueryCountFilter)이나 트랜잭션 단위로 열리고, 직접 open()으로 열 수도 있다.
+ * 범위가 중첩되면 안쪽 범위에서 센 SQL은 바깥 범위에도 함께 더해진다.
+ * 범위를 닫으면 그 범위를 열기 전의 범위로 되돌린다. 안쪽 범위가 예외 등으로 닫히지 않았거나
+ * 바깥 범위가 먼저 닫혀도, 닫힌 범위는 더 세지 않고 (풀에서 다시 쓰는) 스레드에 남지 않는다.
+ *
+ * Hibernate가 만든 SQL은 파라미터가 ?로 바뀌어 있으므로 SQL 문자열 자체를 쿼리 모양으로 본다.
+ * fetchJoinNo처럼 지연 로딩이 한 건씩 나가면 같은 모양이 반복되고,
+ * 그 횟수가 threshold를 넘으면 mode에 따라 로그를 남기거나 예외를 던진다.
+ * 벌크 적재처럼 같은 insert/update가 반복되는 것은 정상이므로 select만 검사한다.
+ *
+ * mode와 상관없이 QueryActivity에도 SQL 수와 마지막 쓰기 시각을 남긴다. (쿼리별 메트릭, 복제본 라우팅)
+ */
+@Slf4j
+public class QueryCountInspector implements StatementInspector {
+
+    public enum Mode {
+        OFF, LOG, FAIL
+    }
+
+    private static final ThreadLocal<Counter> CURRENT = new ThreadLocal<>();
+
+    private final int threshold;
+    private final Mode mode;
+
+    public QueryCountInspector(int threshold, Mode mode) {
+        this.threshold = threshold;
+        this.mode = mode;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        boolean select = isSelect(sql);
+        QueryActivity.statementPrepared(!select);
+        if (mode == Mode.OFF) {
+            return sql;
+        }
+        Counter counter = CURRENT.get();
+        if (counter == null) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                return sql;
+            }
+            counter = openForTransaction();
+        }
+        for (Counter c = counter; c != null; c = c.parent) {
+            if (c.closed) {
+                continue;
+            }
+            int count = c.add(sql);
+            if (select && count == threshold + 1) {
+                report(sql);
+            }
+        }
+        return sql;
+    }
+
+    public Scope open() {
+        Counter counter = new Counter(CURRENT.get());
+        CURRENT.set(counter);
+        return new Scope(counter);
+    }
+
+    private Counter openForTransaction() {
+        Scope scope = open();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                scope.close();
+            }
+        });
+        return scope.counter;
+    }
+
+    private static boolean isSelect(String sql) {
+        String trimmed = sql.stripLeading();
+        return trimmed.regionMatches(true, 0, "select", 0, 6)
+                || trimmed.regionMatches(true, 0, "with", 0, 4);
+    }
+
+    private void report(String sql) {
+        String message = "N+1 의심: 같은 SQL이 " + threshold + "번을 넘게 실행되었습니다. sql=" + sql;
+        if (mode == Mode.FAIL) {
+            throw new NPlusOneException(message);
+        }
+        log.warn(message);
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final Counter counter;
+
+        private Scope(Counter counter) {
+            this.counter = counter;
+        }
+
+        public int getStatementCount() {
+            return counter.total;
+        }
+
+        public int getStatementCount(String sql) {
+            return counter.counts.getOrDefault(sql, 0);
+        }
+
+        /**
+         * 지금 범위가 이 범위 안쪽이면(닫히지 않은 안쪽 범위 포함) 이 범위 바깥의 열린 범위로 되돌린다.
+         */
+        @Override
+        public void close() {
+            if (counter.closed) {
+                return;
+            }
+            counter.closed = true;
+            if (!counter.encloses(CURRENT.get())) {
+                return;
+            }
+            Counter previous = counter.parent;
+            while (previous != null && previous.closed) {
+                previous = previous.parent;
+            }
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    private static final class Counter {
+
+        private final Counter parent;
+        private final Map<String, Integer> counts = new HashMap<>();
+        private int total;
+        private boolean closed;
+
+        private Counter(Counter parent) {
+            this.parent = parent;
+        }
+
+        private boolean encloses(Counter counter) {
+            for (Counter c = counter; c != null; c = c.parent) {
+                if (c == this) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int add(String sql) {
+            total++;
+            return counts.merge(sql, 1, Integer::sum);
+        }
+    }
+}
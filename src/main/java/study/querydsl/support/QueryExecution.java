@@ -0,0 +1,73 @@
+package study.querydsl.support;
+
+import com.querydsl.core.QueryMetadata;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * 쿼리 한 번 실행한 결과
+ *
+ * statements, entities는 실행하는 동안 이 스레드에서 나간 SQL 수와 로딩된 엔티티 수다. (QueryActivity)
+ * 실행이 끝난 뒤 지연 로딩으로 나가는 SQL은 포함하지 않는다.
+ */
+@Getter
+public class QueryExecution {
+
+    public enum Operation {
+        FETCH, FETCH_ONE, FETCH_RESULTS, FETCH_COUNT, ITERATE, STREAM, EXECUTE;
+
+        private final String tag = name().toLowerCase().replace('_', '-');
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    /**
+     * fetch 전에 QueryShape.fingerprint로 구한 쿼리 모양
+     */
+    private final String fingerprint;
+    private final Operation operation;
+    /**
+     * update/delete는 대상 엔티티와 where 조건만 들어 있다.
+     */
+    private final QueryMetadata metadata;
+    private final long elapsedNanos;
+    /**
+     * 돌려준 행 수(update/delete는 바뀐 행 수), iterate/stream이면 알 수 없으므로 -1
+     */
+    private final long rows;
+    private final long statements;
+    private final long entities;
+    /**
+     * 실패했으면 던져진 예외, 성공했으면 null
+     */
+    private final Throwable failure;
+
+    @Getter(AccessLevel.NONE)
+    private final Object query;
+
+    public QueryExecution(String fingerprint, Operation operation, QueryMetadata metadata, Object query,
+                          long elapsedNanos, long rows, long statements, long entities, Throwable failure) {
+        this.fingerprint = fingerprint;
+        this.operation = operation;
+        this.metadata = metadata;
+        this.query = query;
+        this.elapsedNanos = elapsedNanos;
+        this.rows = rows;
+        this.statements = statements;
+        this.entities = entities;
+        this.failure = failure;
+    }
+
+    /**
+     * 쿼리의 JPQL, 부를 때마다 직렬화하므로 느린 쿼리 로그처럼 가끔 필요할 때만 쓴다.
+     */
+    public String getQueryString() {
+        return query.toString();
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+}
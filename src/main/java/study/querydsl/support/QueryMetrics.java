@@ -0,0 +1,120 @@
+package study.querydsl.support;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.support.QueryExecution.Operation;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 쿼리 모양(fingerprint)과 실행 메서드별로 Micrometer 메트릭을 남기고, 느린 쿼리를 로그로 남긴다.
+ *
+ * - querydsl.query: 실행 시간 (히스토그램, outcome=success/error)
+ * - querydsl.query.rows: 돌려준 행 수 (iterate/stream은 남기지 않는다.)
+ * - querydsl.query.statements: 실행하는 동안 나간 SQL 수
+ * - querydsl.query.entities: 실행하는 동안 로딩된 엔티티 수
+ * 태그는 shape(fingerprint), operation(fetch, fetch-one, execute ...)이다.
+ * 모양이 처음 나올 때 debug 로그로 fingerprint와 JPQL을 남기므로 태그 값으로 쿼리를 찾을 수 있다.
+ *
+ * 실행할 때마다 fingerprint를 구하느라 쿼리 트리를 한 번 순회하고 문자열을 만든다. (Observation, QueryMetricsBenchmark.fingerprint)
+ * 미터는 모양마다 한 번만 만들어서 들고 있으므로 그 뒤로는 해시 조회 한 번과 기록만 한다.
+ * 느린 쿼리 기준이 0 이하면 느린 쿼리 로그를 남기지 않는다.
+ */
+@Slf4j
+public class QueryMetrics implements QueryObserver {
+
+    private final MeterRegistry registry;
+    private final long slowQueryNanos;
+    private final Map<String, ShapeMeters> shapes = new ConcurrentHashMap<>();
+
+    public QueryMetrics(MeterRegistry registry, Duration slowQueryThreshold) {
+        this.registry = registry;
+        this.slowQueryNanos = slowQueryThreshold.toNanos();
+    }
+
+    @Override
+    public void onQuery(QueryExecution execution) {
+        Meters meters = shapeMeters(execution).get(execution.getOperation(), execution.isFailed());
+        meters.latency.record(execution.getElapsedNanos(), TimeUnit.NANOSECONDS);
+        if (execution.getRows() >= 0) {
+            meters.rows.record(execution.getRows());
+        }
+        meters.statements.record(execution.getStatements());
+        meters.entities.record(execution.getEntities());
+
+        if (slowQueryNanos > 0 && execution.getElapsedNanos() >= slowQueryNanos) {
+            log.warn("느린 쿼리: shape={}, operation={}, elapsed={}ms, rows={}, statements={}, entities={}, query={}",
+                    execution.getFingerprint(), execution.getOperation().tag(),
+                    TimeUnit.NANOSECONDS.toMillis(execution.getElapsedNanos()), execution.getRows(),
+                    execution.getStatements(), execution.getEntities(), execution.getQueryString());
+        }
+    }
+
+    private ShapeMeters shapeMeters(QueryExecution execution) {
+        ShapeMeters meters = shapes.get(execution.getFingerprint());
+        if (meters != null) {
+            return meters;
+        }
+        return shapes.computeIfAbsent(execution.getFingerprint(), fingerprint -> {
+            log.debug("쿼리 모양 shape={}, query={}", fingerprint, execution.getQueryString());
+            return new ShapeMeters(fingerprint);
+        });
+    }
+
+    /**
+     * 모양 하나의 (operation, outcome)별 미터
+     * 처음 쓸 때 만들고, 두 스레드가 동시에 만들어도 registry가 같은 미터를 돌려주므로 잠그지 않는다.
+     */
+    private final class ShapeMeters {
+
+        private final String fingerprint;
+        private final Meters[] meters = new Meters[Operation.values().length * 2];
+
+        private ShapeMeters(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        private Meters get(Operation operation, boolean failed) {
+            int index = operation.ordinal() * 2 + (failed ? 1 : 0);
+            Meters found = meters[index];
+            if (found == null) {
+                found = new Meters(Tags.of("shape", fingerprint, "operation", operation.tag()), failed);
+                meters[index] = found;
+            }
+            return found;
+        }
+    }
+
+    private final class Meters {
+
+        private final Timer latency;
+        private final DistributionSummary rows;
+        private final DistributionSummary statements;
+        private final DistributionSummary entities;
+
+        private Meters(Tags tags, boolean failed) {
+            this.latency = Timer.builder("querydsl.query")
+                    .description("Querydsl 쿼리 실행 시간")
+                    .tags(tags)
+                    .tag("outcome", failed ? "error" : "success")
+                    .publishPercentileHistogram()
+                    .register(registry);
+            this.rows = summary("querydsl.query.rows", "돌려준 행 수", tags);
+            this.statements = summary("querydsl.query.statements", "실행하는 동안 나간 SQL 수", tags);
+            this.entities = summary("querydsl.query.entities", "실행하는 동안 로딩된 엔티티 수", tags);
+        }
+
+        private DistributionSummary summary(String name, String description, Tags tags) {
+            return DistributionSummary.builder(name)
+                    .description(description)
+                    .tags(tags)
+                    .register(registry);
+        }
+    }
+}
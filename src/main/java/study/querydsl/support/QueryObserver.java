@@ -0,0 +1,10 @@
+package study.querydsl.support;
+
+/**
+ * ObservingJPAQueryFactory로 만든 쿼리와 update/delete가 실행될 때마다 불린다.
+ * 쿼리를 실행한 스레드에서 바로 불리므로 오래 걸리는 일을 하면 안 된다.
+ */
+public interface QueryObserver {
+
+    void onQuery(QueryExecution execution);
+}
@@ -0,0 +1,96 @@
+package study.querydsl.support;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.DeleteEvent;
+import org.hibernate.event.spi.DeleteEventListener;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.MergeEvent;
+import org.hibernate.event.spi.MergeEventListener;
+import org.hibernate.event.spi.PersistEvent;
+import org.hibernate.event.spi.PersistEventListener;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 읽기 전용 트랜잭션에서 쓰기를 시도하면 그 자리에서 ReadOnlyViolationException을 던진다.
+ *
+ * "@Transactional(readOnly = true)"면 스프링이 Hibernate 세션을 기본 읽기 전용(setDefaultReadOnly)으로,
+ * flush 모드를 MANUAL로 연다. 그 세션이 조회한 엔티티는 변경 감지용 스냅샷을 만들지 않고 flush 때 검사하지도 않는다.
+ * 대신 persist/merge/remove는 커밋 때 flush가 없어서 조용히 버려진다. 여기서는
+ * - persist/merge/remove: 세션이 기본 읽기 전용이면 기본 리스너보다 먼저 실패시킨다.
+ * - 벌크 update/delete/insert: 실행 직전에 {@link #checkWritable()}로 스프링 트랜잭션이 읽기 전용인지 본다.
+ *   (ObservingJPAQueryFactory, BulkInsertExecutor)
+ *
+ * 스냅샷이 없으므로 읽기 전용으로 조회한 엔티티의 setter 호출은 알아챌 수 없다. 그 변경은 DB에 반영되지 않는다.
+ */
+public class ReadOnlyGuard implements PersistEventListener, MergeEventListener, DeleteEventListener,
+        SmartInitializingSingleton {
+
+    private final EntityManagerFactory emf;
+
+    public ReadOnlyGuard(EntityManagerFactory emf) {
+        this.emf = emf;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        EventListenerRegistry listeners = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        listeners.prependListeners(EventType.PERSIST, this);
+        listeners.prependListeners(EventType.MERGE, this);
+        listeners.prependListeners(EventType.DELETE, this);
+    }
+
+    /**
+     * 현재 스프링 트랜잭션이 읽기 전용이면 ReadOnlyViolationException
+     */
+    public static void checkWritable() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            throw new ReadOnlyViolationException("읽기 전용 트랜잭션에서는 벌크 수정/삭제/insert를 실행할 수 없습니다.");
+        }
+    }
+
+    @Override
+    public void onPersist(PersistEvent event) {
+        check(event.getSession(), "persist", event.getObject());
+    }
+
+    @Override
+    public void onPersist(PersistEvent event, Map createdAlready) {
+        check(event.getSession(), "persist", event.getObject());
+    }
+
+    @Override
+    public void onMerge(MergeEvent event) {
+        check(event.getSession(), "merge", event.getOriginal());
+    }
+
+    @Override
+    public void onMerge(MergeEvent event, Map copiedAlready) {
+        check(event.getSession(), "merge", event.getOriginal());
+    }
+
+    @Override
+    public void onDelete(DeleteEvent event) {
+        check(event.getSession(), "remove", event.getObject());
+    }
+
+    @Override
+    public void onDelete(DeleteEvent event, Set transientEntities) {
+        check(event.getSession(), "remove", event.getObject());
+    }
+
+    private static void check(EventSource session, String operation, Object entity) {
+        if (session.isDefaultReadOnly()) {
+            throw new ReadOnlyViolationException("읽기 전용 트랜잭션에서는 " + operation + " 할 수 없습니다. "
+                    + (entity == null ? "" : entity.getClass().getSimpleName()));
+        }
+    }
+}
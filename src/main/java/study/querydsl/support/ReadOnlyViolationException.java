@@ -0,0 +1,11 @@
+package study.querydsl.support;
+
+/**
+ * 읽기 전용 트랜잭션이나 읽기 전용 JPAQueryFactory로 쓰기를 시도했을 때 던진다.
+ */
+public class ReadOnlyViolationException extends RuntimeException {
+
+    public ReadOnlyViolationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,56 @@
+package study.querydsl.support;
+
+import java.util.function.Supplier;
+
+/**
+ * 트랜잭션 밖에서 얻는 커넥션을 복제본으로 보내도 되는지 스레드별로 표시한다.
+ *
+ * ObservingJPAQuery는 조회(fetch, fetchOne ...)를 readOnly()로 감싸므로,
+ * 트랜잭션 밖의 select/selectFrom 쿼리는 복제본으로 간다.
+ * 복제 지연이 문제가 되는 조회는 primary()로 감싸서 primary에서 읽는다. (안쪽의 readOnly()보다 우선한다.)
+ *
+ * 실제 라우팅은 ReplicaRoutingDataSource가 커넥션을 얻는 시점에 이 표시와 트랜잭션 상태를 보고 정한다.
+ */
+public final class ReplicaRouting {
+
+    public enum Route {
+        REPLICA, PRIMARY
+    }
+
+    private static final ThreadLocal<Route> CURRENT = new ThreadLocal<>();
+
+    private ReplicaRouting() {
+    }
+
+    /**
+     * @return 표시가 없으면 null
+     */
+    public static Route current() {
+        return CURRENT.get();
+    }
+
+    public static <T> T readOnly(Supplier<T> work) {
+        return with(Route.REPLICA, work);
+    }
+
+    public static <T> T primary(Supplier<T> work) {
+        return with(Route.PRIMARY, work);
+    }
+
+    private static <T> T with(Route route, Supplier<T> work) {
+        Route previous = CURRENT.get();
+        if (previous == Route.PRIMARY || previous == route) {
+            return work.get();
+        }
+        CURRENT.set(route);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package study.querydsl.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 커넥션을 primary와 복제본 중 어디서 얻을지 정한다.
+ *
+ * 1. ReplicaRouting.primary() 안이거나, 이 스레드에서 stickyWindow 안에 쓰기 SQL이 나갔으면 primary
+ *    (쓰기 직후 같은 스레드의 읽기가 아직 복제되지 않은 복제본으로 가지 않도록 한다.)
+ * 2. 트랜잭션 안이면 읽기 전용 트랜잭션만 복제본, 나머지는 primary
+ *    JPA는 트랜잭션 하나에 커넥션 하나를 쓰므로, 쓰기 트랜잭션은 처음 조회부터 primary에 붙는다.
+ * 3. 트랜잭션 밖이면 ReplicaRouting.readOnly() 안(select 쿼리)만 복제본, 나머지(DDL, JDBC ...)는 primary
+ *
+ * 트랜잭션이 시작될 때가 아니라 첫 SQL을 실행할 때 커넥션을 얻어야 읽기 전용 여부를 알 수 있으므로
+ * LazyConnectionDataSourceProxy로 감싸서 쓴다. (DataSourceRoutingConfig)
+ *
+ * 복제본은 ROUND_ROBIN이면 돌아가면서, LEAST_LOADED면 사용 중인 커넥션(Hikari)이 가장 적은 것을 고른다.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    public static final String PRIMARY = "primary";
+
+    public enum Strategy {
+        ROUND_ROBIN, LEAST_LOADED
+    }
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final List<String> replicaKeys = new ArrayList<>();
+    private final Strategy strategy;
+    private final long stickyWindowNanos;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Map<String, LongAdder> routed = new HashMap<>();
+    private volatile LongSupplier clock = System::nanoTime;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Strategy strategy,
+                                    Duration stickyWindow) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.strategy = strategy;
+        this.stickyWindowNanos = stickyWindow.toNanos();
+
+        Map<Object, Object> targets = new LinkedHashMap<>();
+        targets.put(PRIMARY, primary);
+        routed.put(PRIMARY, new LongAdder());
+        for (int i = 0; i < replicas.size(); i++) {
+            String key = "replica-" + i;
+            replicaKeys.add(key);
+            targets.put(key, replicas.get(i));
+            routed.put(key, new LongAdder());
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * 테스트용, sticky-window가 지났는지 잴 때 System.nanoTime() 대신 쓴다.
+     * 쓰기 시각은 System.nanoTime()으로 기록되므로 그 값에 더해서 시간을 앞당기는 식으로 쓴다.
+     */
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @param key PRIMARY 또는 replica-0, replica-1 ...
+     * @return 그 데이터소스에서 커넥션을 얻은 횟수
+     */
+    public long getRoutedCount(String key) {
+        return routed.get(key).sum();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String key = route();
+        routed.get(key).increment();
+        return key;
+    }
+
+    private String route() {
+        if (replicas.isEmpty()
+                || ReplicaRouting.current() == ReplicaRouting.Route.PRIMARY
+                || QueryActivity.current().wroteWithin(stickyWindowNanos, clock.getAsLong())) {
+            return PRIMARY;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? nextReplica() : PRIMARY;
+        }
+        return ReplicaRouting.current() == ReplicaRouting.Route.REPLICA ? nextReplica() : PRIMARY;
+    }
+
+    private String nextReplica() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        if (strategy == Strategy.ROUND_ROBIN) {
+            return replicaKeys.get(start);
+        }
+        int best = start;
+        int bestActive = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = (start + i) % replicas.size();
+            int active = activeConnections(replicas.get(index));
+            if (active < bestActive) {
+                best = index;
+                bestActive = active;
+            }
+        }
+        return replicaKeys.get(best);
+    }
+
+    /**
+     * Hikari 풀이 아니거나 아직 풀이 만들어지지 않았으면 0
+     */
+    private static int activeConnections(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource) {
+            HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+            return pool == null ? 0 : pool.getActiveConnections();
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (primary instanceof Closeable) {
+            ((Closeable) primary).close();
+        }
+        for (DataSource replica : replicas) {
+            if (replica instanceof Closeable) {
+                ((Closeable) replica).close();
+            }
+        }
+    }
+}
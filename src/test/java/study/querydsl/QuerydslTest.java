@@ -0,0 +1,36 @@
+package study.querydsl;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Querydsl 테스트가 함께 쓰는 스프링 컨텍스트
+ *
+ * 테스트 컨텍스트는 설정(properties, webEnvironment ...)이 같아야 캐시에서 다시 쓴다.
+ * 테스트마다 @SpringBootTest 설정이 조금씩 다르면 그만큼 Hibernate 부트스트랩과 스키마 생성을 다시 하므로 설정을 여기에 모은다.
+ * - 웹 환경(서블릿 컨텍스트) 없이 띄운다.
+ * - 빈은 테스트가 쓸 때 만든다. (Hibernate 리스너를 등록하는 빈은 @Lazy(false))
+ * - Hibernate 통계를 켜 둔다. 통계를 보는 테스트는 @BeforeEach에서 statistics.clear() 한다.
+ * - 계산 컬럼(DerivedColumn)을 generated column으로 만든다.
+ * - 실행한 쿼리로 인덱스를 제안한다. (IndexAdvisor)
+ *
+ * 다른 설정이 꼭 필요한 테스트(복제본 라우팅, N+1 모드 ...)만 @SpringBootTest(properties = ...)를 따로 쓴다.
+ * 컨텍스트를 몇 번 만들었는지는 logging.level.org.springframework.test.context.cache=debug 로 볼 수 있다.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.main.lazy-initialization=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "querydsl.derived-columns.create-columns=true",
+        "querydsl.index-advisor.enabled=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=warn"
+})
+public @interface QuerydslTest {
+}
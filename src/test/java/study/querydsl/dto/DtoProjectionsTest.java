@@ -0,0 +1,140 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.QuerydslTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@QuerydslTest
+@Transactional
+class DtoProjectionsTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member(null, 30, teamA));
+    }
+
+    /**
+     * findDtoBySetter와 같은 결과
+     */
+    @Test
+    public void bean() {
+        List<MemberDto> expected = queryFactory
+                .select(Projections.bean(MemberDto.class, member.username, member.age))
+                .from(member)
+                .orderBy(member.age.asc())
+                .fetch();
+
+        List<MemberDto> result = queryFactory
+                .select(DtoProjections.bean(MemberDto.class, member.username, member.age))
+                .from(member)
+                .orderBy(member.age.asc())
+                .fetch();
+
+        assertThat(result).containsExactlyElementsOf(expected);
+    }
+
+    /**
+     * findUserDtoByField와 같은 결과, setter가 없는 UserDto에는 필드로 주입한다.
+     */
+    @Test
+    public void fieldsWithAlias() {
+        QMember memberSub = new QMember("memberSub");
+
+        List<UserDto> result = queryFactory
+                .select(DtoProjections.fields(UserDto.class,
+                        member.username.as("name"),
+                        ExpressionUtils.as(
+                                JPAExpressions
+                                        .select(memberSub.age.max())
+                                        .from(memberSub), "age")))
+                .from(member)
+                .orderBy(member.age.asc())
+                .fetch();
+
+        assertThat(result).extracting("name").containsExactly("member1", "member2", null);
+        assertThat(result).extracting("age").containsExactly(30, 30, 30);
+    }
+
+    /**
+     * findDtoByConstructor, findDtoByQueryProjection과 같은 결과
+     */
+    @Test
+    public void constructor() {
+        List<MemberDto> expected = queryFactory
+                .select(new QMemberDto(member.username, member.age))
+                .from(member)
+                .orderBy(member.age.asc())
+                .fetch();
+
+        List<MemberDto> result = queryFactory
+                .select(DtoProjections.constructor(MemberDto.class, member.username, member.age))
+                .from(member)
+                .orderBy(member.age.asc())
+                .fetch();
+
+        assertThat(result).containsExactlyElementsOf(expected);
+    }
+
+    /**
+     * 회원이 없는 팀을 outer join 하면 age가 null이고, 기본 타입 int 파라미터에는 0이 들어간다.
+     */
+    @Test
+    public void constructorWithNullPrimitive() {
+        em.persist(new Team("teamB"));
+
+        List<MemberDto> expected = queryFactory
+                .select(Projections.constructor(MemberDto.class, team.name, member.age))
+                .from(team)
+                .leftJoin(team.members, member)
+                .where(team.name.eq("teamB"))
+                .fetch();
+
+        List<MemberDto> result = queryFactory
+                .select(DtoProjections.constructor(MemberDto.class, team.name, member.age))
+                .from(team)
+                .leftJoin(team.members, member)
+                .where(team.name.eq("teamB"))
+                .fetch();
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getUsername()).isEqualTo("teamB");
+        assertThat(result.get(0).getAge()).isZero();
+        assertThat(result).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void missingProperty() {
+        assertThatThrownBy(() -> DtoProjections.fields(UserDto.class, member.username, member.age))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> DtoProjections.fields(UserDto.class, member.age.add(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
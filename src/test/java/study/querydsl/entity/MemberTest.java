@@ -1,17 +1,19 @@
 package study.querydsl.entity;
 
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
-import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.QuerydslTest;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest
+@QuerydslTest
 @Transactional
 class MemberTest {
     @PersistenceContext
@@ -49,8 +51,71 @@ class MemberTest {
         }
     }
 
+    /**
+     * 초기화되지 않은 회원 컬렉션은 size(), contains(), changeTeam()으로 로딩되지 않는다.
+     */
+    @Test
+    public void extraLazyMembers() {
+        Long[] ids = persistTeams();
+        Team teamA = em.find(Team.class, ids[0]);
+        Team teamB = em.find(Team.class, ids[1]);
+        Member member1 = em.find(Member.class, ids[2]);
+
+        assertEquals(2, teamA.getMembers().size());
+        assertTrue(teamA.getMembers().contains(member1));
+
+        member1.changeTeam(teamB);
+        em.flush();
+
+        assertEquals(1, teamA.getMembers().size());
+        assertEquals(3, teamB.getMembers().size());
+        assertFalse(Hibernate.isInitialized(teamA.getMembers()));
+        assertFalse(Hibernate.isInitialized(teamB.getMembers()));
+    }
 
+    /**
+     * 이미 로딩된 컬렉션에서는 옛 팀에서 빠지고 새 팀에 들어간다.
+     */
+    @Test
+    public void changeTeamMovesMember() {
+        Long[] ids = persistTeams();
+        Team teamA = em.find(Team.class, ids[0]);
+        Team teamB = em.find(Team.class, ids[1]);
+        Member member1 = em.find(Member.class, ids[2]);
+        Hibernate.initialize(teamA.getMembers());
+        Hibernate.initialize(teamB.getMembers());
+
+        member1.changeTeam(teamB);
 
+        assertEquals(List.of("member2"), usernames(teamA));
+        assertTrue(usernames(teamB).contains("member1"));
+        assertEquals(3, teamB.getMembers().size());
 
+        em.flush();
+        em.clear();
+        assertEquals(List.of("member2"), usernames(em.find(Team.class, ids[0])));
+    }
 
-}
\ No newline at end of file
+    /**
+     * @return teamA id, teamB id, member1 id
+     */
+    private Long[] persistTeams() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1 = new Member("member1", 10, teamA);
+        em.persist(member1);
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+        em.clear();
+        return new Long[]{teamA.getId(), teamB.getId(), member1.getId()};
+    }
+
+    private List<String> usernames(Team team) {
+        return team.getMembers().stream().map(Member::getUsername).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,173 @@
+package study.querydsl.entity;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslTest;
+import study.querydsl.repository.TeamQueryRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 2차 캐시는 커밋 후에 채워지므로 트랜잭션을 직접 나눠서 확인하고, 끝나면 데이터를 지운다.
+ */
+@QuerydslTest
+class TeamCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    TeamQueryRepository teamQueryRepository;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    Statistics statistics;
+    Long teamAId;
+    Long member1Id;
+
+    @BeforeEach
+    public void before() {
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+
+            Member member1 = new Member("member1", 10, teamA);
+            em.persist(member1);
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, teamB));
+            em.persist(new Member("member4", 40, teamB));
+
+            teamAId = teamA.getId();
+            member1Id = member1.getId();
+        });
+        emf.getCache().evictAll();
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+        emf.getCache().evictAll();
+    }
+
+    /**
+     * fetchJoinNo처럼 지연 로딩된 member.getTeam()은 두 번째 트랜잭션부터 2차 캐시에서 채워진다.
+     */
+    @Test
+    public void lazyTeamFromCache() {
+        String first = tx.execute(status -> em.find(Member.class, member1Id).getTeam().getName());
+        long queries = statistics.getPrepareStatementCount();
+
+        String second = tx.execute(status -> em.find(Member.class, member1Id).getTeam().getName());
+
+        assertThat(first).isEqualTo("teamA");
+        assertThat(second).isEqualTo("teamA");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(queries);
+        assertThat(statistics.getSecondLevelCacheHitCount()).isGreaterThan(0);
+    }
+
+    @Test
+    public void membersCollectionFromCache() {
+        tx.executeWithoutResult(status -> usernames(em.find(Team.class, teamAId)));
+        long queries = statistics.getPrepareStatementCount();
+
+        List<String> usernames = tx.execute(status -> usernames(em.find(Team.class, teamAId)));
+
+        assertThat(usernames).containsExactlyInAnyOrder("member1", "member2");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(queries);
+    }
+
+    /**
+     * bulkUpdate처럼 영속성 컨텍스트를 거치지 않는 수정도 캐시된 회원/컬렉션에 반영되어야 한다.
+     */
+    @Test
+    public void bulkUpdateEvictsMembers() {
+        tx.executeWithoutResult(status -> usernames(em.find(Team.class, teamAId)));
+
+        tx.executeWithoutResult(status -> queryFactory
+                .update(member)
+                .set(member.username, "비회원")
+                .where(member.age.lt(28))
+                .execute());
+
+        List<String> usernames = tx.execute(status -> usernames(em.find(Team.class, teamAId)));
+        assertThat(usernames).containsExactly("비회원", "비회원");
+    }
+
+    /**
+     * 회원의 팀이 바뀌면 옛 팀과 새 팀의 캐시된 회원 컬렉션을 쓰지 않는다.
+     */
+    @Test
+    public void changeTeamEvictsMembers() {
+        tx.executeWithoutResult(status -> usernames(em.find(Team.class, teamAId)));
+
+        tx.executeWithoutResult(status -> {
+            Member member1 = em.find(Member.class, member1Id);
+            member1.changeTeam(teamQueryRepository.findByName("teamB"));
+        });
+
+        List<String> usernames = tx.execute(status -> usernames(em.find(Team.class, teamAId)));
+        assertThat(usernames).containsExactly("member2");
+    }
+
+    @Test
+    public void teamQueryCache() {
+        tx.executeWithoutResult(status -> teamQueryRepository.findByName("teamA"));
+        long queries = statistics.getPrepareStatementCount();
+
+        Team cached = tx.execute(status -> teamQueryRepository.findByName("teamA"));
+
+        assertThat(cached.getId()).isEqualTo(teamAId);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(queries);
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+    }
+
+    /**
+     * 팀 이름을 벌크로 바꾸면 캐시된 조회 결과를 쓰지 않는다.
+     */
+    @Test
+    public void bulkUpdateInvalidatesTeamQueryCache() {
+        tx.executeWithoutResult(status -> teamQueryRepository.findAll());
+
+        tx.executeWithoutResult(status -> queryFactory
+                .update(team)
+                .set(team.name, "teamC")
+                .where(team.name.eq("teamB"))
+                .execute());
+
+        List<Team> teams = tx.execute(status -> teamQueryRepository.findAll());
+        assertThat(teams).extracting("name").containsExactly("teamA", "teamC");
+        assertThat(tx.execute(status -> teamQueryRepository.findByName("teamB"))).isNull();
+    }
+
+    private List<String> usernames(Team team) {
+        return team.getMembers().stream().map(Member::getUsername).collect(Collectors.toList());
+    }
+}
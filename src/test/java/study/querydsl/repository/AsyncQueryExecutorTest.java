@@ -0,0 +1,137 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 작업은 다른 스레드의 다른 트랜잭션에서 실행되므로 데이터를 커밋해두고 테스트가 끝나면 지운다.
+ */
+@QuerydslTest
+class AsyncQueryExecutorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    AsyncQueryExecutor asyncExecutor;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before() {
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, teamB));
+            em.persist(new Member("member4", 40, teamB));
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    /**
+     * search()와 같은 조건
+     */
+    @Test
+    public void fetchOneAsync() {
+        Member findMember = asyncExecutor.fetchOneAsync(queryFactory
+                        .selectFrom(member)
+                        .where(member.username.eq("member1"), member.age.eq(10)))
+                .join();
+
+        assertThat(findMember.getUsername()).isEqualTo("member1");
+        assertThat(em.getEntityManagerFactory().getPersistenceUnitUtil().isLoaded(findMember.getTeam())).isFalse();
+    }
+
+    @Test
+    public void fetchAsync() {
+        List<Member> result = asyncExecutor.fetchAsync(queryFactory
+                        .selectFrom(member)
+                        .join(member.team, team).fetchJoin()
+                        .where(team.name.eq("teamA")))
+                .join();
+
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+        assertThat(result.get(0).getTeam().getName()).isEqualTo("teamA");
+    }
+
+    /**
+     * bulkUpdate와 같은 수정, 작업의 트랜잭션이 커밋된다.
+     */
+    @Test
+    public void executeAsync() {
+        long count = asyncExecutor.executeAsync(queryFactory
+                        .update(member)
+                        .set(member.username, "비회원")
+                        .where(member.age.lt(28)))
+                .join();
+
+        assertThat(count).isEqualTo(2);
+        assertThat(tx.execute(status -> queryFactory
+                .selectFrom(member)
+                .where(member.username.eq("비회원"))
+                .fetch()))
+                .hasSize(2);
+    }
+
+    /**
+     * 호출한 스레드의 트랜잭션과는 별개로 실행된다.
+     */
+    @Test
+    public void runsOutsideCallerTransaction() {
+        Long count = tx.execute(status -> {
+            em.persist(new Member("member5", 50));
+            em.flush();
+            return asyncExecutor.fetchOneAsync(queryFactory
+                            .select(member.count())
+                            .from(member))
+                    .join();
+        });
+
+        assertThat(count).isEqualTo(4);
+    }
+
+    @Test
+    public void concurrentCallers() {
+        List<CompletableFuture<Member>> futures = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            futures.add(asyncExecutor.fetchOneAsync(queryFactory
+                    .selectFrom(member)
+                    .where(member.username.eq("member" + (i % 4 + 1)))));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        assertThat(futures).allSatisfy(future -> assertThat(future.join()).isNotNull());
+    }
+}
@@ -0,0 +1,132 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.QuerydslTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.QTeam;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+@QuerydslTest
+@Transactional
+class BulkInsertExecutorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    BulkInsertExecutor bulkInsert;
+
+    @Autowired
+    TeamStatsRepository teamStatsRepository;
+
+    Team teamA;
+    Team teamB;
+
+    @BeforeEach
+    public void before() {
+        teamA = new Team("teamA");
+        teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 25, teamA));
+        em.flush();
+        em.clear();
+    }
+
+    /**
+     * 여러 행을 JDBC 배치로 넣는다. id는 시퀀스에서, age_bucket은 DB가 채운다.
+     */
+    @Test
+    public void insertValues() {
+        long count = bulkInsert
+                .insert(member)
+                .columns(member.username, member.age, member.team)
+                .values("member3", 30, em.getReference(Team.class, teamB.getId()))
+                .values("member4", 40, em.getReference(Team.class, teamB.getId()))
+                .values("member5", 15, null)
+                .execute();
+
+        assertThat(count).isEqualTo(3);
+        List<Member> inserted = queryFactory
+                .selectFrom(member)
+                .where(member.username.in("member3", "member4", "member5"))
+                .orderBy(member.username.asc())
+                .fetch();
+        assertThat(inserted).extracting(Member::getAge).containsExactly(30, 40, 15);
+        assertThat(inserted).extracting(Member::getAgeBucket).containsExactly("21~30살", "기타", "0~20살");
+        assertThat(inserted).extracting(Member::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(inserted.get(2).getTeam()).isNull();
+
+        assertThat(teamStatsRepository.findByTeamName("teamB").getMemberCount()).isEqualTo(2);
+    }
+
+    /**
+     * teamA의 회원을 teamB로 복사한다. insert ... select 한 문장이다.
+     */
+    @Test
+    public void insertSelect() {
+        QMember source = new QMember("source");
+        QTeam target = new QTeam("target");
+
+        long count = bulkInsert
+                .insert(member)
+                .columns(member.username, member.age, member.team)
+                .select(JPAExpressions
+                        .select(source.username, source.age, target.id)
+                        .from(source, target)
+                        .where(source.team.name.eq("teamA"), target.name.eq("teamB")))
+                .execute();
+
+        assertThat(count).isEqualTo(2);
+        List<Member> copied = queryFactory
+                .selectFrom(member)
+                .where(member.team.name.eq("teamB"))
+                .orderBy(member.username.asc())
+                .fetch();
+        assertThat(copied).extracting(Member::getUsername).containsExactly("member1", "member2");
+        assertThat(copied).extracting(Member::getAgeBucket).containsExactly("0~20살", "21~30살");
+        assertThat(teamStatsRepository.findByTeamName("teamB").getMemberCount()).isEqualTo(2);
+
+        // 시퀀스로 받은 id는 이후 em.persist()가 할당하는 id와 겹치지 않는다.
+        em.persist(new Member("member3", 30, em.getReference(Team.class, teamB.getId())));
+        em.flush();
+        assertThat(queryFactory.selectFrom(member).fetch()).extracting(Member::getId).doesNotHaveDuplicates();
+    }
+
+    @Test
+    public void columnCountMismatch() {
+        assertThatThrownBy(() -> bulkInsert
+                .insert(member)
+                .columns(member.username, member.age)
+                .select(JPAExpressions.select(member.username).from(member))
+                .execute())
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void notInsertable() {
+        assertThatThrownBy(() -> bulkInsert
+                .insert(member)
+                .columns(member.username, member.ageBucket)
+                .values("member3", "기타")
+                .execute())
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
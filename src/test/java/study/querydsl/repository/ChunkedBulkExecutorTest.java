@@ -0,0 +1,238 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslTest;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.service.MemberBulkImportService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.stream.Collectors.toMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 구간마다 다른 커넥션에서 커밋하므로 데이터를 커밋해두고 테스트가 끝나면 지운다.
+ */
+@QuerydslTest
+class ChunkedBulkExecutorTest {
+
+    static final int MEMBER_COUNT = 20_000;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    ChunkedBulkExecutor chunkedExecutor;
+
+    @Autowired
+    MemberBulkImportService importService;
+
+    @Autowired
+    TeamStatsRepository teamStatsRepository;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before() {
+        importService.importMembers(2, MEMBER_COUNT);
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    /**
+     * bulkUpdate2를 1000개씩 나누어 실행한다.
+     */
+    @Test
+    public void chunkedUpdate() {
+        Map<Long, Integer> before = ages();
+
+        BulkProgress progress = chunkedExecutor.update(member, member.id)
+                .set(member.age, member.age.add(1))
+                .chunkSize(1_000)
+                .execute();
+
+        assertThat(progress.getAffectedRows()).isEqualTo(MEMBER_COUNT);
+        assertThat(progress.getChunks()).isEqualTo(MEMBER_COUNT / 1_000);
+        assertIncrementedOnce(before);
+    }
+
+    /**
+     * 조건에 맞는 행만 지우고, 조건에 맞는 id가 없는 구간은 건너뛴다.
+     */
+    @Test
+    public void chunkedDelete() {
+        Long maxId = queryFactory.select(member.id.max()).from(member).fetchOne();
+
+        BulkProgress progress = chunkedExecutor.delete(member, member.id)
+                .where(member.age.lt(50).or(member.id.eq(maxId)))
+                .chunkSize(1_000)
+                .execute();
+
+        assertThat(progress.getAffectedRows()).isEqualTo(MEMBER_COUNT / 2 + 1);
+        assertThat(progress.getLastId()).isEqualTo(maxId);
+        assertThat(queryFactory.select(member.count()).from(member).fetchOne()).isEqualTo(MEMBER_COUNT / 2 - 1);
+        assertThat(queryFactory.select(member.count()).from(member).where(member.age.lt(50)).fetchOne()).isZero();
+    }
+
+    /**
+     * where를 여러 번 부르면 모든 조건에 맞는 행만 지운다.
+     */
+    @Test
+    public void chainedWhere() {
+        BulkProgress progress = chunkedExecutor.delete(member, member.id)
+                .where(member.age.lt(50))
+                .where(member.age.goe(40))
+                .chunkSize(1_000)
+                .execute();
+
+        assertThat(progress.getAffectedRows()).isEqualTo(MEMBER_COUNT / 10);
+        assertThat(queryFactory.select(member.count()).from(member).fetchOne()).isEqualTo(MEMBER_COUNT * 9 / 10);
+    }
+
+    /**
+     * 구간마다 리스너에 알리므로 rebuildAll() 없이 team_stats가 맞는다.
+     */
+    @Test
+    public void chunkedUpdateKeepsTeamStats() {
+        chunkedExecutor.update(member, member.id)
+                .set(member.age, member.age.add(1))
+                .where(member.age.lt(50))
+                .chunkSize(1_000)
+                .execute();
+
+        assertTeamStatsConsistent();
+    }
+
+    @Test
+    public void chunkedDeleteKeepsTeamStats() {
+        chunkedExecutor.delete(member, member.id)
+                .where(member.age.lt(50))
+                .chunkSize(1_000)
+                .execute();
+
+        assertTeamStatsConsistent();
+    }
+
+    /**
+     * 중간에 실패해도 마지막으로 받은 진행 상황부터 이어서 실행하면 모든 행이 한 번씩만 수정된다.
+     */
+    @Test
+    public void resume() {
+        Map<Long, Integer> before = ages();
+        AtomicReference<BulkProgress> saved = new AtomicReference<>();
+
+        assertThatThrownBy(() -> chunkedExecutor.update(member, member.id)
+                .set(member.age, member.age.add(1))
+                .chunkSize(1_000)
+                .onChunk(progress -> {
+                    saved.set(progress);
+                    if (progress.getChunks() == 3) {
+                        throw new IllegalStateException("중단");
+                    }
+                })
+                .execute())
+                .hasMessage("중단");
+        assertThat(saved.get().getAffectedRows()).isEqualTo(3_000);
+
+        BulkProgress progress = chunkedExecutor.update(member, member.id)
+                .set(member.age, member.age.add(1))
+                .chunkSize(1_000)
+                .resumeFrom(saved.get())
+                .execute();
+
+        assertThat(progress.getAffectedRows()).isEqualTo(MEMBER_COUNT);
+        assertThat(progress.getChunks()).isEqualTo(MEMBER_COUNT / 1_000);
+        assertIncrementedOnce(before);
+    }
+
+    /**
+     * 실행 중에도 다른 트랜잭션이 커밋된 구간을 읽고, 이미 처리된 행을 바로 수정할 수 있다.
+     * (한 번에 실행하면 전체가 끝날 때까지 모든 행의 잠금을 들고 있는다.)
+     */
+    @Test
+    public void concurrentTransactionsNotBlocked() throws Exception {
+        Long firstId = queryFactory.select(member.id.min()).from(member).fetchOne();
+        CountDownLatch firstChunk = new CountDownLatch(1);
+
+        CompletableFuture<BulkProgress> running = CompletableFuture.supplyAsync(() -> chunkedExecutor
+                .update(member, member.id)
+                .set(member.username, "bulk")
+                .chunkSize(1_000)
+                .pause(Duration.ofMillis(50))
+                .onChunk(progress -> firstChunk.countDown())
+                .execute());
+        assertThat(firstChunk.await(10, TimeUnit.SECONDS)).isTrue();
+
+        long updated = queryFactory.select(member.count()).from(member).where(member.username.eq("bulk")).fetchOne();
+        long start = System.nanoTime();
+        tx.executeWithoutResult(status -> queryFactory
+                .update(member)
+                .set(member.username, "writer")
+                .where(member.id.eq(firstId))
+                .execute());
+        long writeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(running).isNotDone();
+        assertThat(updated).isBetween(1_000L, MEMBER_COUNT - 1L);
+        assertThat(writeMillis).isLessThan(500);
+
+        assertThat(running.get(30, TimeUnit.SECONDS).getAffectedRows()).isEqualTo(MEMBER_COUNT);
+        assertThat(queryFactory.select(member.username).from(member).where(member.id.eq(firstId)).fetchOne())
+                .isEqualTo("writer");
+    }
+
+    private void assertTeamStatsConsistent() {
+        List<Tuple> live = queryFactory
+                .select(team.name, member.count(), member.age.sum(), member.age.min(), member.age.max())
+                .from(member)
+                .join(member.team, team)
+                .groupBy(team.name)
+                .orderBy(team.name.asc())
+                .fetch();
+        List<TeamStatsDto> stats = teamStatsRepository.findAll();
+
+        assertThat(stats).hasSameSizeAs(live);
+        for (int i = 0; i < live.size(); i++) {
+            Tuple expected = live.get(i);
+            TeamStatsDto actual = stats.get(i);
+            assertThat(actual.getTeamName()).isEqualTo(expected.get(team.name));
+            assertThat(actual.getMemberCount()).isEqualTo(expected.get(member.count()));
+            assertThat(actual.getAgeSum()).isEqualTo(expected.get(2, Number.class).longValue());
+            assertThat(actual.getMinAge()).isEqualTo(expected.get(member.age.min()));
+            assertThat(actual.getMaxAge()).isEqualTo(expected.get(member.age.max()));
+        }
+    }
+
+    private Map<Long, Integer> ages() {
+        List<Tuple> rows = queryFactory.select(member.id, member.age).from(member).fetch();
+        return rows.stream().collect(toMap(row -> row.get(member.id), row -> row.get(member.age)));
+    }
+
+    private void assertIncrementedOnce(Map<Long, Integer> before) {
+        Map<Long, Integer> after = ages();
+        assertThat(after).hasSameSizeAs(before);
+        before.forEach((id, age) -> assertThat(after.get(id)).as("id=%d", id).isEqualTo(age + 1));
+    }
+}
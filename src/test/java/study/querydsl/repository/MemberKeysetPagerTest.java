@@ -0,0 +1,121 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.QuerydslTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+@QuerydslTest
+@Transactional
+class MemberKeysetPagerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    MemberKeysetPager pager;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        // 정렬 키가 같은 회원, 정렬 키가 null인 회원
+        em.persist(new Member("member4", 40));
+        em.persist(new Member("member5", 20));
+        em.persist(new Member(null, 100));
+        em.persist(new Member(null, 100));
+    }
+
+    /**
+     * paging1과 같은 정렬(username desc)로 끝까지 넘겨본 결과가
+     * offset 페이징으로 한 번에 조회한 결과와 같아야 한다.
+     */
+    @Test
+    public void usernameDesc() {
+        assertSameAsOffsetPaging(3, member.username.desc());
+    }
+
+    /**
+     * 나이가 같은 회원이 여러 명이어도 id가 tie-breaker가 되어 누락/중복이 없어야 한다.
+     */
+    @Test
+    public void ageDescUsernameAsc() {
+        assertSameAsOffsetPaging(2, member.age.desc(), member.username.asc());
+    }
+
+    @Test
+    public void withCondition() {
+        KeysetPage<Member> first = pager.fetchPage(member.age.goe(20), null, 2, member.age.asc());
+        KeysetPage<Member> second = pager.fetchPage(member.age.goe(20), first.getNextCursor(), 2, member.age.asc());
+
+        assertThat(first.getContent()).extracting("age").containsExactly(20, 20);
+        assertThat(second.getContent()).extracting("age").containsExactly(30, 40);
+        assertThat(second.hasNext()).isTrue();
+    }
+
+    @Test
+    public void lastPage() {
+        KeysetPage<Member> page = pager.fetchPage(null, null, 100, member.username.desc());
+
+        assertThat(page.getContent()).hasSize(8);
+        assertThat(page.hasNext()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void invalidCursor() {
+        String cursor = pager.fetchPage(null, null, 2, member.username.desc()).getNextCursor();
+
+        // 정렬 조건이 바뀌면 커서를 재사용할 수 없다.
+        assertThatThrownBy(() -> pager.fetchPage(null, cursor, 2, member.age.desc(), member.username.asc()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> pager.fetchPage(null, "not-a-cursor", 2, member.username.desc()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void assertSameAsOffsetPaging(int size, OrderSpecifier<?>... orders) {
+        List<OrderSpecifier<?>> expectedOrders = new ArrayList<>();
+        for (OrderSpecifier<?> order : orders) {
+            expectedOrders.add(order.nullsLast());
+        }
+        expectedOrders.add(member.id.asc());
+        List<Member> expected = queryFactory
+                .selectFrom(member)
+                .orderBy(expectedOrders.toArray(new OrderSpecifier<?>[0]))
+                .fetch();
+
+        List<Member> actual = new ArrayList<>();
+        String cursor = null;
+        do {
+            KeysetPage<Member> page = pager.fetchPage(null, cursor, size, orders);
+            assertThat(page.getContent().size()).isLessThanOrEqualTo(size);
+            actual.addAll(page.getContent());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(actual).containsExactlyElementsOf(expected);
+    }
+}
@@ -0,0 +1,124 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+import study.querydsl.QuerydslTest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@QuerydslTest
+@Transactional
+class MemberSearchRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    MemberSearchRepository memberSearchRepository;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+    }
+
+    @Test
+    public void search() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(35);
+        condition.setAgeLoe(40);
+        condition.setTeamName("teamB");
+
+        List<MemberTeamDto> result = memberSearchRepository.search(condition);
+
+        assertThat(result).extracting("username").containsExactly("member4");
+        assertThat(result).extracting("teamName").containsExactly("teamB");
+    }
+
+    /**
+     * 조건 16가지 조합 모두 BooleanBuilder로 만든 쿼리와 결과가 같다.
+     */
+    @Test
+    public void sameAsBooleanBuilder() {
+        for (int present = 0; present < 16; present++) {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setUsername((present & 1) != 0 ? "member2" : null);
+            condition.setTeamName((present & 2) != 0 ? "teamA" : "");
+            condition.setAgeGoe((present & 4) != 0 ? 15 : null);
+            condition.setAgeLoe((present & 8) != 0 ? 30 : null);
+
+            assertThat(memberSearchRepository.search(condition))
+                    .as("present=%d", present)
+                    .isEqualTo(searchBooleanBuilder(condition));
+        }
+    }
+
+    /**
+     * 값이 달라도 있는 조건이 같으면 같은 JPQL을 쓰고, 빈 조건은 where에 나오지 않는다.
+     */
+    @Test
+    public void jpqlPerCombination() {
+        MemberSearchCondition first = new MemberSearchCondition();
+        first.setUsername("member1");
+        first.setAgeGoe(10);
+        MemberSearchCondition second = new MemberSearchCondition();
+        second.setUsername("member3");
+        second.setAgeGoe(30);
+        second.setTeamName("");
+
+        assertThat(memberSearchRepository.jpql(second)).isSameAs(memberSearchRepository.jpql(first));
+        assertThat(memberSearchRepository.jpql(first))
+                .contains("member1.username = ?1")
+                .contains("member1.age >= ?2")
+                .doesNotContain("team.name =");
+        assertThat(memberSearchRepository.jpql(new MemberSearchCondition())).doesNotContain("where");
+    }
+
+    private List<MemberTeamDto> searchBooleanBuilder(MemberSearchCondition condition) {
+        BooleanBuilder builder = new BooleanBuilder();
+        if (StringUtils.hasText(condition.getUsername())) {
+            builder.and(member.username.eq(condition.getUsername()));
+        }
+        if (StringUtils.hasText(condition.getTeamName())) {
+            builder.and(team.name.eq(condition.getTeamName()));
+        }
+        if (condition.getAgeGoe() != null) {
+            builder.and(member.age.goe(condition.getAgeGoe()));
+        }
+        if (condition.getAgeLoe() != null) {
+            builder.and(member.age.loe(condition.getAgeLoe()));
+        }
+        return queryFactory
+                .select(new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(builder)
+                .orderBy(member.id.asc())
+                .fetch();
+    }
+}
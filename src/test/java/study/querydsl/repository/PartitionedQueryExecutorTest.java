@@ -0,0 +1,166 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslTest;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.entity.Member;
+import study.querydsl.service.MemberBulkImportService;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 구간마다 다른 커넥션에서 읽으므로 데이터를 커밋해두고 테스트가 끝나면 지운다.
+ */
+@QuerydslTest
+class PartitionedQueryExecutorTest {
+
+    static final int PARTITIONS = 3;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    PartitionedQueryExecutor partitionedExecutor;
+
+    @Autowired
+    MemberBulkImportService importService;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before() {
+        importService.importMembers(2, 1_000);
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    /**
+     * orderBy가 없으면 id 순으로 이어붙인다.
+     */
+    @Test
+    public void entityScan() {
+        Supplier<JPAQuery<Member>> query = () -> queryFactory
+                .selectFrom(member)
+                .where(member.age.goe(50));
+
+        List<Member> result = partitionedExecutor.fetch(query.get(), member.id, PARTITIONS);
+
+        assertThat(result).hasSize(500);
+        assertThat(result).extracting(Member::getId)
+                .isSorted()
+                .containsExactlyInAnyOrderElementsOf(sequential(query).stream().map(Member::getId).collect(toList()));
+    }
+
+    /**
+     * 구간별로 정렬된 결과를 k-way 병합해서 전체 정렬을 유지한다.
+     */
+    @Test
+    public void orderedScan() {
+        Supplier<JPAQuery<Member>> query = () -> queryFactory
+                .selectFrom(member)
+                .where(member.age.goe(50))
+                .orderBy(member.age.desc(), member.id.asc());
+
+        List<Member> result = partitionedExecutor.fetch(query.get(), member.id, PARTITIONS);
+
+        assertThat(result).extracting(Member::getId)
+                .containsExactlyElementsOf(sequential(query).stream().map(Member::getId).collect(toList()));
+    }
+
+    @Test
+    public void tupleWithPaging() {
+        Supplier<JPAQuery<Tuple>> query = () -> queryFactory
+                .select(member.username, member.age)
+                .from(member)
+                .orderBy(member.age.asc(), member.id.desc())
+                .offset(95)
+                .limit(10);
+
+        List<Tuple> result = partitionedExecutor.fetch(query.get(), member.id, PARTITIONS);
+
+        assertThat(result).hasSize(10);
+        assertThat(result).containsExactlyElementsOf(sequential(query));
+    }
+
+    /**
+     * orderBy 없이 limit만 있으면 가장 작은 id부터 자른다.
+     */
+    @Test
+    public void limitWithoutOrderBy() {
+        List<Member> result = partitionedExecutor.fetch(
+                queryFactory.selectFrom(member).limit(10), member.id, PARTITIONS);
+
+        List<Long> expected = queryFactory
+                .select(member.id)
+                .from(member)
+                .orderBy(member.id.asc())
+                .limit(10)
+                .fetch();
+        assertThat(result).extracting(Member::getId).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void memberDto() {
+        Supplier<JPAQuery<MemberDto>> query = () -> queryFactory
+                .select(new QMemberDto(member.username, member.age))
+                .from(member)
+                .where(member.age.lt(10))
+                .orderBy(member.age.desc(), member.id.asc());
+
+        List<MemberDto> result = partitionedExecutor.fetch(query.get(), member.id, PARTITIONS);
+
+        assertThat(result).hasSize(100);
+        assertThat(result).containsExactlyElementsOf(sequential(query));
+    }
+
+    @Test
+    public void empty() {
+        List<Member> result = partitionedExecutor.fetch(
+                queryFactory.selectFrom(member).where(member.age.gt(100)), member.id, PARTITIONS);
+
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    public void distinctNotSupported() {
+        assertThatThrownBy(() -> partitionedExecutor.fetch(
+                queryFactory.select(member.age).distinct().from(member), member.id, PARTITIONS))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * 문자열은 DB 콜레이션과 자바의 순서가 다를 수 있어서 병합할 수 없다.
+     */
+    @Test
+    public void stringOrderNotSupported() {
+        assertThatThrownBy(() -> partitionedExecutor.fetch(
+                queryFactory.selectFrom(member).orderBy(member.username.asc()), member.id, PARTITIONS))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private <T> List<T> sequential(Supplier<JPAQuery<T>> query) {
+        return tx.execute(status -> query.get().fetch());
+    }
+}
@@ -0,0 +1,154 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.QuerydslTest;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@QuerydslTest
+@Transactional
+class QueryPlanCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    QueryPlanCache cache;
+
+    @BeforeEach
+    public void before() {
+        cache = new QueryPlanCache(em, HQLTemplates.DEFAULT, 100);
+
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+    }
+
+    /**
+     * search()와 같은 모양은 값이 달라도 두 번째부터 캐시를 사용한다.
+     */
+    @Test
+    public void search() {
+        Member first = cache.fetchOne(search("member1", 10));
+        Member second = cache.fetchOne(search("member2", 20));
+        Member none = cache.fetchOne(search("member2", 10));
+
+        assertThat(first.getUsername()).isEqualTo("member1");
+        assertThat(second.getUsername()).isEqualTo("member2");
+        assertThat(none).isNull();
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    /**
+     * 동적쿼리_WhereParam 모양, null 조건이 빠지면 다른 모양이 된다.
+     */
+    @Test
+    public void whereParam() {
+        assertThat(cache.fetch(searchMember2("member1", 10))).extracting("username").containsExactly("member1");
+        assertThat(cache.fetch(searchMember2("member3", 30))).extracting("username").containsExactly("member3");
+        assertThat(cache.fetch(searchMember2(null, 40))).extracting("username").containsExactly("member4");
+
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    /**
+     * 값이 같은 상수는 하나의 파라미터로 합쳐지므로, 값이 같은지 여부가 다르면 다른 모양으로 본다.
+     */
+    @Test
+    public void sameValueConstants() {
+        List<Member> same = cache.fetch(queryFactory.selectFrom(member)
+                .where(member.age.goe(20), member.age.loe(20)));
+        List<Member> different = cache.fetch(queryFactory.selectFrom(member)
+                .where(member.age.goe(20), member.age.loe(30)));
+
+        assertThat(same).extracting("age").containsExactly(20);
+        assertThat(different).extracting("age").containsExactlyInAnyOrder(20, 30);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    /**
+     * like 패턴처럼 직렬화 중에 값이 바뀌는 상수가 있으면 캐시하지 않는다.
+     */
+    @Test
+    public void uncacheable() {
+        List<Member> first = cache.fetch(queryFactory.selectFrom(member).where(member.username.startsWith("member1")));
+        List<Member> second = cache.fetch(queryFactory.selectFrom(member).where(member.username.startsWith("member2")));
+
+        assertThat(first).extracting("username").containsExactly("member1");
+        assertThat(second).extracting("username").containsExactly("member2");
+        assertThat(cache.getUncacheableCount()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void projections() {
+        List<Tuple> tuples = cache.fetch(queryFactory
+                .select(team.name, member.age.avg())
+                .from(member)
+                .join(member.team, team)
+                .where(member.age.gt(0))
+                .groupBy(team.name)
+                .orderBy(team.name.asc()));
+        List<MemberDto> dtos = cache.fetch(queryFactory
+                .select(new QMemberDto(member.username, member.age))
+                .from(member)
+                .orderBy(member.age.desc())
+                .offset(1)
+                .limit(2));
+
+        assertThat(tuples.get(0).get(team.name)).isEqualTo("teamA");
+        assertThat(tuples.get(0).get(member.age.avg())).isEqualTo(15.0);
+        assertThat(dtos).extracting("username").containsExactly("member3", "member2");
+    }
+
+    private JPAQuery<Member> search(String username, int age) {
+        return queryFactory
+                .selectFrom(member)
+                .where(member.username.eq(username).and(member.age.eq(age)));
+    }
+
+    private JPAQuery<Member> searchMember2(String usernameCond, Integer ageCond) {
+        return queryFactory
+                .selectFrom(member)
+                .where(nullSafeBuilder(() -> member.username.eq(usernameCond))
+                        .and(nullSafeBuilder(() -> member.age.eq(ageCond))));
+    }
+
+    private static BooleanBuilder nullSafeBuilder(Supplier<BooleanExpression> f) {
+        try {
+            return new BooleanBuilder(f.get());
+        } catch (IllegalArgumentException e) {
+            return new BooleanBuilder();
+        }
+    }
+}
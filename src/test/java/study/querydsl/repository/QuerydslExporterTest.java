@@ -0,0 +1,204 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.QuerydslTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.service.MemberBulkImportService;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@QuerydslTest
+@Transactional
+class QuerydslExporterTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    QuerydslExporter exporter;
+
+    @Autowired
+    MemberBulkImportService importService;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    public void before() {
+        importService.importMembers(10, 1_000);
+    }
+
+    /**
+     * tupleProjection 결과를 문자열로 바꾼 것과 같은 CSV
+     */
+    @Test
+    public void csv() throws IOException {
+        JPAQuery<Tuple> query = queryFactory
+                .select(member.username, member.age)
+                .from(member)
+                .orderBy(member.id.asc());
+        Path file = dir.resolve("members.csv");
+
+        ExportResult result = exporter.exportCsv(query, file);
+
+        List<String> expected = new ArrayList<>();
+        expected.add("username,age");
+        for (Tuple tuple : query.fetch()) {
+            expected.add(tuple.get(member.username) + "," + tuple.get(member.age));
+        }
+        assertThat(result.getRows()).isEqualTo(1_000);
+        assertThat(result.getBytes()).isEqualTo(Files.size(file));
+        assertThat(Files.readAllLines(file, StandardCharsets.UTF_8)).isEqualTo(expected);
+    }
+
+    @Test
+    public void csvQuotingAndNull() throws IOException {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("김,\"회원\"", 30, teamA));
+        em.persist(new Member(null, 31, teamA));
+        Path file = dir.resolve("quoted.csv");
+
+        exporter.exportCsv(queryFactory
+                .select(member.username, member.age, team.name)
+                .from(member)
+                .join(member.team, team)
+                .where(team.name.eq("teamA"))
+                .orderBy(member.age.asc()), file);
+
+        assertThat(Files.readAllLines(file, StandardCharsets.UTF_8)).containsExactly(
+                "username,age,name",
+                "\"김,\"\"회원\"\"\",30,teamA",
+                ",31,teamA");
+    }
+
+    @Test
+    public void columnar() throws IOException {
+        JPAQuery<Tuple> query = queryFactory
+                .select(member.username, member.age, member.id)
+                .from(member)
+                .where(member.age.goe(50))
+                .orderBy(member.id.asc());
+        Path file = dir.resolve("members.col");
+
+        ExportResult result = exporter.exportColumnar(query, file);
+
+        List<Object[]> expected = query.fetch().stream()
+                .map(Tuple::toArray)
+                .collect(Collectors.toList());
+        assertThat(result.getRows()).isEqualTo(expected.size());
+        assertThat(readColumnar(file)).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void offsetAndLimit() throws IOException {
+        Path file = dir.resolve("page.csv");
+
+        ExportResult result = exporter.exportCsv(queryFactory
+                .select(member.username)
+                .from(member)
+                .orderBy(member.id.asc())
+                .offset(10)
+                .limit(5), file);
+
+        assertThat(result.getRows()).isEqualTo(5);
+        assertThat(Files.readAllLines(file)).containsExactly("username",
+                "member10", "member11", "member12", "member13", "member14");
+    }
+
+    @Test
+    public void entityProjection() {
+        assertThatThrownBy(() -> exporter.exportCsv(queryFactory.selectFrom(member), dir.resolve("entity.csv")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * ColumnarExportWriter의 형식대로 읽는다.
+     */
+    private static List<Object[]> readColumnar(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[ColumnarExportWriter.MAGIC.length];
+        buffer.get(magic);
+        assertThat(magic).isEqualTo(ColumnarExportWriter.MAGIC);
+
+        int columnCount = buffer.getInt();
+        ExportWriter.ColumnType[] types = new ExportWriter.ColumnType[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            byte code = buffer.get();
+            types[i] = Arrays.stream(ExportWriter.ColumnType.values())
+                    .filter(type -> type.code == code)
+                    .findFirst()
+                    .orElseThrow();
+            buffer.position(buffer.position() + buffer.getInt());
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int count = buffer.getInt(); count > 0; count = buffer.getInt()) {
+            Object[][] batch = new Object[count][columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                byte[] validity = new byte[(count + 7) / 8];
+                buffer.get(validity);
+                int[] offsets = null;
+                if (types[c] == ExportWriter.ColumnType.STRING) {
+                    offsets = new int[count + 1];
+                    buffer.asIntBuffer().get(offsets);
+                    buffer.position(buffer.position() + offsets.length * 4);
+                }
+                int dataStart = buffer.position();
+                for (int r = 0; r < count; r++) {
+                    boolean present = (validity[r >>> 3] & 1 << (r & 7)) != 0;
+                    Object value;
+                    switch (types[c]) {
+                        case INT:
+                            value = buffer.getInt();
+                            break;
+                        case LONG:
+                            value = buffer.getLong();
+                            break;
+                        case DOUBLE:
+                            value = buffer.getDouble();
+                            break;
+                        case BOOLEAN:
+                            value = buffer.get() != 0;
+                            break;
+                        default:
+                            value = new String(buffer.array(), dataStart + offsets[r], offsets[r + 1] - offsets[r],
+                                    StandardCharsets.UTF_8);
+                    }
+                    batch[r][c] = present ? value : null;
+                }
+                if (offsets != null) {
+                    buffer.position(dataStart + offsets[count]);
+                }
+            }
+            rows.addAll(Arrays.asList(batch));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,173 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 비동기 count는 다른 커넥션에서 실행되므로 데이터를 커밋해두고 테스트가 끝나면 지운다.
+ */
+@QuerydslTest
+class QuerydslPagerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    QuerydslPager pager;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    Statistics statistics;
+
+    @BeforeEach
+    public void before() {
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, teamB));
+            em.persist(new Member("member4", 40, teamB));
+        });
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            queryFactory.delete(member).execute();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    /**
+     * paging2와 같은 조건, 내용이 limit만큼 꽉 차면 count 쿼리가 필요하다.
+     */
+    @Test
+    public void fullPageNeedsCount() {
+        Page<Member> page = tx.execute(status -> pager.fetchPage(
+                queryFactory.selectFrom(member).orderBy(member.username.desc()),
+                PageRequest.of(0, 2)));
+
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(page.getContent()).extracting("username").containsExactly("member4", "member3");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    /**
+     * 마지막 페이지가 limit보다 짧으면 count 쿼리를 생략한다.
+     */
+    @Test
+    public void lastPageSkipsCount() {
+        Page<Member> page = tx.execute(status -> pager.fetchPage(
+                queryFactory.selectFrom(member).orderBy(member.username.desc()),
+                PageRequest.of(1, 3)));
+
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(page.getContent()).extracting("username").containsExactly("member1");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void asyncCount() {
+        AsyncPage<Member> page = tx.execute(status -> pager.fetchPageAsync(
+                queryFactory.selectFrom(member).where(member.age.goe(20)).orderBy(member.age.asc()),
+                PageRequest.of(0, 2)));
+
+        assertThat(page.getContent()).extracting("age").containsExactly(20, 30);
+        assertThat(page.getTotal().join()).isEqualTo(3);
+        assertThat(page.toPage().getTotalPages()).isEqualTo(2);
+    }
+
+    /**
+     * where 다중 파라미터와 BooleanBuilder로 만든 같은 조건은 캐시된 count를 공유한다.
+     */
+    @Test
+    public void countCache() {
+        QuerydslPager cachingPager = new QuerydslPager(emf, Runnable::run, Duration.ofMinutes(1));
+
+        tx.executeWithoutResult(status -> {
+            Page<Member> first = cachingPager.fetchPage(
+                    queryFactory.selectFrom(member).where(member.username.startsWith("member"), member.age.goe(10)),
+                    PageRequest.of(0, 2));
+            Page<Member> second = cachingPager.fetchPage(
+                    queryFactory.selectFrom(member).where(
+                            new BooleanBuilder(member.username.startsWith("member")).and(member.age.goe(10))),
+                    PageRequest.of(0, 2));
+
+            assertThat(first.getTotalElements()).isEqualTo(4);
+            assertThat(second.getTotalElements()).isEqualTo(4);
+        });
+        // 내용 조회 2번 + count 1번
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+    }
+
+    /**
+     * 같은 조건이라도 distinct count는 따로 캐시한다.
+     */
+    @Test
+    public void countCacheDistinct() {
+        QuerydslPager cachingPager = new QuerydslPager(emf, Runnable::run, Duration.ofMinutes(1));
+
+        tx.executeWithoutResult(status -> {
+            Page<Long> all = cachingPager.fetchPage(
+                    queryFactory.select(member.team.id).from(member).where(member.age.goe(10)),
+                    PageRequest.of(0, 1));
+            Page<Long> distinct = cachingPager.fetchPage(
+                    queryFactory.select(member.team.id).distinct().from(member).where(member.age.goe(10)),
+                    PageRequest.of(0, 1));
+
+            assertThat(all.getTotalElements()).isEqualTo(4);
+            assertThat(distinct.getTotalElements()).isEqualTo(2);
+        });
+    }
+
+    /**
+     * 가득 차면 만료되지 않은 count를 밀어내지 않고 새 count를 캐시하지 않는다.
+     */
+    @Test
+    public void countCacheMaxEntries() {
+        QuerydslPager cachingPager = new QuerydslPager(emf, Runnable::run, Duration.ofMinutes(1), 1);
+
+        tx.executeWithoutResult(status -> {
+            cachingPager.fetchPage(queryFactory.selectFrom(member).where(member.age.goe(10)), PageRequest.of(0, 2));
+            cachingPager.fetchPage(queryFactory.selectFrom(member).where(member.age.goe(20)), PageRequest.of(0, 2));
+            Page<Member> page = cachingPager.fetchPage(
+                    queryFactory.selectFrom(member).where(member.age.goe(20)), PageRequest.of(0, 2));
+
+            assertThat(page.getTotalElements()).isEqualTo(3);
+        });
+        // 내용 조회 3번 + count 3번
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(6);
+    }
+}
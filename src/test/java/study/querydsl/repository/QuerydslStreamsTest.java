@@ -0,0 +1,112 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.QuerydslTest;
+import study.querydsl.entity.Member;
+import study.querydsl.service.MemberBulkImportService;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 수는 -PstreamTestMembers 로 바꿀 수 있다.
+ * ex) ./gradlew test --tests '*QuerydslStreamsTest' -PstreamTestMembers=1000000 -PtestMaxHeap=64m
+ */
+@QuerydslTest
+@Transactional
+class QuerydslStreamsTest {
+
+    private static final int CLEAR_INTERVAL = 500;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    QuerydslStreams streams;
+
+    @Autowired
+    MemberBulkImportService importService;
+
+    int memberCount;
+
+    @BeforeEach
+    public void before() {
+        memberCount = Integer.getInteger("stream.test.members", 10_000);
+        importService.importMembers(10, memberCount);
+    }
+
+    /**
+     * 끝까지 흘려보내는 동안 영속성 컨텍스트에는 clearInterval 이하의 엔티티만 남아 있어야 한다.
+     */
+    @Test
+    public void streamEntities() {
+        Session session = em.unwrap(Session.class);
+        AtomicInteger maxManaged = new AtomicInteger();
+        long count;
+        try (Stream<Member> result = streams.stream(queryFactory.selectFrom(member), 100, CLEAR_INTERVAL)) {
+            count = result
+                    .peek(m -> maxManaged.accumulateAndGet(session.getStatistics().getEntityCount(), Math::max))
+                    .count();
+        }
+
+        assertThat(count).isEqualTo(memberCount);
+        assertThat(maxManaged.get()).isLessThanOrEqualTo(CLEAR_INTERVAL);
+    }
+
+    /**
+     * 흘려보내기 전에 바꿔둔 엔티티는 clear 되기 전에 flush 되므로 변경이 사라지지 않는다.
+     */
+    @Test
+    public void dirtyEntitySurvivesClear() {
+        Member dirty = queryFactory.selectFrom(member).where(member.username.eq("member1")).fetchOne();
+        dirty.setAge(999);
+
+        long count;
+        try (Stream<Member> result = streams.stream(queryFactory.selectFrom(member), 100, CLEAR_INTERVAL)) {
+            count = result.count();
+        }
+
+        assertThat(count).isGreaterThan(CLEAR_INTERVAL);
+        Integer age = queryFactory.select(member.age).from(member).where(member.id.eq(dirty.getId())).fetchOne();
+        assertThat(age).isEqualTo(999);
+    }
+
+    /**
+     * tupleProjection과 같은 튜플 조회도 흘려보낼 수 있다.
+     */
+    @Test
+    public void streamTuples() {
+        AtomicLong ageSum = new AtomicLong();
+        try (Stream<Tuple> result = streams.stream(
+                queryFactory.select(member.username, member.age).from(member).where(member.age.lt(10)))) {
+            result.forEach(tuple -> {
+                assertThat(tuple.get(member.username)).startsWith("member");
+                ageSum.addAndGet(tuple.get(member.age));
+            });
+        }
+
+        long expected = queryFactory
+                .select(member.age)
+                .from(member)
+                .where(member.age.lt(10))
+                .fetch()
+                .stream()
+                .mapToLong(Integer::longValue)
+                .sum();
+        assertThat(ageSum.get()).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,199 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.QuerydslTest;
+import study.querydsl.dto.UserDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.repository.SubQueryOptimizer.Kind.COLUMN;
+import static study.querydsl.repository.SubQueryOptimizer.Kind.GROUPED_JOIN;
+import static study.querydsl.repository.SubQueryOptimizer.Kind.HOISTED;
+
+@QuerydslTest
+@Transactional
+class SubQueryOptimizerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    SubQueryOptimizer optimizer;
+
+    QMember memberSub = new QMember("memberSub");
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50));
+    }
+
+    /**
+     * selectSubQuery: 전체 평균 나이는 한 번만 구한다.
+     */
+    @Test
+    public void selectSubQuery() {
+        Supplier<JPAQuery<Tuple>> query = () -> queryFactory
+                .select(member.username,
+                        JPAExpressions
+                                .select(memberSub.age.avg())
+                                .from(memberSub))
+                .from(member)
+                .orderBy(member.username.asc());
+
+        assertThat(kinds(query.get())).containsExactly(COLUMN, HOISTED);
+        List<Tuple> result = optimizer.fetch(query.get());
+        assertThat(result).containsExactlyElementsOf(query.get().fetch());
+        assertThat(result.get(0).get(JPAExpressions.select(memberSub.age.avg()).from(memberSub))).isEqualTo(30);
+    }
+
+    @Test
+    public void findUserDtoByField() {
+        Supplier<JPAQuery<UserDto>> query = () -> queryFactory
+                .select(Projections.fields(UserDto.class,
+                        member.username.as("name"),
+                        ExpressionUtils.as(
+                                JPAExpressions
+                                        .select(memberSub.age.max())
+                                        .from(memberSub), "age")))
+                .from(member)
+                .orderBy(member.username.asc());
+
+        assertThat(kinds(query.get())).containsExactly(COLUMN, HOISTED);
+        assertThat(optimizer.fetch(query.get()))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(query.get().fetch());
+    }
+
+    /**
+     * 팀별 최대 나이는 팀으로 groupBy 한 결과와 조인한다. 팀이 없는 회원은 null이다.
+     */
+    @Test
+    public void correlatedMax() {
+        Supplier<JPAQuery<Tuple>> query = () -> queryFactory
+                .select(member.username,
+                        JPAExpressions
+                                .select(memberSub.age.max())
+                                .from(memberSub)
+                                .where(memberSub.team.eq(member.team)))
+                .from(member)
+                .orderBy(member.username.asc());
+
+        assertThat(kinds(query.get())).containsExactly(COLUMN, GROUPED_JOIN);
+        List<Tuple> result = optimizer.fetch(query.get());
+        assertThat(result).containsExactlyElementsOf(query.get().fetch());
+        assertThat(result).extracting(tuple -> tuple.get(1, Integer.class))
+                .containsExactly(20, 20, 40, 40, null);
+    }
+
+    /**
+     * 짝이 없는 count는 서브쿼리와 같이 0이다.
+     */
+    @Test
+    public void correlatedCountWithFilter() {
+        Supplier<JPAQuery<Tuple>> query = () -> queryFactory
+                .select(member.username,
+                        JPAExpressions
+                                .select(memberSub.count())
+                                .from(memberSub)
+                                .where(memberSub.team.eq(member.team), memberSub.age.goe(20)))
+                .from(member)
+                .orderBy(member.username.asc());
+
+        assertThat(kinds(query.get())).containsExactly(COLUMN, GROUPED_JOIN);
+        List<Tuple> result = optimizer.fetch(query.get());
+        assertThat(result).containsExactlyElementsOf(query.get().fetch());
+        assertThat(result).extracting(tuple -> tuple.get(1, Long.class))
+                .containsExactly(1L, 1L, 2L, 2L, 0L);
+    }
+
+    /**
+     * 동등 조건이 아닌 상관 서브쿼리는 바꾸지 않는다.
+     */
+    @Test
+    public void nonEquiCorrelation() {
+        Supplier<JPAQuery<Tuple>> query = () -> queryFactory
+                .select(member.username,
+                        JPAExpressions
+                                .select(memberSub.count())
+                                .from(memberSub)
+                                .where(memberSub.age.gt(member.age)))
+                .from(member)
+                .orderBy(member.username.asc());
+
+        assertThat(kinds(query.get())).containsExactly(COLUMN, COLUMN);
+        assertThat(optimizer.fetch(query.get())).containsExactlyElementsOf(query.get().fetch());
+    }
+
+    /**
+     * 문자열 키는 콜레이션에 따라 SQL과 equals의 비교 결과가 다를 수 있으므로 바꾸지 않는다.
+     */
+    @Test
+    public void textCorrelation() {
+        Supplier<JPAQuery<Tuple>> query = () -> queryFactory
+                .select(member.username,
+                        JPAExpressions
+                                .select(memberSub.age.max())
+                                .from(memberSub)
+                                .where(memberSub.team.name.eq(member.team.name)))
+                .from(member)
+                .orderBy(member.username.asc());
+
+        assertThat(kinds(query.get())).containsExactly(COLUMN, COLUMN);
+        assertThat(optimizer.fetch(query.get())).containsExactlyElementsOf(query.get().fetch());
+    }
+
+    /**
+     * 페이징하면 상관 서브쿼리는 그대로 두고, 상관없는 서브쿼리만 미리 구한다.
+     */
+    @Test
+    public void paged() {
+        Supplier<JPAQuery<Tuple>> query = () -> queryFactory
+                .select(member.username,
+                        JPAExpressions
+                                .select(memberSub.age.max())
+                                .from(memberSub)
+                                .where(memberSub.team.eq(member.team)),
+                        JPAExpressions
+                                .select(memberSub.age.min())
+                                .from(memberSub))
+                .from(member)
+                .orderBy(member.username.asc())
+                .offset(1)
+                .limit(2);
+
+        assertThat(kinds(query.get())).containsExactly(COLUMN, COLUMN, HOISTED);
+        assertThat(optimizer.fetch(query.get())).containsExactlyElementsOf(query.get().fetch());
+    }
+
+    private List<SubQueryOptimizer.Kind> kinds(JPAQuery<?> query) {
+        return optimizer.analyze(query.getMetadata()).kinds();
+    }
+}
@@ -0,0 +1,173 @@
+package study.querydsl.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.QuerydslTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+@QuerydslTest
+@Transactional
+class SyncingBulkExecutorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    SyncingBulkExecutor bulkExecutor;
+
+    Statistics statistics;
+    Member member1;
+    Member member2;
+    Member member3;
+    Member member4;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        member1 = new Member("member1", 10, teamA);
+        member2 = new Member("member2", 20, teamA);
+        member3 = new Member("member3", 30, teamB);
+        member4 = new Member("member4", 40, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+        em.flush();
+
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    /**
+     * bulkUpdate와 같은 수정, em.clear() 없이도 관리 중인 회원에 바로 반영된다.
+     */
+    @Test
+    public void bulkUpdate() {
+        long count = bulkExecutor
+                .update(member)
+                .set(member.username, "비회원")
+                .where(member.age.lt(28))
+                .execute();
+
+        assertThat(count).isEqualTo(2);
+        assertThat(member1.getUsername()).isEqualTo("비회원");
+        assertThat(member2.getUsername()).isEqualTo("비회원");
+        assertThat(member3.getUsername()).isEqualTo("member3");
+        assertThat(em.find(Member.class, member1.getId())).isSameAs(member1);
+
+        // 스냅샷도 맞췄으므로 flush 해도 update가 나가지 않는다.
+        em.flush();
+        assertThat(statistics.getEntityUpdateCount()).isEqualTo(0);
+    }
+
+    /**
+     * bulkUpdate2와 같이 식으로 수정한 값도 반영된다.
+     */
+    @Test
+    public void bulkUpdate2() {
+        bulkExecutor
+                .update(member)
+                .set(member.age, member.age.add(1))
+                .execute();
+
+        assertThat(member1.getAge()).isEqualTo(11);
+        assertThat(member4.getAge()).isEqualTo(41);
+    }
+
+    /**
+     * where를 여러 번 부르면 모든 조건에 맞는 회원만 수정한다.
+     */
+    @Test
+    public void chainedWhere() {
+        long count = bulkExecutor
+                .update(member)
+                .set(member.username, "비회원")
+                .where(member.age.lt(28))
+                .where(member.age.gt(10))
+                .execute();
+
+        assertThat(count).isEqualTo(1);
+        assertThat(member1.getUsername()).isEqualTo("member1");
+        assertThat(member2.getUsername()).isEqualTo("비회원");
+    }
+
+    /**
+     * 실행 전에 바꿔둔 값은 먼저 flush 되므로 벌크 연산 조건에 반영된다.
+     */
+    @Test
+    public void pendingChangesFlushedFirst() {
+        member3.setAge(25);
+
+        long count = bulkExecutor
+                .update(member)
+                .set(member.username, "비회원")
+                .where(member.age.lt(28))
+                .execute();
+
+        assertThat(count).isEqualTo(3);
+        assertThat(member3.getUsername()).isEqualTo("비회원");
+        assertThat(member3.getAge()).isEqualTo(25);
+    }
+
+    /**
+     * 관리 중이지 않은 회원은 다시 조회하면 바뀐 값이 나온다.
+     */
+    @Test
+    public void detachedMembersReloaded() {
+        em.detach(member1);
+
+        bulkExecutor
+                .update(member)
+                .set(member.username, "비회원")
+                .where(member.age.lt(28))
+                .execute();
+
+        assertThat(em.find(Member.class, member1.getId()).getUsername()).isEqualTo("비회원");
+        assertThat(member2.getUsername()).isEqualTo("비회원");
+    }
+
+    /**
+     * 연관관계를 바꾸면 해당 회원만 detach 해서 다음 조회 때 다시 읽게 한다.
+     */
+    @Test
+    public void associationUpdateDetaches() {
+        bulkExecutor
+                .update(member)
+                .set(member.team, member4.getTeam())
+                .where(member.age.lt(28))
+                .execute();
+
+        assertThat(em.contains(member1)).isFalse();
+        assertThat(em.contains(member3)).isTrue();
+        assertThat(em.find(Member.class, member1.getId()).getTeam().getName()).isEqualTo("teamB");
+    }
+
+    @Test
+    public void delete() {
+        long count = bulkExecutor.delete(member, member.age.gt(25));
+
+        assertThat(count).isEqualTo(2);
+        assertThat(em.contains(member3)).isFalse();
+        assertThat(em.contains(member4)).isFalse();
+        assertThat(em.contains(member1)).isTrue();
+        assertThat(em.find(Member.class, member3.getId())).isNull();
+    }
+}
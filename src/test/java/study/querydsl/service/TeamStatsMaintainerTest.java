@@ -0,0 +1,249 @@
+package study.querydsl.service;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.QuerydslTest;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.SyncingBulkExecutor;
+import study.querydsl.repository.TeamStatsRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@QuerydslTest
+@Transactional
+class TeamStatsMaintainerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    TeamStatsRepository teamStatsRepository;
+
+    @Autowired
+    SyncingBulkExecutor bulkExecutor;
+
+    Team teamA;
+    Team teamB;
+    Member member1;
+    Member member2;
+    Member member3;
+    Member member4;
+
+    @BeforeEach
+    public void before() {
+        teamA = new Team("teamA");
+        teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        member1 = new Member("member1", 10, teamA);
+        member2 = new Member("member2", 20, teamA);
+        member3 = new Member("member3", 30, teamB);
+        member4 = new Member("member4", 40, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+        em.flush();
+    }
+
+    /**
+     * group()과 같은 팀별 평균 나이
+     */
+    @Test
+    public void insert() {
+        TeamStatsDto statsA = teamStatsRepository.findByTeamName("teamA");
+        assertThat(statsA.getMemberCount()).isEqualTo(2);
+        assertThat(statsA.getAgeAvg()).isEqualTo(15);
+        assertThat(statsA.getMinAge()).isEqualTo(10);
+        assertThat(statsA.getMaxAge()).isEqualTo(20);
+
+        assertThat(teamStatsRepository.findByTeamName("teamB").getAgeAvg()).isEqualTo(35);
+        assertConsistent();
+    }
+
+    @Test
+    public void changeTeam() {
+        member2.changeTeam(teamB);
+        em.flush();
+
+        TeamStatsDto statsA = teamStatsRepository.findByTeamName("teamA");
+        assertThat(statsA.getMemberCount()).isEqualTo(1);
+        assertThat(statsA.getMaxAge()).isEqualTo(10);
+        assertThat(teamStatsRepository.findByTeamName("teamB").getMinAge()).isEqualTo(20);
+        assertConsistent();
+    }
+
+    /**
+     * 최소/최대였던 나이가 바뀌면 그 팀의 최소/최대를 다시 구한다.
+     */
+    @Test
+    public void changeAge() {
+        member1.setAge(50);
+        member4.setAge(35);
+        em.flush();
+
+        TeamStatsDto statsA = teamStatsRepository.findByTeamName("teamA");
+        assertThat(statsA.getMinAge()).isEqualTo(20);
+        assertThat(statsA.getMaxAge()).isEqualTo(50);
+        assertThat(teamStatsRepository.findByTeamName("teamB").getMaxAge()).isEqualTo(35);
+        assertConsistent();
+    }
+
+    @Test
+    public void remove() {
+        em.remove(member1);
+        em.remove(member2);
+        em.flush();
+
+        assertThat(teamStatsRepository.findAll())
+                .extracting("teamName")
+                .containsExactly("teamB");
+        assertConsistent();
+    }
+
+    @Test
+    public void newTeam() {
+        Team teamC = new Team("teamC");
+        em.persist(teamC);
+        em.persist(new Member("member5", 5, teamC));
+        member3.changeTeam(teamC);
+        em.flush();
+
+        TeamStatsDto statsC = teamStatsRepository.findByTeamName("teamC");
+        assertThat(statsC.getMemberCount()).isEqualTo(2);
+        assertThat(statsC.getAgeSum()).isEqualTo(35);
+        assertConsistent();
+    }
+
+    /**
+     * bulkAdd와 같은 벌크 수정
+     */
+    @Test
+    public void bulkUpdate() {
+        bulkExecutor
+                .update(member)
+                .set(member.age, member.age.add(1))
+                .where(member.age.gt(15))
+                .execute();
+
+        assertThat(teamStatsRepository.findByTeamName("teamB").getAgeSum()).isEqualTo(72);
+        assertConsistent();
+    }
+
+    /**
+     * SyncingBulkExecutor 없이 queryFactory로 바로 실행한 벌크 수정 (bulkUpdate2)
+     */
+    @Test
+    public void bulkUpdate2() {
+        queryFactory
+                .update(member)
+                .set(member.age, member.age.add(1))
+                .execute();
+
+        assertThat(teamStatsRepository.findByTeamName("teamA").getAgeSum()).isEqualTo(32);
+        assertThat(teamStatsRepository.findByTeamName("teamB").getAgeSum()).isEqualTo(72);
+        assertConsistent();
+    }
+
+    @Test
+    public void queryFactoryDelete() {
+        queryFactory
+                .delete(member)
+                .where(member.age.gt(25))
+                .execute();
+
+        assertThat(teamStatsRepository.findAll())
+                .extracting("teamName")
+                .containsExactly("teamA");
+        assertConsistent();
+    }
+
+    @Test
+    public void bulkMoveTeam() {
+        bulkExecutor
+                .update(member)
+                .set(member.team, teamA)
+                .where(member.age.gt(35))
+                .execute();
+
+        assertThat(teamStatsRepository.findByTeamName("teamA").getMemberCount()).isEqualTo(3);
+        assertConsistent();
+    }
+
+    @Test
+    public void bulkDelete() {
+        bulkExecutor.delete(member, member.age.lt(15));
+
+        assertThat(teamStatsRepository.findByTeamName("teamA").getMemberCount()).isEqualTo(1);
+        assertConsistent();
+    }
+
+    /**
+     * team_stats는 팀마다 한 행이지만 group()처럼 이름으로 묶어서 보여준다.
+     */
+    @Test
+    public void duplicateTeamName() {
+        Team otherA = new Team("teamA");
+        em.persist(otherA);
+        em.persist(new Member("member5", 50, otherA));
+        em.flush();
+
+        TeamStatsDto statsA = teamStatsRepository.findByTeamName("teamA");
+        assertThat(statsA.getMemberCount()).isEqualTo(3);
+        assertThat(statsA.getAgeSum()).isEqualTo(80);
+        assertThat(statsA.getMinAge()).isEqualTo(10);
+        assertThat(statsA.getMaxAge()).isEqualTo(50);
+        assertThat(teamStatsRepository.findAll())
+                .extracting("teamName")
+                .containsExactly("teamA", "teamB");
+        assertConsistent();
+    }
+
+    /**
+     * 회원 테이블을 직접 집계한 결과와 같아야 한다.
+     */
+    private void assertConsistent() {
+        em.flush();
+        List<Tuple> live = queryFactory
+                .select(team.name,
+                        member.count(),
+                        member.age.sum(),
+                        member.age.avg(),
+                        member.age.max(),
+                        member.age.min())
+                .from(member)
+                .join(member.team, team)
+                .groupBy(team.name)
+                .orderBy(team.name.asc())
+                .fetch();
+        List<TeamStatsDto> stats = teamStatsRepository.findAll();
+
+        assertThat(stats).hasSameSizeAs(live);
+        for (int i = 0; i < live.size(); i++) {
+            Tuple expected = live.get(i);
+            TeamStatsDto actual = stats.get(i);
+            assertThat(actual.getTeamName()).isEqualTo(expected.get(team.name));
+            assertThat(actual.getMemberCount()).isEqualTo(expected.get(member.count()));
+            assertThat(actual.getAgeSum()).isEqualTo(expected.get(2, Number.class).longValue());
+            assertThat(actual.getAgeAvg()).isCloseTo(expected.get(member.age.avg()), within(0.0001));
+            assertThat(actual.getMaxAge()).isEqualTo(expected.get(member.age.max()));
+            assertThat(actual.getMinAge()).isEqualTo(expected.get(member.age.min()));
+        }
+    }
+}
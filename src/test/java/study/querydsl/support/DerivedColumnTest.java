@@ -0,0 +1,115 @@
+package study.querydsl.support;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.QuerydslTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.MemberBuckets.AGE_BUCKET;
+import static study.querydsl.entity.MemberBuckets.AGE_RANGE;
+import static study.querydsl.entity.QMember.member;
+
+@QuerydslTest
+@Transactional
+class DerivedColumnTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    DerivedColumnMaintainer maintainer;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    Member member1;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        member1 = new Member("member1", 10, teamA);
+        em.persist(member1);
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 25, teamA));
+        em.persist(new Member("member4", 40, teamA));
+        em.flush();
+    }
+
+    @Test
+    public void ddl() {
+        List<String> ddl = maintainer.ddl(AGE_BUCKET);
+
+        assertThat(ddl.get(1))
+                .startsWith("alter table member add column age_bucket")
+                .contains("generated always as (case when", "age between 0 and 20", "'21~30살'", "else '기타' end");
+        assertThat(ddl.get(2)).isEqualTo("create index idx_member_age_bucket on member (age_bucket)");
+    }
+
+    /**
+     * 시작할 때 만든 age_bucket이 generated column인지 확인했으므로 쿼리에서 바꿔 쓴다.
+     */
+    @Test
+    public void verified() {
+        assertThat(maintainer.getVerifiedColumns()).containsExactly(AGE_BUCKET);
+    }
+
+    /**
+     * complexCase의 CASE 식으로 묶고 거르면 age_bucket 컬럼을 읽고, 결과는 행마다 계산할 때와 같다.
+     */
+    @Test
+    public void rewriteCase() {
+        Function<JPAQueryFactory, JPAQuery<Tuple>> query = factory -> factory
+                .select(AGE_RANGE, member.count())
+                .from(member)
+                .where(AGE_RANGE.ne("기타"))
+                .groupBy(AGE_RANGE)
+                .orderBy(AGE_RANGE.asc());
+        JPAQuery<Tuple> rewritten = query.apply(queryFactory);
+        JPAQuery<Tuple> perRow = query.apply(new JPAQueryFactory(HQLTemplates.DEFAULT, em));
+
+        assertThat(rewritten.toString()).contains("member1.ageBucket").doesNotContain("case");
+        assertThat(perRow.toString()).contains("case");
+        assertThat(rewritten.fetch()).isEqualTo(perRow.fetch());
+    }
+
+    /**
+     * 엔티티 필드도 insert/update 때 DB와 같은 값으로 맞춘다.
+     */
+    @Test
+    public void entityValue() {
+        assertThat(member1.getAgeBucket()).isEqualTo("0~20살");
+
+        member1.setAge(40);
+        em.flush();
+
+        assertThat(member1.getAgeBucket()).isEqualTo("기타");
+        assertThat(jdbcTemplate.queryForObject("select age_bucket from member where member_id = ?",
+                String.class, member1.getId())).isEqualTo("기타");
+    }
+
+    @Test
+    public void explainUsesIndex() {
+        String plan = jdbcTemplate.queryForObject(
+                "explain select count(*) from member where age_bucket = '21~30살'", String.class);
+
+        assertThat(plan).containsIgnoringCase("idx_member_age_bucket");
+    }
+}
@@ -0,0 +1,154 @@
+package study.querydsl.support;
+
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslTest;
+import study.querydsl.entity.QMember;
+import study.querydsl.service.MemberBulkImportService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 제안된 인덱스를 실제로 만들고 H2 EXPLAIN으로 확인하므로 데이터를 커밋해두고,
+ * 테스트가 끝나면 만든 인덱스와 데이터를 지운다.
+ */
+@QuerydslTest
+class IndexAdvisorTest {
+
+    static final String USERNAME_AGE_SQL =
+            "explain select * from member where username = 'member1' and age between 10 and 20";
+    static final String TEAM_SORT_SQL =
+            "explain select * from member where team_id = %d order by age desc, username nulls last";
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    IndexAdvisor advisor;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MemberBulkImportService importService;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    List<Long> teamIds;
+    List<String> createdIndexes = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        teamIds = importService.importMembers(10, 1_000);
+        jdbcTemplate.execute("analyze");
+        advisor.reset();
+    }
+
+    @AfterEach
+    public void after() {
+        createdIndexes.forEach(name -> jdbcTemplate.execute("drop index " + name));
+        tx.executeWithoutResult(status -> {
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    /**
+     * 동등 -> 정렬 -> 범위 순서로 복합 인덱스를 제안하고, 만들고 나면 테이블 스캔이 인덱스 조회로 바뀐다.
+     */
+    @Test
+    public void suggestAndExplain() {
+        Long teamId = teamIds.get(0);
+        for (int i = 0; i < 3; i++) {
+            queryFactory
+                    .selectFrom(member)
+                    .where(member.username.eq("member1"), member.age.between(10, 20))
+                    .fetch();
+        }
+        queryFactory
+                .selectFrom(member)
+                .where(member.team.id.eq(teamId))
+                .orderBy(member.age.desc(), member.username.asc().nullsLast())
+                .fetch();
+
+        List<IndexSuggestion> suggestions = advisor.suggestions();
+
+        assertThat(suggestions).extracting(IndexSuggestion::getDdl).containsExactlyInAnyOrder(
+                "create index idx_member_username_age on member (username, age)",
+                "create index idx_member_team_id_age_username on member (team_id, age desc, username nulls last)");
+        assertThat(suggestions).filteredOn(s -> s.getName().equals("idx_member_username_age"))
+                .extracting(IndexSuggestion::getExecutions).containsExactly(3L);
+
+        String teamSortSql = String.format(TEAM_SORT_SQL, teamId);
+        assertThat(explain(USERNAME_AGE_SQL)).contains("tableScan");
+        assertThat(explain(teamSortSql)).doesNotContain("IDX_MEMBER_TEAM_ID_AGE_USERNAME");
+
+        for (IndexSuggestion suggestion : suggestions) {
+            jdbcTemplate.execute(suggestion.getDdl());
+            createdIndexes.add(suggestion.getName());
+        }
+
+        assertThat(explain(USERNAME_AGE_SQL)).doesNotContain("tableScan").contains("IDX_MEMBER_USERNAME_AGE");
+        assertThat(explain(teamSortSql)).contains("IDX_MEMBER_TEAM_ID_AGE_USERNAME");
+        assertThat(advisor.suggestions()).isEmpty();
+    }
+
+    /**
+     * 앞부분이 같은 후보는 긴 인덱스 하나로 합치고,
+     * FK 인덱스(team_id)나 PK로 처리되는 조건은 제안하지 않는다.
+     */
+    @Test
+    public void foldAndSkipCovered() {
+        QMember memberSub = new QMember("memberSub");
+        Long memberId = queryFactory
+                .select(member.id)
+                .from(member)
+                .where(member.username.eq("member1"))
+                .fetchOne();
+        queryFactory
+                .selectFrom(member)
+                .where(member.username.eq("member1"), member.age.eq(1))
+                .fetch();
+        queryFactory
+                .selectFrom(member)
+                .join(member.team, team)
+                .where(team.members.size().gt(0), member.team.eq(team))
+                .fetch();
+        queryFactory
+                .selectFrom(member)
+                .where(member.id.eq(memberId), member.age.eq(1))
+                .fetch();
+        queryFactory
+                .selectFrom(team)
+                .join(team.members, member)
+                .where(member.age.in(JPAExpressions
+                        .select(memberSub.age.max())
+                        .from(memberSub)
+                        .where(memberSub.username.startsWith("member9"))))
+                .fetch();
+
+        List<IndexSuggestion> suggestions = advisor.suggestions();
+
+        assertThat(suggestions).extracting(IndexSuggestion::getDdl).containsExactlyInAnyOrder(
+                "create index idx_member_username_age on member (username, age)",
+                "create index idx_member_team_id_age on member (team_id, age)");
+        assertThat(suggestions).filteredOn(s -> s.getName().equals("idx_member_username_age"))
+                .extracting(IndexSuggestion::getExecutions).containsExactly(3L);
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.queryForObject(sql, String.class);
+    }
+}
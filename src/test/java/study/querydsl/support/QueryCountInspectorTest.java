@@ -0,0 +1,170 @@
+package study.querydsl.support;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.service.MemberBulkImportService;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest(properties = {
+        "querydsl.n-plus-one.mode=fail",
+        "querydsl.n-plus-one.threshold=20"
+})
+@Transactional
+class QueryCountInspectorTest {
+
+    static final int TEAM_COUNT = 1_000;
+    static final int MEMBER_COUNT = 10_000;
+    static final int BATCH_FETCH_SIZE = 100;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    QueryCountInspector inspector;
+
+    @Autowired
+    MemberBulkImportService importService;
+
+    @BeforeEach
+    public void before() {
+        importService.importMembers(TEAM_COUNT, MEMBER_COUNT);
+        em.flush();
+        em.clear();
+    }
+
+    /**
+     * fetchJoinNo: 지연 로딩된 팀 프록시를 default_batch_fetch_size 단위로 묶어서 초기화한다.
+     * 배치 페치가 없으면 1 + 1000번이 나간다.
+     */
+    @Test
+    public void fetchJoinNo() {
+        try (QueryCountInspector.Scope scope = inspector.open()) {
+            List<Member> result = queryFactory
+                    .selectFrom(member)
+                    .fetch();
+            result.forEach(m -> m.getTeam().getName());
+
+            assertThat(result).hasSize(MEMBER_COUNT);
+            assertThat(scope.getStatementCount()).isEqualTo(1 + TEAM_COUNT / BATCH_FETCH_SIZE);
+        }
+    }
+
+    @Test
+    public void fetchJoinUse() {
+        try (QueryCountInspector.Scope scope = inspector.open()) {
+            List<Member> result = queryFactory
+                    .selectFrom(member)
+                    .join(member.team, team).fetchJoin()
+                    .fetch();
+            result.forEach(m -> m.getTeam().getName());
+
+            assertThat(result).hasSize(MEMBER_COUNT);
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+        }
+    }
+
+    /**
+     * 팀의 회원 컬렉션도 팀 100개씩 묶어서 초기화한다.
+     */
+    @Test
+    public void teamMembers() {
+        try (QueryCountInspector.Scope scope = inspector.open()) {
+            List<Team> result = queryFactory
+                    .selectFrom(team)
+                    .fetch();
+            // size()는 extra-lazy라서 팀마다 count 쿼리가 나가므로 순회해서 초기화한다.
+            long memberCount = result.stream().flatMap(t -> t.getMembers().stream()).count();
+
+            assertThat(memberCount).isEqualTo(MEMBER_COUNT);
+            assertThat(scope.getStatementCount()).isEqualTo(1 + TEAM_COUNT / BATCH_FETCH_SIZE);
+        }
+    }
+
+    /**
+     * 같은 SQL이 threshold(20)번을 넘게 나가면 fail 모드에서는 예외가 난다.
+     */
+    @Test
+    public void detectNPlusOne() {
+        List<Long> ids = queryFactory
+                .select(member.id)
+                .from(member)
+                .limit(30)
+                .fetch();
+
+        Throwable thrown = catchThrowable(() -> {
+            try (QueryCountInspector.Scope scope = inspector.open()) {
+                for (Long id : ids) {
+                    queryFactory
+                            .selectFrom(member)
+                            .where(member.id.eq(id))
+                            .fetchOne();
+                }
+            }
+        });
+
+        assertThat(Stream.iterate(thrown, Objects::nonNull, Throwable::getCause))
+                .hasAtLeastOneElementOfType(NPlusOneException.class);
+    }
+
+    /**
+     * 안쪽 범위에서 센 SQL은 바깥 범위에도 더해지고, 바깥 범위를 먼저 닫아도 닫힌 범위는 더 세지 않는다.
+     */
+    @Test
+    public void nestedScopes() {
+        QueryCountInspector.Scope outer = inspector.open();
+        QueryCountInspector.Scope inner = inspector.open();
+        countMembers();
+        inner.close();
+        countMembers();
+
+        assertThat(inner.getStatementCount()).isEqualTo(1);
+        assertThat(outer.getStatementCount()).isEqualTo(2);
+
+        QueryCountInspector.Scope later = inspector.open();
+        outer.close();
+        later.close();
+        countMembers();
+
+        assertThat(outer.getStatementCount()).isEqualTo(2);
+        assertThat(later.getStatementCount()).isZero();
+    }
+
+    /**
+     * 예외 등으로 안쪽 범위를 닫지 못해도 바깥 범위를 닫으면 스레드에 남지 않는다.
+     */
+    @Test
+    public void unclosedInnerScope() {
+        QueryCountInspector.Scope unclosed;
+        try (QueryCountInspector.Scope outer = inspector.open()) {
+            unclosed = inspector.open();
+        }
+        countMembers();
+
+        assertThat(unclosed.getStatementCount()).isZero();
+    }
+
+    private void countMembers() {
+        queryFactory
+                .select(member.count())
+                .from(member)
+                .fetchOne();
+    }
+}
@@ -0,0 +1,155 @@
+package study.querydsl.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.QueryShape;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 느린 쿼리 기준을 1ns로 두어서 모든 쿼리가 느린 쿼리 로그에 남도록 한다.
+ */
+@SpringBootTest(properties = "querydsl.metrics.slow-query-threshold=1ns")
+@Transactional
+@ExtendWith(OutputCaptureExtension.class)
+class QueryMetricsTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+        em.clear();
+    }
+
+    /**
+     * 상수만 다른 쿼리는 같은 모양으로 모이고, 행 수/SQL 수/엔티티 수가 실행마다 남는다.
+     */
+    @Test
+    public void fetchMeters() {
+        JPAQuery<Member> first = byAge(30);
+        String shape = QueryShape.fingerprint(first.getMetadata());
+        first.fetch();
+        em.clear();
+        byAge(40).fetch();
+
+        assertThat(QueryShape.fingerprint(byAge(20).getMetadata())).isEqualTo(shape);
+        Timer latency = registry.get("querydsl.query")
+                .tags("shape", shape, "operation", "fetch", "outcome", "success")
+                .timer();
+        assertThat(latency.count()).isEqualTo(2);
+        assertThat(summary("querydsl.query.rows", shape, "fetch").totalAmount()).isEqualTo(2 + 1);
+        assertThat(summary("querydsl.query.statements", shape, "fetch").totalAmount()).isEqualTo(2);
+        assertThat(summary("querydsl.query.entities", shape, "fetch").totalAmount()).isEqualTo(2 + 1);
+    }
+
+    /**
+     * 관찰자가 있으면 실행마다 fingerprint를 구하므로, 작은 쿼리의 fingerprint는 몇 마이크로초 안에 끝나야 한다.
+     * 기준은 느린 CI에서도 넘지 않도록 넉넉하게 잡았고, 실제 비용은 QueryMetricsBenchmark.fingerprint로 본다.
+     */
+    @Test
+    public void fingerprintOverhead() {
+        JPAQuery<Member> query = queryFactory
+                .selectFrom(member)
+                .where(member.team.id.eq(1L), member.age.goe(50))
+                .orderBy(member.username.asc())
+                .limit(20);
+        int iterations = 20_000;
+        for (int i = 0; i < iterations; i++) {
+            QueryShape.fingerprint(query.getMetadata());
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            QueryShape.fingerprint(query.getMetadata());
+        }
+        long averageNanos = (System.nanoTime() - start) / iterations;
+
+        assertThat(averageNanos).isLessThan(TimeUnit.MICROSECONDS.toNanos(50));
+    }
+
+    /**
+     * 페치 조인으로 함께 읽은 팀도 로딩된 엔티티로 센다.
+     */
+    @Test
+    public void fetchJoinEntities() {
+        JPAQuery<Member> query = queryFactory
+                .selectFrom(member)
+                .join(member.team, team).fetchJoin();
+        String shape = QueryShape.fingerprint(query.getMetadata());
+
+        List<Member> result = query.fetch();
+
+        assertThat(result).hasSize(4);
+        assertThat(summary("querydsl.query.statements", shape, "fetch").totalAmount()).isEqualTo(1);
+        assertThat(summary("querydsl.query.entities", shape, "fetch").totalAmount()).isEqualTo(4 + 2);
+    }
+
+    @Test
+    public void executeMeters() {
+        long count = queryFactory
+                .update(member)
+                .set(member.age, member.age.add(1))
+                .where(member.age.lt(25))
+                .execute();
+
+        assertThat(count).isEqualTo(2);
+        DistributionSummary rows = registry.get("querydsl.query.rows").tags("operation", "execute").summary();
+        assertThat(rows.totalAmount()).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    public void slowQueryLog(CapturedOutput output) {
+        Member result = queryFactory
+                .selectFrom(member)
+                .where(member.username.eq("member1"))
+                .fetchOne();
+
+        assertThat(result.getUsername()).isEqualTo("member1");
+        assertThat(output).contains("느린 쿼리", "operation=fetch-one", "where member1.username = ?1");
+    }
+
+    private JPAQuery<Member> byAge(int age) {
+        return queryFactory
+                .selectFrom(member)
+                .where(member.age.goe(age));
+    }
+
+    private DistributionSummary summary(String name, String shape, String operation) {
+        return registry.get(name).tags("shape", shape, "operation", operation).summary();
+    }
+}
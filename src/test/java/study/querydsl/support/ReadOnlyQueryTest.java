@@ -0,0 +1,153 @@
+package study.querydsl.support;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.StatelessQueryExecutor;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 읽기 전용 트랜잭션을 커밋까지 확인해야 해서 테스트 트랜잭션(@Transactional) 없이 실행하고 끝나면 지운다.
+ */
+@QuerydslTest
+class ReadOnlyQueryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    ObservingJPAQueryFactory queryFactory;
+
+    @Autowired
+    StatelessQueryExecutor stateless;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate readOnlyTx;
+
+    @BeforeEach
+    public void before() {
+        readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        jdbc.update("delete from member");
+        jdbc.update("delete from team");
+        jdbc.update("delete from team_stats");
+        em.getEntityManagerFactory().getCache().evictAll();
+    }
+
+    /**
+     * readOnly()로 조회한 엔티티는 스냅샷이 없어서 바꿔도 flush 때 update가 나가지 않는다.
+     */
+    @Test
+    public void readOnlyQuery() {
+        tx.executeWithoutResult(status -> {
+            List<Member> members = queryFactory.readOnly().selectFrom(member).fetch();
+
+            Session session = em.unwrap(Session.class);
+            assertThat(members).hasSize(2).allMatch(session::isReadOnly);
+            members.forEach(m -> m.setUsername("changed"));
+        });
+
+        assertThat(usernames()).containsExactly("member1", "member2");
+    }
+
+    @Test
+    public void readOnlyQueryFactoryRejectsWrites() {
+        assertThatThrownBy(() -> queryFactory.readOnly().update(member))
+                .isInstanceOf(ReadOnlyViolationException.class);
+        assertThatThrownBy(() -> queryFactory.readOnly().delete(member))
+                .isInstanceOf(ReadOnlyViolationException.class);
+    }
+
+    /**
+     * 읽기 전용 트랜잭션에서는 세션 전체가 스냅샷 없이 조회한다.
+     */
+    @Test
+    public void readOnlyTransaction() {
+        readOnlyTx.executeWithoutResult(status -> {
+            List<Member> members = queryFactory.selectFrom(member).fetch();
+
+            Session session = em.unwrap(Session.class);
+            assertThat(session.isDefaultReadOnly()).isTrue();
+            assertThat(members).allMatch(session::isReadOnly);
+            members.forEach(m -> m.setUsername("changed"));
+        });
+
+        assertThat(usernames()).containsExactly("member1", "member2");
+    }
+
+    /**
+     * 읽기 전용 트랜잭션의 쓰기는 커밋 때 조용히 버려지지 않고 그 자리에서 실패한다.
+     */
+    @Test
+    public void readOnlyTransactionRejectsWrites() {
+        assertThatThrownBy(() -> readOnlyTx.executeWithoutResult(status ->
+                em.persist(new Member("member3", 30))))
+                .isInstanceOf(ReadOnlyViolationException.class);
+        assertThatThrownBy(() -> readOnlyTx.executeWithoutResult(status ->
+                em.remove(queryFactory.selectFrom(member).where(member.username.eq("member1")).fetchOne())))
+                .isInstanceOf(ReadOnlyViolationException.class);
+        assertThatThrownBy(() -> readOnlyTx.executeWithoutResult(status ->
+                queryFactory.update(member).set(member.age, 99).execute()))
+                .isInstanceOf(ReadOnlyViolationException.class);
+
+        assertThat(usernames()).containsExactly("member1", "member2");
+        assertThat(jdbc.queryForList("select age from member order by username", Integer.class))
+                .containsExactly(10, 20);
+    }
+
+    /**
+     * StatelessSession으로 조회한 엔티티는 영속성 컨텍스트에 들어가지 않는다. 연관은 fetch join으로 가져온다.
+     */
+    @Test
+    public void statelessQuery() {
+        List<Member> members = readOnlyTx.execute(status -> {
+            List<Member> result = stateless.read(queries -> queries
+                    .selectFrom(member)
+                    .join(member.team, team).fetchJoin()
+                    .orderBy(member.username.asc())
+                    .fetch());
+            assertThat(result).noneMatch(em::contains);
+            return result;
+        });
+
+        assertThat(members).extracting(Member::getUsername).containsExactly("member1", "member2");
+        assertThat(members).extracting(m -> m.getTeam().getName()).containsOnly("teamA");
+    }
+
+    private List<String> usernames() {
+        return jdbc.queryForList("select username from member order by username", String.class);
+    }
+}
@@ -0,0 +1,200 @@
+package study.querydsl.support;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * H2 메모리 DB 세 개를 primary, replica-0, replica-1로 쓴다.
+ * 복제는 primary의 SCRIPT를 복제본에서 실행해서 흉내 내고,
+ * replica-0에는 데이터까지, replica-1에는 스키마만 복제해서 어디서 읽었는지 결과로 구분한다.
+ */
+@SpringBootTest(properties = {
+        "querydsl.routing.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "querydsl.routing.replica-urls=jdbc:h2:mem:routing-replica0;DB_CLOSE_DELAY=-1,jdbc:h2:mem:routing-replica1;DB_CLOSE_DELAY=-1",
+        "querydsl.routing.sticky-window=300ms",
+        "spring.datasource.hikari.maximum-pool-size=3"
+})
+class ReplicaRoutingDataSourceTest {
+
+    static final long STICKY_WINDOW = Duration.ofMillis(300).toNanos();
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    ReplicaRoutingDataSource routing;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    JdbcTemplate primary;
+
+    /**
+     * 라우팅이 보는 시계를 이만큼 앞당긴다.
+     */
+    final AtomicLong elapsed = new AtomicLong();
+
+    @BeforeEach
+    public void before() {
+        routing.setClock(() -> System.nanoTime() + elapsed.get());
+        // 앞선 테스트의 쓰기 때문에 primary에 붙어 있지 않도록 sticky-window를 넘긴다.
+        elapsed.addAndGet(STICKY_WINDOW);
+        primary = new JdbcTemplate(routing.getPrimary());
+        primary.update("insert into team (team_id, name) values (1, 'teamA')");
+        primary.update("insert into member (member_id, username, age, team_id) values (1, 'member1', 10, 1)");
+        replicate(routing.getReplicas().get(0), "script");
+        replicate(routing.getReplicas().get(1), "script nodata");
+    }
+
+    @AfterEach
+    public void after() {
+        routing.setClock(System::nanoTime);
+        primary.update("delete from member");
+        primary.update("delete from team");
+        primary.update("delete from team_stats");
+    }
+
+    /**
+     * 트랜잭션 밖의 조회는 복제본을 번갈아 쓴다.
+     */
+    @Test
+    public void roundRobinOutsideTransaction() {
+        long primaryBefore = routing.getRoutedCount(ReplicaRoutingDataSource.PRIMARY);
+        Set<Long> counts = new HashSet<>();
+        for (int i = 0; i < 2; i++) {
+            counts.add(queryFactory.select(member.count()).from(member).fetchOne());
+        }
+
+        assertThat(counts).containsExactlyInAnyOrder(0L, 1L);
+        assertThat(routing.getRoutedCount(ReplicaRoutingDataSource.PRIMARY)).isEqualTo(primaryBefore);
+    }
+
+    /**
+     * 읽기 전용 트랜잭션은 복제본 하나의 커넥션으로 끝까지 읽는다.
+     */
+    @Test
+    public void readOnlyTransaction() {
+        long replicasBefore = replicaRoutedCount();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        List<Long> counts = readOnly.execute(status -> List.of(
+                queryFactory.select(member.count()).from(member).fetchOne(),
+                queryFactory.select(member.count()).from(member).fetchOne()));
+
+        assertThat(counts.get(0)).isEqualTo(counts.get(1));
+        assertThat(replicaRoutedCount()).isEqualTo(replicasBefore + 1);
+    }
+
+    /**
+     * 쓰기 트랜잭션은 조회도 primary에서 하고,
+     * 쓴 직후에는 트랜잭션이 끝나도 sticky-window 동안 같은 스레드의 조회가 primary로 간다.
+     */
+    @Test
+    public void writeTransactionAndStickiness() {
+        long replicasBefore = replicaRoutedCount();
+        tx.executeWithoutResult(status -> {
+            assertThat(queryFactory.select(member.age).from(member).fetchOne()).isEqualTo(10);
+            queryFactory.update(member).set(member.age, 20).execute();
+            assertThat(queryFactory.select(member.age).from(member).fetchOne()).isEqualTo(20);
+        });
+        assertThat(replicaRoutedCount()).isEqualTo(replicasBefore);
+
+        assertThat(queryFactory.select(member.age).from(member).fetchOne()).isEqualTo(20);
+        assertThat(replicaRoutedCount()).isEqualTo(replicasBefore);
+
+        elapsed.addAndGet(STICKY_WINDOW / 2);
+        assertThat(queryFactory.select(member.age).from(member).fetchOne()).isEqualTo(20);
+        assertThat(replicaRoutedCount()).isEqualTo(replicasBefore);
+
+        elapsed.addAndGet(STICKY_WINDOW / 2);
+        assertThat(queryFactory.select(member.age).from(member).fetchOne()).isNotEqualTo(20);
+        assertThat(replicaRoutedCount()).isEqualTo(replicasBefore + 1);
+    }
+
+    /**
+     * open-in-view처럼 스레드에 EntityManager가 묶여 있으면 트랜잭션 밖의 조회도 primary에서 한다.
+     * 그 EntityManager가 커넥션을 들고 있다가 이어지는 쓰기 트랜잭션에서도 그대로 쓰기 때문이다.
+     */
+    @Test
+    public void boundEntityManagerStaysOnPrimary() {
+        long replicasBefore = replicaRoutedCount();
+        EntityManager em = emf.createEntityManager();
+        TransactionSynchronizationManager.bindResource(emf, new EntityManagerHolder(em));
+        try {
+            assertThat(queryFactory.select(member.age).from(member).fetchOne()).isEqualTo(10);
+            tx.executeWithoutResult(status -> queryFactory.update(member).set(member.age, 20).execute());
+        } finally {
+            TransactionSynchronizationManager.unbindResource(emf);
+            em.close();
+        }
+
+        assertThat(replicaRoutedCount()).isEqualTo(replicasBefore);
+        assertThat(primary.queryForObject("select age from member", Integer.class)).isEqualTo(20);
+    }
+
+    /**
+     * 복제 지연이 문제가 되는 조회는 primary()로 감싼다.
+     */
+    @Test
+    public void forcePrimary() {
+        primary.update("update member set age = 30");
+
+        Integer age = ReplicaRouting.primary(() -> queryFactory.select(member.age).from(member).fetchOne());
+
+        assertThat(age).isEqualTo(30);
+    }
+
+    /**
+     * spring.datasource.hikari.* 설정은 복제본 풀에도 적용된다.
+     */
+    @Test
+    public void replicasShareHikariSettings() {
+        assertThat(((HikariDataSource) routing.getPrimary()).getMaximumPoolSize()).isEqualTo(3);
+        for (DataSource replica : routing.getReplicas()) {
+            assertThat(((HikariDataSource) replica).getMaximumPoolSize()).isEqualTo(3);
+        }
+        assertThat(((HikariDataSource) routing.getReplicas().get(1)).getPoolName()).isEqualTo("replica-1");
+    }
+
+    private long replicaRoutedCount() {
+        return routing.getRoutedCount("replica-0") + routing.getRoutedCount("replica-1");
+    }
+
+    private void replicate(DataSource replica, String script) {
+        JdbcTemplate target = new JdbcTemplate(replica);
+        target.execute("drop all objects");
+        for (String statement : primary.queryForList(script, String.class)) {
+            target.execute(statement);
+        }
+    }
+}